@@ -0,0 +1,105 @@
+package net.rms.velocitytablist.benchmark;
+
+import com.velocitypowered.api.event.connection.DisconnectEvent;
+import com.velocitypowered.api.event.player.ServerPostConnectEvent;
+import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+import net.rms.velocitytablist.config.ConfigManager;
+import net.rms.velocitytablist.manager.CrossServerInfoManager;
+import net.rms.velocitytablist.metrics.PluginMetrics;
+import net.rms.velocitytablist.scheduler.PluginScheduler;
+import net.rms.velocitytablist.stub.StubNetwork;
+import net.rms.velocitytablist.util.DisplayNameCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.slf4j.helpers.NOPLogger;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 玩家信息管理器的全量校正、快照构建和事件处理。管理器不启动，因此不会触发后台刷新。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CrossServerInfoManagerBenchmark {
+    
+    @Param({"4", "40"})
+    public int servers;
+    
+    @Param({"10", "50"})
+    public int playersPerServer;
+    
+    private StubNetwork network;
+    private PluginScheduler scheduler;
+    private CrossServerInfoManager infoManager;
+    private List<Player> players;
+    private List<String> serverNames;
+    private int hop;
+    
+    @Setup
+    public void setUp() throws Exception {
+        network = StubNetwork.create(servers, playersPerServer);
+        Path dataDirectory = Files.createTempDirectory("vtl-bench");
+        Files.writeString(dataDirectory.resolve("config.yml"), "auto-update:\n  enabled: false\n");
+        
+        ConfigManager configManager = new ConfigManager(dataDirectory, NOPLogger.NOP_LOGGER);
+        PluginMetrics metrics = new PluginMetrics();
+        scheduler = new PluginScheduler(NOPLogger.NOP_LOGGER, metrics, 2, 1024, 10);
+        infoManager = new CrossServerInfoManager(network.proxy(), NOPLogger.NOP_LOGGER, configManager,
+            new DisplayNameCache(configManager), metrics, scheduler);
+        infoManager.updateServerInfo();
+        infoManager.refreshSnapshot();
+        
+        players = network.allPlayers();
+        serverNames = network.serverNames();
+    }
+    
+    @TearDown
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+    
+    @Benchmark
+    public void updateServerInfo() {
+        infoManager.updateServerInfo();
+    }
+    
+    @Benchmark
+    public Object refreshSnapshot() {
+        return infoManager.refreshSnapshot();
+    }
+    
+    @Benchmark
+    public Map<RegisteredServer, List<Player>> getServerPlayerMap() {
+        return infoManager.getServerPlayerMap();
+    }
+    
+    @Benchmark
+    public void onPlayerConnect() {
+        Player mover = players.get(hop % players.size());
+        String target = serverNames.get(hop % serverNames.size());
+        hop++;
+        
+        RegisteredServer previous = network.move(mover, target);
+        infoManager.onPlayerConnect(new ServerPostConnectEvent(mover, previous));
+    }
+    
+    @Benchmark
+    public void onPlayerDisconnectAndReconnect() {
+        Player player = players.get(hop++ % players.size());
+        infoManager.onPlayerDisconnect(new DisconnectEvent(player, DisconnectEvent.LoginStatus.SUCCESSFUL_LOGIN));
+        infoManager.onPlayerConnect(new ServerPostConnectEvent(player, null));
+    }
+}
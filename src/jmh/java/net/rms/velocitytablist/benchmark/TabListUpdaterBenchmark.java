@@ -0,0 +1,91 @@
+package net.rms.velocitytablist.benchmark;
+
+import com.velocitypowered.api.event.player.ServerPostConnectEvent;
+import com.velocitypowered.api.event.proxy.ProxyShutdownEvent;
+import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+import net.rms.velocitytablist.VelocityTabListPlugin;
+import net.rms.velocitytablist.manager.CrossServerInfoManager;
+import net.rms.velocitytablist.stub.StubNetwork;
+import net.rms.velocitytablist.util.TabListUpdater;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单个玩家的Tab列表更新：稳定状态（无变化）和每次有一名玩家切换服务器的情况。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TabListUpdaterBenchmark {
+    
+    @Param({"4", "16", "40"})
+    public int servers;
+    
+    @Param({"10", "50"})
+    public int playersPerServer;
+    
+    private StubNetwork network;
+    private VelocityTabListPlugin plugin;
+    private CrossServerInfoManager infoManager;
+    private TabListUpdater updater;
+    private List<Player> players;
+    private int hop;
+    
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        network = StubNetwork.create(servers, playersPerServer);
+        Path dataDirectory = Files.createTempDirectory("vtl-bench");
+        plugin = network.startPlugin(dataDirectory.resolve("plugins").resolve("velocitytablist"));
+        infoManager = plugin.getCrossServerManager();
+        players = network.allPlayers();
+        
+        updater = new TabListUpdater(players.get(0), plugin, infoManager);
+        infoManager.refreshSnapshot();
+        updater.updateTabList();
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        plugin.onProxyShutdown(new ProxyShutdownEvent());
+    }
+    
+    @Benchmark
+    public void updateTabListSteadyState() {
+        // 没有变化时直接跳过
+        updater.updateTabList();
+    }
+    
+    @Benchmark
+    public void updateTabListForced() {
+        // 强制重新计算，所有条目都与上次相同
+        updater.invalidate();
+        updater.updateTabList();
+    }
+    
+    @Benchmark
+    public void updateTabListWithHop() {
+        // 每次让一名其他玩家切换到下一个服务器
+        Player mover = players.get(1 + (hop % (players.size() - 1)));
+        String target = network.serverNames().get(hop % servers);
+        hop++;
+        
+        RegisteredServer previous = network.move(mover, target);
+        infoManager.onPlayerConnect(new ServerPostConnectEvent(mover, previous));
+        infoManager.refreshSnapshot();
+        updater.updateTabList();
+    }
+}
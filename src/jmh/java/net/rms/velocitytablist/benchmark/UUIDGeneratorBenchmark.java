@@ -0,0 +1,59 @@
+package net.rms.velocitytablist.benchmark;
+
+import net.rms.velocitytablist.util.UUIDGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 虚拟UUID生成：playerCount 小于缓存容量时主要命中缓存，大于时主要走派生路径。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class UUIDGeneratorBenchmark {
+    
+    @Param({"512", "65536"})
+    public int playerCount;
+    
+    private final UUIDGenerator generator = new UUIDGenerator();
+    private UUID[] playerIds;
+    private String[] serverNames;
+    private int index;
+    
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        playerIds = new UUID[playerCount];
+        for (int i = 0; i < playerCount; i++) {
+            playerIds[i] = new UUID(random.nextLong(), random.nextLong());
+        }
+        
+        serverNames = new String[8];
+        for (int i = 0; i < serverNames.length; i++) {
+            serverNames[i] = "server-" + i;
+        }
+    }
+    
+    @Benchmark
+    public UUID generatePlayerVirtualUUID() {
+        int i = index++;
+        return generator.generatePlayerVirtualUUID(
+            playerIds[i % playerIds.length], serverNames[i & (serverNames.length - 1)]);
+    }
+    
+    @Benchmark
+    public boolean isVirtualUUID() {
+        int i = index++;
+        return generator.isVirtualUUID(playerIds[i % playerIds.length]);
+    }
+}
@@ -0,0 +1,206 @@
+package net.rms.velocitytablist.budget;
+
+import com.velocitypowered.api.event.connection.PostLoginEvent;
+import com.velocitypowered.api.event.player.ServerPostConnectEvent;
+import com.velocitypowered.api.event.proxy.ProxyShutdownEvent;
+import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordedThread;
+import jdk.jfr.consumer.RecordingFile;
+import net.rms.velocitytablist.VelocityTabListPlugin;
+import net.rms.velocitytablist.handler.TabListPacketHandler;
+import net.rms.velocitytablist.manager.CrossServerInfoManager;
+import net.rms.velocitytablist.stub.StubNetwork;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * 刷新热路径的分配预算检查：在 JFR 记录下对桩玩家重复执行 updateAllTabLists()，
+ * 测量每名观察者每次刷新分配的字节数，超过预算时以非零状态退出。
+ * 空闲（没有任何变化）和变化（每次刷新前有玩家切换服务器、延迟变化）两种情况分别有预算。
+ *
+ * <p>刷新在当前线程串行执行，分配量取当前线程的精确分配字节数；
+ * JFR 的分配采样只用于列出主要的分配位置，便于定位回归。
+ *
+ * <p>运行: gradle allocationBudget -PallocationIdleBudget=512 -PallocationChurnBudget=32768
+ */
+public final class AllocationBudget {
+    
+    private static final int WARMUP_TICKS = 300;
+    private static final int MEASURED_TICKS = 100;
+    private static final int TOP_SITES = 8;
+    
+    // 串行刷新保证所有分配都发生在测量线程；关闭排队、健康检查，防抖窗口足够长，避免后台刷新干扰
+    private static final String CONFIG =
+        "refresh:\n  parallel: false\n  burst-threshold: 100000\n  debounce-millis: 60000\n"
+            + "health:\n  enabled: false\n";
+    
+    private final StubNetwork network;
+    private final VelocityTabListPlugin plugin;
+    private final CrossServerInfoManager infoManager;
+    private final TabListPacketHandler packetHandler;
+    private final List<Player> players;
+    private final List<String> serverNames;
+    private final Random random = new Random(11);
+    
+    private AllocationBudget(int servers, int playersPerServer) throws IOException {
+        network = StubNetwork.create(servers, playersPerServer);
+        Path dataDirectory = Files.createTempDirectory("vtl-alloc").resolve("plugins").resolve("velocitytablist");
+        plugin = network.startPlugin(dataDirectory, CONFIG);
+        infoManager = plugin.getCrossServerManager();
+        packetHandler = plugin.getPacketHandler();
+        players = network.allPlayers();
+        serverNames = network.serverNames();
+        
+        for (Player player : players) {
+            packetHandler.onPostLogin(new PostLoginEvent(player));
+        }
+    }
+    
+    public static void main(String[] args) throws Exception {
+        int servers = 10;
+        int playersPerServer = 20;
+        long idleBudget = 512;
+        long churnBudget = 32768;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--servers":
+                    servers = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--players-per-server":
+                    playersPerServer = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--idle-budget":
+                    idleBudget = Long.parseLong(args[i + 1]);
+                    break;
+                case "--churn-budget":
+                    churnBudget = Long.parseLong(args[i + 1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("未知参数: " + args[i]);
+            }
+        }
+        
+        AllocationBudget budget = new AllocationBudget(servers, playersPerServer);
+        boolean passed;
+        try {
+            passed = budget.check("idle", idleBudget, false);
+            passed &= budget.check("churn", churnBudget, true);
+        } finally {
+            budget.plugin.onProxyShutdown(new ProxyShutdownEvent());
+        }
+        
+        if (!passed) {
+            System.out.println("分配预算检查失败");
+            System.exit(1);
+        }
+        System.out.println("分配预算检查通过");
+        System.exit(0);
+    }
+    
+    private boolean check(String name, long budgetBytes, boolean churn) throws IOException {
+        for (int i = 0; i < WARMUP_TICKS; i++) {
+            tick(churn);
+        }
+        
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long allocated = 0;
+        
+        Path recordingFile = Files.createTempFile("vtl-alloc-" + name, ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("jdk.ObjectAllocationSample").withStackTrace().with("throttle", "2000/s");
+            recording.start();
+            
+            for (int i = 0; i < MEASURED_TICKS; i++) {
+                // 只测量刷新本身，玩家变化在测量范围之外
+                if (churn) {
+                    applyChurn();
+                }
+                long before = threads.getThreadAllocatedBytes(threadId);
+                packetHandler.updateAllTabLists();
+                allocated += threads.getThreadAllocatedBytes(threadId) - before;
+            }
+            
+            recording.stop();
+            recording.dump(recordingFile);
+        }
+        
+        long perViewerTick = allocated / ((long) MEASURED_TICKS * players.size());
+        boolean passed = perViewerTick <= budgetBytes;
+        System.out.printf("%-6s %d 名观察者, %d 次刷新: 每名观察者每次刷新分配 %d 字节, 预算 %d 字节 %s%n",
+            name, players.size(), MEASURED_TICKS, perViewerTick, budgetBytes, passed ? "通过" : "超出");
+        printTopSites(recordingFile, threadId);
+        Files.deleteIfExists(recordingFile);
+        return passed;
+    }
+    
+    private void tick(boolean churn) {
+        if (churn) {
+            applyChurn();
+        }
+        packetHandler.updateAllTabLists();
+    }
+    
+    private void applyChurn() {
+        // 约 1% 的玩家切换服务器，另有 5% 的玩家延迟变化
+        int hops = Math.max(1, players.size() / 100);
+        for (int i = 0; i < hops; i++) {
+            Player player = players.get(random.nextInt(players.size()));
+            RegisteredServer previous = network.move(player, serverNames.get(random.nextInt(serverNames.size())));
+            infoManager.onPlayerConnect(new ServerPostConnectEvent(player, previous));
+        }
+        
+        int pings = Math.max(1, players.size() / 20);
+        for (int i = 0; i < pings; i++) {
+            network.setPing(players.get(random.nextInt(players.size())), 20 + random.nextInt(300));
+        }
+    }
+    
+    private static void printTopSites(Path recordingFile, long threadId) throws IOException {
+        // 按插件代码中最近的调用位置汇总采样权重
+        Map<String, Long> sites = new HashMap<>();
+        for (RecordedEvent event : RecordingFile.readAllEvents(recordingFile)) {
+            RecordedThread thread = event.getThread("eventThread");
+            if (thread == null || thread.getJavaThreadId() != threadId) {
+                continue;
+            }
+            sites.merge(site(event), event.getLong("weight"), Long::sum);
+        }
+        
+        List<Map.Entry<String, Long>> sorted = new ArrayList<>(sites.entrySet());
+        sorted.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+        for (Map.Entry<String, Long> entry : sorted.subList(0, Math.min(TOP_SITES, sorted.size()))) {
+            System.out.printf("    %10d KB  %s%n", entry.getValue() / 1024, entry.getKey());
+        }
+    }
+    
+    private static String site(RecordedEvent event) {
+        String type = event.getClass("objectClass").getName();
+        RecordedStackTrace stackTrace = event.getStackTrace();
+        if (stackTrace == null) {
+            return type;
+        }
+        
+        for (RecordedFrame frame : stackTrace.getFrames()) {
+            String owner = frame.getMethod().getType().getName();
+            if (owner.startsWith("net.rms.velocitytablist.") && !owner.startsWith("net.rms.velocitytablist.stub.")) {
+                return type + " @ " + owner + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+            }
+        }
+        return type;
+    }
+}
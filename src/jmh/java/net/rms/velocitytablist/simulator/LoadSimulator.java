@@ -0,0 +1,329 @@
+package net.rms.velocitytablist.simulator;
+
+import com.velocitypowered.api.event.connection.DisconnectEvent;
+import com.velocitypowered.api.event.connection.PostLoginEvent;
+import com.velocitypowered.api.event.player.ServerPostConnectEvent;
+import com.velocitypowered.api.event.proxy.ProxyShutdownEvent;
+import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+import net.rms.velocitytablist.VelocityTabListPlugin;
+import net.rms.velocitytablist.handler.TabListPacketHandler;
+import net.rms.velocitytablist.manager.CrossServerInfoManager;
+import net.rms.velocitytablist.stub.StubNetwork;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 离线负载模拟：在内存中的代理网络上运行完整的插件，按脚本依次执行登录潮、空闲、频繁切换服务器、
+ * 后端崩溃后的重连潮和恢复后的空闲，输出每个阶段的刷新耗时百分位数、每名玩家每秒的数据包数、
+ * 分配速率以及整个运行期间的堆峰值。
+ *
+ * <p>运行: gradle simulate -PsimulatorArgs="--servers 20 --players 1500"
+ */
+public final class LoadSimulator {
+    
+    private static final long STEP_MILLIS = 50;
+    
+    private final Options options;
+    private final StubNetwork network;
+    private final Random random = new Random(7);
+    private final List<Player> online = new ArrayList<>();
+    private int nextPlayerId;
+    
+    private VelocityTabListPlugin plugin;
+    private CrossServerInfoManager infoManager;
+    private TabListPacketHandler packetHandler;
+    
+    private LoadSimulator(Options options) {
+        this.options = options;
+        this.network = StubNetwork.create(options.servers, 0);
+    }
+    
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        String report = new LoadSimulator(options).run();
+        System.out.print(report);
+        
+        if (options.reportPath != null) {
+            Files.createDirectories(options.reportPath.toAbsolutePath().getParent());
+            Files.writeString(options.reportPath, report);
+        }
+        // 联邦传输等可能留下的后台线程不应阻止退出
+        System.exit(0);
+    }
+    
+    private String run() throws IOException, InterruptedException {
+        Path dataDirectory = Files.createTempDirectory("vtl-sim").resolve("plugins").resolve("velocitytablist");
+        // 缩短健康检查间隔，使后端崩溃能在一个阶段内被发现
+        plugin = network.startPlugin(dataDirectory,
+            "health:\n  min-interval-seconds: 1\n  max-interval-seconds: 5\n  timeout-millis: 500\n");
+        infoManager = plugin.getCrossServerManager();
+        packetHandler = plugin.getPacketHandler();
+        
+        List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+                heapPools.add(pool);
+            }
+        }
+        
+        String crashed = network.serverNames().get(0);
+        List<Player> victims = new ArrayList<>();
+        List<PhaseReport> reports = new ArrayList<>();
+        
+        reports.add(runPhase("login-wave", (step, steps) -> {
+            // 所有玩家在阶段内均匀登录
+            int target = (int) ((long) options.players * (step + 1) / steps);
+            while (online.size() < target) {
+                login(network.serverNames().get(online.size() % options.servers));
+            }
+        }));
+        
+        reports.add(runPhase("idle", (step, steps) -> {
+        }));
+        
+        reports.add(runPhase("server-hops", (step, steps) -> {
+            int hops = poisson(options.hopsPerSecond * STEP_MILLIS / 1000.0);
+            for (int i = 0; i < hops && !online.isEmpty(); i++) {
+                Player player = online.get(random.nextInt(online.size()));
+                hop(player, network.serverNames().get(random.nextInt(options.servers)));
+            }
+        }));
+        
+        reports.add(runPhase("backend-crash", (step, steps) -> {
+            if (step == 0) {
+                // 后端崩溃：不再响应 ping，上面的玩家全部断开
+                network.setReachable(crashed, false);
+                for (Player player : new ArrayList<>(online)) {
+                    if (isOn(player, crashed)) {
+                        victims.add(player);
+                        leave(player);
+                    }
+                }
+            } else if (step == steps / 4) {
+                // 被断开的玩家同时重连到其他服务器
+                for (int i = 0; i < victims.size(); i++) {
+                    login(network.serverNames().get(1 + i % Math.max(1, options.servers - 1)));
+                }
+                victims.clear();
+            } else if (step == steps - 1) {
+                network.setReachable(crashed, true);
+            }
+        }));
+        
+        reports.add(runPhase("recovered-idle", (step, steps) -> {
+        }));
+        
+        long peakHeap = 0;
+        for (MemoryPoolMXBean pool : heapPools) {
+            peakHeap += pool.getPeakUsage().getUsed();
+        }
+        
+        List<String> pluginStats = plugin.getMetrics().summaryLines();
+        plugin.onProxyShutdown(new ProxyShutdownEvent());
+        return format(reports, peakHeap, pluginStats);
+    }
+    
+    private PhaseReport runPhase(String name, Step action) throws InterruptedException {
+        int steps = (int) Math.max(1, TimeUnit.SECONDS.toMillis(options.phaseSeconds) / STEP_MILLIS);
+        long tickNanos = TimeUnit.MILLISECONDS.toNanos(options.tickMillis);
+        List<Long> ticks = new ArrayList<>();
+        double viewerSeconds = 0;
+        
+        long packetsBefore = network.packets().total();
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        long nextTick = start;
+        
+        for (int step = 0; step < steps; step++) {
+            action.run(step, steps);
+            
+            // 模拟定期完整刷新，其余刷新由插件自己的防抖和排队逻辑触发
+            if (System.nanoTime() - nextTick >= 0) {
+                long tickStart = System.nanoTime();
+                packetHandler.updateAllTabLists();
+                ticks.add(System.nanoTime() - tickStart);
+                nextTick += tickNanos;
+            }
+            
+            viewerSeconds += online.size() * STEP_MILLIS / 1000.0;
+            long sleepNanos = start + TimeUnit.MILLISECONDS.toNanos(STEP_MILLIS * (step + 1)) - System.nanoTime();
+            if (sleepNanos > 0) {
+                TimeUnit.NANOSECONDS.sleep(sleepNanos);
+            }
+        }
+        
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long[] sorted = ticks.stream().mapToLong(Long::longValue).sorted().toArray();
+        return new PhaseReport(name, seconds, online.size(), sorted,
+            viewerSeconds > 0 ? (network.packets().total() - packetsBefore) / viewerSeconds : 0,
+            (allocatedBytes() - allocatedBefore) / seconds);
+    }
+    
+    private void login(String serverName) {
+        Player player = network.connect("sim-" + nextPlayerId++, serverName);
+        online.add(player);
+        packetHandler.onPostLogin(new PostLoginEvent(player));
+        connected(player, null);
+    }
+    
+    private void hop(Player player, String serverName) {
+        if (isOn(player, serverName)) {
+            return;
+        }
+        connected(player, network.move(player, serverName));
+    }
+    
+    private void leave(Player player) {
+        network.disconnect(player);
+        online.remove(player);
+        DisconnectEvent event = new DisconnectEvent(player, DisconnectEvent.LoginStatus.SUCCESSFUL_LOGIN);
+        infoManager.onPlayerDisconnect(event);
+        packetHandler.onDisconnect(event);
+    }
+    
+    private void connected(Player player, RegisteredServer previous) {
+        // 与 Velocity 的事件顺序一致：信息管理器先于数据包处理器
+        ServerPostConnectEvent event = new ServerPostConnectEvent(player, previous);
+        infoManager.onPlayerConnect(event);
+        packetHandler.onServerConnect(event);
+    }
+    
+    private static boolean isOn(Player player, String serverName) {
+        return player.getCurrentServer()
+            .map(conn -> conn.getServerInfo().getName().equals(serverName))
+            .orElse(false);
+    }
+    
+    private int poisson(double mean) {
+        // 均值较小，直接使用 Knuth 算法
+        double limit = Math.exp(-mean);
+        double product = random.nextDouble();
+        int count = 0;
+        while (product > limit) {
+            product *= random.nextDouble();
+            count++;
+        }
+        return count;
+    }
+    
+    private static long allocatedBytes() {
+        // 已结束线程的分配量无法统计，插件的工作线程在整个运行期间都存在
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return 0;
+        }
+        long[] allocated = ((com.sun.management.ThreadMXBean) threads)
+            .getThreadAllocatedBytes(threads.getAllThreadIds());
+        return Arrays.stream(allocated).filter(bytes -> bytes > 0).sum();
+    }
+    
+    private String format(List<PhaseReport> reports, long peakHeap, List<String> pluginStats) {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("VelocityTabList 负载模拟: %d 个后端, %d 名玩家, 每阶段 %d 秒, 完整刷新间隔 %dms%n",
+            options.servers, options.players, options.phaseSeconds, options.tickMillis));
+        out.append(String.format("%-16s %8s %8s %6s %9s %9s %9s %14s %12s%n",
+            "阶段", "秒", "玩家", "刷新", "p50(ms)", "p99(ms)", "最大(ms)", "包/玩家/秒", "分配(MB/s)"));
+        for (PhaseReport report : reports) {
+            out.append(String.format("%-16s %8.1f %8d %6d %9.2f %9.2f %9.2f %14.2f %12.1f%n",
+                report.name, report.seconds, report.viewers, report.ticks.length,
+                report.percentileMillis(0.5), report.percentileMillis(0.99), report.percentileMillis(1.0),
+                report.packetsPerViewerSecond, report.allocatedBytesPerSecond / (1024 * 1024)));
+        }
+        out.append(String.format("堆峰值: %.1f MB%n", peakHeap / (1024.0 * 1024)));
+        out.append("插件指标:").append(System.lineSeparator());
+        for (String line : pluginStats) {
+            out.append("  ").append(line).append(System.lineSeparator());
+        }
+        return out.toString();
+    }
+    
+    @FunctionalInterface
+    private interface Step {
+        
+        void run(int step, int steps);
+    }
+    
+    private static final class PhaseReport {
+        private final String name;
+        private final double seconds;
+        private final int viewers;
+        private final long[] ticks;
+        private final double packetsPerViewerSecond;
+        private final double allocatedBytesPerSecond;
+        
+        private PhaseReport(String name, double seconds, int viewers, long[] ticks,
+                            double packetsPerViewerSecond, double allocatedBytesPerSecond) {
+            this.name = name;
+            this.seconds = seconds;
+            this.viewers = viewers;
+            this.ticks = ticks;
+            this.packetsPerViewerSecond = packetsPerViewerSecond;
+            this.allocatedBytesPerSecond = allocatedBytesPerSecond;
+        }
+        
+        private double percentileMillis(double percentile) {
+            if (ticks.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.min(ticks.length - 1, Math.ceil(ticks.length * percentile) - 1);
+            return ticks[Math.max(0, index)] / 1e6;
+        }
+    }
+    
+    private static final class Options {
+        private int servers = 20;
+        private int players = 1000;
+        private int phaseSeconds = 10;
+        private long tickMillis = 1000;
+        private double hopsPerSecond = -1;
+        private Path reportPath;
+        
+        private static Options parse(String[] args) {
+            Options options = new Options();
+            for (int i = 0; i < args.length; i++) {
+                String value = i + 1 < args.length ? args[i + 1] : null;
+                switch (args[i]) {
+                    case "--servers":
+                        options.servers = Math.max(2, Integer.parseInt(value));
+                        break;
+                    case "--players":
+                        options.players = Math.max(1, Integer.parseInt(value));
+                        break;
+                    case "--phase-seconds":
+                        options.phaseSeconds = Math.max(1, Integer.parseInt(value));
+                        break;
+                    case "--tick-millis":
+                        options.tickMillis = Math.max(STEP_MILLIS, Long.parseLong(value));
+                        break;
+                    case "--hops-per-second":
+                        options.hopsPerSecond = Double.parseDouble(value);
+                        break;
+                    case "--report":
+                        options.reportPath = Path.of(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("未知参数: " + args[i]);
+                }
+                i++;
+            }
+            
+            if (options.hopsPerSecond < 0) {
+                // 默认每 50 名玩家每秒切换一次服务器
+                options.hopsPerSecond = options.players / 50.0;
+            }
+            return options;
+        }
+    }
+}
@@ -7,13 +7,28 @@ import com.velocitypowered.api.event.proxy.ProxyShutdownEvent;
 import com.velocitypowered.api.plugin.Plugin;
 import com.velocitypowered.api.plugin.annotation.DataDirectory;
 import com.velocitypowered.api.proxy.ProxyServer;
+import net.rms.velocitytablist.command.VelocityTabListCommand;
 import net.rms.velocitytablist.config.ConfigManager;
+import net.rms.velocitytablist.config.PluginConfig;
+import net.rms.velocitytablist.federation.FederationManager;
+import net.rms.velocitytablist.federation.TcpTransport;
+import net.rms.velocitytablist.handler.BackendSyncHandler;
+import net.rms.velocitytablist.handler.RefreshController;
 import net.rms.velocitytablist.handler.TabListPacketHandler;
 import net.rms.velocitytablist.manager.CrossServerInfoManager;
+import net.rms.velocitytablist.manager.ServerHealthMonitor;
 import net.rms.velocitytablist.manager.UpdateManager;
+import net.rms.velocitytablist.metrics.PluginMetrics;
+import net.rms.velocitytablist.metrics.PrometheusExporter;
+import net.rms.velocitytablist.scheduler.PluginScheduler;
+import net.rms.velocitytablist.util.DisplayNameCache;
+import net.rms.velocitytablist.util.ProfilePool;
+import net.rms.velocitytablist.util.UUIDGenerator;
 import org.slf4j.Logger;
 
+import java.net.InetSocketAddress;
 import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
 
 @Plugin(
     id = "velocitytablist",
@@ -28,11 +43,20 @@ public class VelocityTabListPlugin {
     private final ProxyServer server;
     private final Logger logger;
     private final Path dataDirectory;
+    private final UUIDGenerator uuidGenerator = new UUIDGenerator();
+    private final PluginMetrics metrics = new PluginMetrics();
     
     private ConfigManager configManager;
+    private PluginScheduler scheduler;
     private CrossServerInfoManager crossServerManager;
+    private ServerHealthMonitor healthMonitor;
     private TabListPacketHandler packetHandler;
+    private RefreshController refreshController;
     private UpdateManager updateManager;
+    private DisplayNameCache displayNameCache;
+    private ProfilePool profilePool;
+    private PrometheusExporter metricsExporter;
+    private FederationManager federationManager;
     
     @Inject
     public VelocityTabListPlugin(ProxyServer server, Logger logger, @DataDirectory Path dataDirectory) {
@@ -49,6 +73,12 @@ public class VelocityTabListPlugin {
             // 初始化配置管理器
             configManager = new ConfigManager(dataDirectory, logger);
             
+            // 初始化后台任务调度器，插件的所有后台任务共享同一组线程
+            scheduler = new PluginScheduler(logger, metrics,
+                configManager.getSchedulerWorkerThreads(),
+                configManager.getSchedulerQueueCapacity(),
+                configManager.getSchedulerTickMillis());
+            
             // 初始化自动更新管理器
             String currentVersion = getCurrentVersion();
             updateManager = new UpdateManager(
@@ -64,23 +94,68 @@ public class VelocityTabListPlugin {
             // 启动自动更新管理器
             updateManager.start();
             
+            // 初始化显示名称缓存
+            displayNameCache = new DisplayNameCache(configManager);
+            profilePool = new ProfilePool(server);
+            
             // 初始化跨服务器信息管理器
-            crossServerManager = new CrossServerInfoManager(server, logger);
+            crossServerManager = new CrossServerInfoManager(server, logger, configManager, displayNameCache, metrics,
+                scheduler);
+            crossServerManager.setProfilePool(profilePool);
+            
+            // 初始化后端健康检查，服务器上下线时刷新受影响的玩家
+            healthMonitor = new ServerHealthMonitor(server, logger, configManager, metrics, scheduler);
+            crossServerManager.setHealthMonitor(healthMonitor);
+            healthMonitor.setStatusListener(crossServerManager::markDirty);
+            
+            // 注册缓存指标
+            metrics.registerCache("virtual_uuid", uuidGenerator::getHitCount, uuidGenerator::getMissCount);
+            metrics.registerCache("display_name", displayNameCache::getHitCount, displayNameCache::getMissCount);
+            metrics.registerCache("game_profile", profilePool::getHitCount, profilePool::getMissCount);
             
             // 初始化数据包处理器
             packetHandler = new TabListPacketHandler(this, server, crossServerManager);
             
+            // 玩家变化时只刷新受影响的玩家
+            crossServerManager.setDirtyListener(packetHandler::refreshDirtyServers);
+            refreshController = new RefreshController(this, packetHandler, crossServerManager);
+            
             // 注册事件监听器
             server.getEventManager().register(this, crossServerManager);
             server.getEventManager().register(this, packetHandler);
             
+            // 接收后端服务器推送的玩家状态
+            if (configManager.isBackendSyncEnabled()) {
+                server.getChannelRegistrar().register(BackendSyncHandler.CHANNEL);
+                server.getEventManager().register(this, new BackendSyncHandler(this, server, crossServerManager));
+            }
+            
+            // 注册管理命令
+            server.getCommandManager().register(
+                server.getCommandManager().metaBuilder("vtl").aliases("velocitytablist").build(),
+                new VelocityTabListCommand(this)
+            );
+            
+            // 启动指标端点
+            if (configManager.isMetricsEndpointEnabled()) {
+                metricsExporter = new PrometheusExporter(metrics, logger, scheduler.workers());
+                metricsExporter.start(configManager.getMetricsHost(), configManager.getMetricsPort());
+            }
+            
+            // 启动多代理玩家列表同步
+            if (configManager.isFederationEnabled()) {
+                startFederation();
+            }
+            
             // 启动跨服务器信息收集
             crossServerManager.start();
+            healthMonitor.start();
             
-            // 启动定期更新任务（使用配置文件中的间隔）
-            server.getScheduler().buildTask(this, () -> {
-                packetHandler.updateAllTabLists();
-            }).repeat(java.time.Duration.ofSeconds(configManager.getUpdateIntervalSeconds())).schedule();
+            // 启动定期完整刷新作为兜底（同步延迟等不会触发事件的变化），间隔随刷新耗时和变化量调整
+            refreshController.start();
+            
+            // 重新加载配置时重新调度任务并使格式缓存失效，无需重启代理
+            configManager.addReloadListener(this::onConfigReload);
             
             logger.info("VelocityTabList 插件初始化完成!");
             
@@ -97,6 +172,18 @@ public class VelocityTabListPlugin {
             updateManager.shutdown();
         }
         
+        if (federationManager != null) {
+            federationManager.shutdown();
+        }
+        
+        if (healthMonitor != null) {
+            healthMonitor.shutdown();
+        }
+        
+        if (refreshController != null) {
+            refreshController.shutdown();
+        }
+        
         if (crossServerManager != null) {
             crossServerManager.shutdown();
         }
@@ -105,6 +192,15 @@ public class VelocityTabListPlugin {
             packetHandler.shutdown();
         }
         
+        if (metricsExporter != null) {
+            metricsExporter.shutdown();
+        }
+        
+        // 最后关闭调度器，其他组件关闭时可能还需要提交任务
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+        
         logger.info("VelocityTabList 插件已关闭");
     }
     
@@ -120,8 +216,124 @@ public class VelocityTabListPlugin {
         return configManager;
     }
     
-    public UpdateManager getUpdateManager() {
-        return updateManager;
+    public CrossServerInfoManager getCrossServerManager() {
+        return crossServerManager;
+    }
+    
+    public ServerHealthMonitor getHealthMonitor() {
+        return healthMonitor;
+    }
+    
+    public TabListPacketHandler getPacketHandler() {
+        return packetHandler;
+    }
+    
+    public PluginScheduler getScheduler() {
+        return scheduler;
+    }
+    
+    public PluginMetrics getMetrics() {
+        return metrics;
+    }
+    
+    public UUIDGenerator getUUIDGenerator() {
+        return uuidGenerator;
+    }
+    
+    public DisplayNameCache getDisplayNameCache() {
+        return displayNameCache;
+    }
+    
+    public ProfilePool getProfilePool() {
+        return profilePool;
+    }
+    
+    private void onConfigReload(PluginConfig previous, PluginConfig current) {
+        refreshController.onConfigReload(previous, current);
+        
+        // 格式可能已变化，旧的显示名称不再有效
+        displayNameCache.clear();
+        
+        crossServerManager.onConfigReload(previous, current);
+        
+        if (!previous.metrics().equals(current.metrics())) {
+            if (metricsExporter != null) {
+                metricsExporter.shutdown();
+                metricsExporter = null;
+            }
+            if (current.metrics().enabled()) {
+                try {
+                    metricsExporter = new PrometheusExporter(metrics, logger, scheduler.workers());
+                    metricsExporter.start(current.metrics().host(), current.metrics().port());
+                } catch (Exception e) {
+                    logger.error("启动指标端点时发生错误", e);
+                    metricsExporter = null;
+                }
+            }
+        }
+        
+        if (!previous.federation().equals(current.federation())
+                || previous.backendSync().enabled() != current.backendSync().enabled()
+                || !previous.autoUpdate().equals(current.autoUpdate())
+                || !previous.scheduler().equals(current.scheduler())) {
+            logger.warn("多代理同步、后端推送开关、自动更新和调度器配置需要重启代理后生效");
+        }
+        
+        // 按新配置刷新所有玩家；在工作线程上执行，不阻塞执行重载命令的线程
+        scheduler.runAsync(() -> {
+            try {
+                packetHandler.updateAllTabLists();
+            } catch (Exception e) {
+                logger.error("重载配置后刷新Tab列表时发生错误", e);
+            }
+        });
+    }
+    
+    private void startFederation() throws java.io.IOException {
+        // 同步端口没有其他保护，未配置密钥时任何能连接端口的人都可以伪造玩家列表
+        if (configManager.getFederationSecret().isEmpty()) {
+            logger.error("未配置 federation.secret，多代理玩家列表同步未启动");
+            return;
+        }
+        
+        // 对端每个校验周期至少发送一次校验和，超过过期时间没有数据的连接视为失效
+        TcpTransport transport = new TcpTransport(logger,
+            new InetSocketAddress(configManager.getFederationBindHost(), configManager.getFederationBindPort()),
+            configManager.getFederationPeers(),
+            configManager.getFederationSecret(),
+            TimeUnit.SECONDS.toMillis(configManager.getFederationChecksumSeconds())
+                * FederationManager.EXPIRE_AFTER_CHECKSUM_PERIODS);
+        federationManager = new FederationManager(server, logger, crossServerManager, scheduler, transport,
+            resolveProxyId(),
+            configManager.getFederationFlushMillis(),
+            configManager.getFederationChecksumSeconds());
+        
+        crossServerManager.addRosterListener(federationManager);
+        crossServerManager.setRemoteRoster(federationManager);
+        federationManager.start();
+    }
+    
+    /**
+     * 未配置代理ID时使用数据目录中保存的随机ID，首次启动时生成，避免多个代理使用相同的默认ID。
+     */
+    private String resolveProxyId() throws java.io.IOException {
+        String configured = configManager.getFederationProxyId().trim();
+        if (!configured.isEmpty()) {
+            return configured;
+        }
+        
+        Path idFile = dataDirectory.resolve("federation-id");
+        if (java.nio.file.Files.exists(idFile)) {
+            String saved = java.nio.file.Files.readString(idFile).trim();
+            if (!saved.isEmpty()) {
+                return saved;
+            }
+        }
+        
+        String generated = "proxy-" + java.util.UUID.randomUUID().toString().substring(0, 8);
+        java.nio.file.Files.writeString(idFile, generated);
+        logger.info("已生成代理ID {} 并保存到 {}", generated, idFile);
+        return generated;
     }
     
     private String getCurrentVersion() {
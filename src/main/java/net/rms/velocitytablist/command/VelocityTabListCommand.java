@@ -0,0 +1,87 @@
+package net.rms.velocitytablist.command;
+
+import com.velocitypowered.api.command.CommandSource;
+import com.velocitypowered.api.command.SimpleCommand;
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+import com.velocitypowered.api.proxy.server.ServerPing;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
+import net.rms.velocitytablist.VelocityTabListPlugin;
+import net.rms.velocitytablist.manager.ServerHealthMonitor;
+
+import java.util.List;
+
+/**
+ * /vtl 管理命令。
+ */
+public class VelocityTabListCommand implements SimpleCommand {
+    
+    private static final String PERMISSION = "velocitytablist.admin";
+    
+    private final VelocityTabListPlugin plugin;
+    
+    public VelocityTabListCommand(VelocityTabListPlugin plugin) {
+        this.plugin = plugin;
+    }
+    
+    @Override
+    public void execute(Invocation invocation) {
+        CommandSource source = invocation.source();
+        String[] args = invocation.arguments();
+        
+        if (args.length == 0) {
+            source.sendMessage(Component.text("用法: /vtl <stats|reload>", NamedTextColor.YELLOW));
+            return;
+        }
+        
+        switch (args[0].toLowerCase()) {
+            case "stats":
+                source.sendMessage(Component.text("VelocityTabList 运行指标", NamedTextColor.GOLD));
+                for (String line : plugin.getMetrics().summaryLines()) {
+                    source.sendMessage(Component.text(line, NamedTextColor.GRAY));
+                }
+                sendBackendStatus(source);
+                break;
+            case "reload":
+                if (plugin.getConfigManager().reloadConfig()) {
+                    source.sendMessage(Component.text("配置已重新加载", NamedTextColor.GREEN));
+                } else {
+                    source.sendMessage(Component.text("配置重新加载失败，继续使用当前配置，详见控制台", NamedTextColor.RED));
+                }
+                break;
+            default:
+                source.sendMessage(Component.text("未知的子命令: " + args[0], NamedTextColor.RED));
+                break;
+        }
+    }
+    
+    /**
+     * 显示每个后端的在线状态和最近一次成功 ping 报告的玩家数。
+     */
+    private void sendBackendStatus(CommandSource source) {
+        ServerHealthMonitor monitor = plugin.getHealthMonitor();
+        if (monitor == null) {
+            return;
+        }
+        
+        for (RegisteredServer registeredServer : plugin.getServer().getAllServers()) {
+            String serverName = registeredServer.getServerInfo().getName();
+            String players = monitor.getLastPing(serverName)
+                .flatMap(ServerPing::getPlayers)
+                .map(ping -> ping.getOnline() + "/" + ping.getMax())
+                .orElse("-");
+            source.sendMessage(Component.text(String.format("后端 %s: %s, 最近 ping 玩家数 %s", serverName,
+                monitor.isOnline(serverName) ? "在线" : "离线", players), NamedTextColor.GRAY));
+        }
+    }
+    
+    @Override
+    public List<String> suggest(Invocation invocation) {
+        return List.of("stats", "reload");
+    }
+    
+    @Override
+    public boolean hasPermission(Invocation invocation) {
+        return invocation.source().hasPermission(PERMISSION);
+    }
+}
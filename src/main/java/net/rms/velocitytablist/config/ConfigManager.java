@@ -1,19 +1,30 @@
 package net.rms.velocitytablist.config;
 
+import net.rms.velocitytablist.manager.EntryPriority;
 import org.slf4j.Logger;
+import org.spongepowered.configurate.BasicConfigurationNode;
 import org.spongepowered.configurate.ConfigurationNode;
 import org.spongepowered.configurate.yaml.YamlConfigurationLoader;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.InetSocketAddress;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
 
 public class ConfigManager {
     
     private final Path configPath;
     private final Logger logger;
-    private ConfigurationNode config;
+    private final List<BiConsumer<PluginConfig, PluginConfig>> reloadListeners = new CopyOnWriteArrayList<>();
+    
+    // 每次加载配置时递增，用于使已格式化的显示名称失效
+    private final AtomicInteger generation = new AtomicInteger();
+    private volatile PluginConfig current;
     
     public ConfigManager(Path dataDirectory, Logger logger) {
         this.configPath = dataDirectory.resolve("config.yml");
@@ -21,8 +32,9 @@ public class ConfigManager {
         
         try {
             loadConfig();
-        } catch (IOException e) {
-            logger.error("加载配置文件时发生错误", e);
+        } catch (IOException | RuntimeException e) {
+            logger.error("加载配置文件时发生错误，使用默认配置", e);
+            current = PluginConfig.compile(BasicConfigurationNode.root(), generation.incrementAndGet(), logger);
         }
     }
     
@@ -35,7 +47,9 @@ public class ConfigManager {
             .path(configPath)
             .build();
         
-        config = loader.load();
+        // 先完整编译再替换，读取方不会看到只加载了一半的配置
+        ConfigurationNode root = loader.load();
+        current = PluginConfig.compile(root, generation.incrementAndGet(), logger);
         logger.info("配置文件加载完成: {}", configPath);
     }
     
@@ -52,89 +66,150 @@ public class ConfigManager {
         }
     }
     
-    // 使用预设值，不从配置文件读取
-    public boolean isCrossServerEnabled() {
-        return true;
+    /**
+     * 当前配置快照。热路径上应只调用一次并复用返回值。
+     */
+    public PluginConfig getConfig() {
+        return current;
     }
     
-    public boolean isShowPlayerCount() {
-        return true;
+    /**
+     * 注册配置重新加载监听器，参数为旧快照和新快照。
+     */
+    public void addReloadListener(BiConsumer<PluginConfig, PluginConfig> listener) {
+        reloadListeners.add(listener);
     }
     
-    public boolean isShowServerStatus() {
-        return true;
+    public int getMaxPlayersPerServer() {
+        return current.display().maxPlayersPerServer();
     }
     
-    public int getUpdateIntervalSeconds() {
-        return 30;
+    public EntryPriority getEntryPriority() {
+        return current.selection().priority();
     }
     
-    public int getMaxPlayersPerServer() {
-        return 10;
+    public List<Integer> getPermissionWeights() {
+        return current.selection().permissionWeights();
     }
     
-    public String getCurrentServerPrefix() {
-        return "§a➤ ";
+    public long getRefreshDebounceMillis() {
+        return current.refresh().debounceMillis();
     }
     
-    public String getOtherServerPrefix() {
-        return "§7├ ";
+    public boolean isBackendSyncEnabled() {
+        return current.backendSync().enabled();
     }
     
-    public String getServerHeaderFormat() {
-        return "§e§l%s §7(%d人在线)";
+    public long getBackendSyncCoalesceMillis() {
+        return current.backendSync().coalesceMillis();
     }
     
-    public String getCrossServerPlayerFormat() {
-        return "§7%s §8[%s]";
+    public boolean isMetricsEndpointEnabled() {
+        return current.metrics().enabled();
     }
     
-    public String getSeparatorText() {
-        return "";
+    public String getMetricsHost() {
+        return current.metrics().host();
     }
     
-    public boolean isEnableIncrementalUpdates() {
-        return true;
+    public int getMetricsPort() {
+        return current.metrics().port();
     }
     
-    public int getMaxTabListSize() {
-        return 100;
+    public boolean isFederationEnabled() {
+        return current.federation().enabled();
     }
     
-    public boolean isPreserveModInfo() {
-        return true;
+    public String getFederationProxyId() {
+        return current.federation().proxyId();
+    }
+    
+    public String getFederationBindHost() {
+        return current.federation().bindHost();
+    }
+    
+    public int getFederationBindPort() {
+        return current.federation().bindPort();
+    }
+    
+    public List<InetSocketAddress> getFederationPeers() {
+        return current.federation().peers();
+    }
+    
+    public long getFederationFlushMillis() {
+        return current.federation().flushMillis();
+    }
+    
+    public long getFederationChecksumSeconds() {
+        return current.federation().checksumSeconds();
+    }
+    
+    public String getFederationSecret() {
+        return current.federation().secret();
+    }
+    
+    public int getSchedulerWorkerThreads() {
+        return current.scheduler().workerThreads();
+    }
+    
+    public int getSchedulerQueueCapacity() {
+        return current.scheduler().queueCapacity();
+    }
+    
+    public long getSchedulerTickMillis() {
+        return current.scheduler().tickMillis();
+    }
+    
+    public boolean isHealthCheckEnabled() {
+        return current.health().enabled();
     }
     
     public boolean isAutoUpdateEnabled() {
-        return config.node("auto-update", "enabled").getBoolean(true);
+        return current.autoUpdate().enabled();
     }
     
     public int getCheckIntervalHours() {
-        return config.node("auto-update", "check-interval-hours").getInt(24);
+        return current.autoUpdate().checkIntervalHours();
     }
     
     public boolean isAutoDownload() {
-        return config.node("auto-update", "auto-download").getBoolean(true);
+        return current.autoUpdate().autoDownload();
     }
     
     public boolean isCheckOnStartup() {
-        return config.node("auto-update", "check-on-startup").getBoolean(true);
+        return current.autoUpdate().checkOnStartup();
     }
     
     public String getGithubRepo() {
-        return config.node("auto-update", "github-repo").getString("RMS-Server/velocitybettertablist");
+        return current.autoUpdate().githubRepo();
     }
     
     public String getVersionUrl() {
-        return config.node("auto-update", "version-url").getString("https://raw.githubusercontent.com/RMS-Server/velocitybettertablist/main/plugin.version");
+        return current.autoUpdate().versionUrl();
     }
     
-    public void reloadConfig() {
+    /**
+     * 重新加载配置文件。解析失败时保留当前配置。
+     *
+     * @return 是否加载成功
+     */
+    public boolean reloadConfig() {
+        PluginConfig previous = current;
         try {
             loadConfig();
-            logger.info("配置文件重新加载完成");
-        } catch (IOException e) {
-            logger.error("重新加载配置文件时发生错误", e);
+        } catch (IOException | RuntimeException e) {
+            logger.error("重新加载配置文件时发生错误，继续使用当前配置", e);
+            return false;
         }
+        
+        logger.info("配置文件重新加载完成");
+        for (BiConsumer<PluginConfig, PluginConfig> listener : reloadListeners) {
+            try {
+                listener.accept(previous, current);
+            } catch (Exception e) {
+                logger.error("应用新配置时发生错误", e);
+            }
+        }
+        return true;
     }
-}
\ No newline at end of file
+}
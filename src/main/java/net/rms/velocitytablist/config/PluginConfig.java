@@ -0,0 +1,247 @@
+package net.rms.velocitytablist.config;
+
+import net.rms.velocitytablist.manager.EntryPriority;
+import org.slf4j.Logger;
+import org.spongepowered.configurate.ConfigurationNode;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.IllegalFormatException;
+import java.util.List;
+
+/**
+ * 编译后的不可变配置快照。配置文件只在加载时解析和校验一次，
+ * 热路径上读取配置只需要一次 volatile 读取，重新加载时整体替换。
+ *
+ * @param generation 每次重新加载递增，用于使已格式化的显示名称失效
+ */
+public record PluginConfig(int generation, Display display, Refresh refresh, Selection selection,
+                           BackendSync backendSync, Metrics metrics, Federation federation, AutoUpdate autoUpdate,
+                           Scheduler scheduler, Health health) {
+    
+    public record Display(boolean crossServerEnabled, int maxPlayersPerServer, int maxTabListSize,
+                          boolean incrementalUpdates, String playerFormat,
+                          String morePlayersFormat, String afkSuffix, String separatorText) {
+    }
+    
+    /**
+     * @param updateIntervalSeconds 关闭自适应时的完整刷新间隔，开启时为初始间隔
+     */
+    public record Refresh(int updateIntervalSeconds, long debounceMillis, boolean parallel,
+                          int maxThreads, long deadlineMillis, int burstThreshold, int drainPerSecond,
+                          boolean adaptive, int minIntervalSeconds, int maxIntervalSeconds,
+                          double cpuTargetPercent, double churnPerViewer) {
+    }
+    
+    public record Selection(EntryPriority priority, List<Integer> permissionWeights) {
+        
+        public Selection {
+            permissionWeights = List.copyOf(permissionWeights);
+        }
+    }
+    
+    public record BackendSync(boolean enabled, int maxFramesPerSecond, int burst, long coalesceMillis) {
+    }
+    
+    public record Metrics(boolean enabled, String host, int port) {
+    }
+    
+    public record Federation(boolean enabled, String proxyId, String bindHost, int bindPort,
+                             List<InetSocketAddress> peers, long flushMillis, long checksumSeconds,
+                             String secret) {
+        
+        public Federation {
+            peers = List.copyOf(peers);
+        }
+    }
+    
+    public record AutoUpdate(boolean enabled, int checkIntervalHours, boolean autoDownload,
+                             boolean checkOnStartup, String githubRepo, String versionUrl) {
+    }
+    
+    public record Scheduler(int workerThreads, int queueCapacity, long tickMillis) {
+    }
+    
+    public record Health(boolean enabled, int maxInFlight, long timeoutMillis, int minIntervalSeconds,
+                         int maxIntervalSeconds, int failureThreshold) {
+    }
+    
+    /**
+     * 从配置节点编译快照。无效的值会被替换为默认值或限制到有效范围，并记录警告。
+     */
+    public static PluginConfig compile(ConfigurationNode root, int generation, Logger logger) {
+        Compiler compiler = new Compiler(root, logger);
+        
+        Display display = new Display(
+            compiler.bool("display", "cross-server", true),
+            compiler.integer("display", "max-players-per-server", 10, 0, 1000),
+            compiler.integer("display", "max-tab-list-size", 100, 1, 1000),
+            compiler.bool("display", "incremental-updates", true),
+            compiler.format("display", "player-format", "§7%s §8[%s]", "player", "server"),
+            compiler.format("display", "more-players-format", "§7... %2$s 还有 %1$d 名玩家", 1, "server"),
+            compiler.string("display", "afk-suffix", " §8[暂离]"),
+            compiler.string("display", "separator-text", ""));
+        
+        int defaultThreads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+        int minRefreshSeconds = compiler.integer("refresh", "min-interval-seconds", 5, 1, 3600);
+        Refresh refresh = new Refresh(
+            compiler.integer("refresh", "update-interval-seconds", 30, 1, 3600),
+            compiler.longValue("refresh", "debounce-millis", 250L, 0L, 60_000L),
+            compiler.bool("refresh", "parallel", true),
+            compiler.integer("refresh", "max-threads", defaultThreads, 1, 64),
+            compiler.longValue("refresh", "deadline-millis", 2000L, 1L, 60_000L),
+            compiler.integer("refresh", "burst-threshold", 50, 1, 100_000),
+            compiler.integer("refresh", "drain-per-second", 100, 1, 100_000),
+            compiler.bool("refresh", "adaptive", true),
+            minRefreshSeconds,
+            compiler.integer("refresh", "max-interval-seconds", 120, minRefreshSeconds, 3600),
+            compiler.decimal("refresh", "cpu-target-percent", 1.0, 0.01, 100.0),
+            compiler.decimal("refresh", "churn-per-viewer", 2.0, 0.01, 1000.0));
+        
+        Selection selection = new Selection(compiler.priority(), compiler.permissionWeights());
+        
+        BackendSync backendSync = new BackendSync(
+            compiler.bool("backend-sync", "enabled", true),
+            compiler.integer("backend-sync", "max-frames-per-second", 20, 1, 10_000),
+            compiler.integer("backend-sync", "burst", 40, 1, 100_000),
+            compiler.longValue("backend-sync", "coalesce-millis", 100L, 0L, 60_000L));
+        
+        Metrics metrics = new Metrics(
+            compiler.bool("metrics", "enabled", false),
+            compiler.string("metrics", "host", "127.0.0.1"),
+            compiler.integer("metrics", "port", 9464, 1, 65535));
+        
+        Federation federation = new Federation(
+            compiler.bool("federation", "enabled", false),
+            compiler.string("federation", "proxy-id", ""),
+            compiler.string("federation", "bind-host", "127.0.0.1"),
+            compiler.integer("federation", "bind-port", 25590, 1, 65535),
+            compiler.peers(),
+            compiler.longValue("federation", "flush-millis", 200L, 10L, 60_000L),
+            compiler.longValue("federation", "checksum-seconds", 30L, 1L, 3600L),
+            compiler.string("federation", "secret", ""));
+        
+        AutoUpdate autoUpdate = new AutoUpdate(
+            compiler.bool("auto-update", "enabled", true),
+            compiler.integer("auto-update", "check-interval-hours", 24, 1, 24 * 30),
+            compiler.bool("auto-update", "auto-download", true),
+            compiler.bool("auto-update", "check-on-startup", true),
+            compiler.string("auto-update", "github-repo", "RMS-Server/velocitybettertablist"),
+            compiler.string("auto-update", "version-url",
+                "https://raw.githubusercontent.com/RMS-Server/velocitybettertablist/main/plugin.version"));
+        
+        int defaultWorkers = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+        Scheduler scheduler = new Scheduler(
+            compiler.integer("scheduler", "worker-threads", defaultWorkers, 1, 64),
+            compiler.integer("scheduler", "queue-capacity", 1024, 16, 1_000_000),
+            compiler.longValue("scheduler", "tick-millis", 10L, 1L, 1000L));
+        
+        int minIntervalSeconds = compiler.integer("health", "min-interval-seconds", 5, 1, 3600);
+        Health health = new Health(
+            compiler.bool("health", "enabled", true),
+            compiler.integer("health", "max-in-flight", 8, 1, 1024),
+            compiler.longValue("health", "timeout-millis", 3000L, 100L, 60_000L),
+            minIntervalSeconds,
+            compiler.integer("health", "max-interval-seconds", 60, minIntervalSeconds, 3600),
+            compiler.integer("health", "failure-threshold", 2, 1, 100));
+        
+        return new PluginConfig(generation, display, refresh, selection, backendSync, metrics, federation, autoUpdate,
+            scheduler, health);
+    }
+    
+    private static final class Compiler {
+        private final ConfigurationNode root;
+        private final Logger logger;
+        
+        private Compiler(ConfigurationNode root, Logger logger) {
+            this.root = root;
+            this.logger = logger;
+        }
+        
+        private boolean bool(String section, String key, boolean def) {
+            return root.node(section, key).getBoolean(def);
+        }
+        
+        private String string(String section, String key, String def) {
+            return root.node(section, key).getString(def);
+        }
+        
+        private int integer(String section, String key, int def, int min, int max) {
+            return (int) longValue(section, key, def, min, max);
+        }
+        
+        private long longValue(String section, String key, long def, long min, long max) {
+            long value = root.node(section, key).getLong(def);
+            if (value < min || value > max) {
+                long clamped = Math.max(min, Math.min(max, value));
+                logger.warn("配置项 {}.{} 的值 {} 超出范围 [{}, {}]，已使用 {}", section, key, value, min, max, clamped);
+                return clamped;
+            }
+            return value;
+        }
+        
+        private double decimal(String section, String key, double def, double min, double max) {
+            double value = root.node(section, key).getDouble(def);
+            if (!(value >= min && value <= max)) {
+                double clamped = Double.isNaN(value) ? def : Math.max(min, Math.min(max, value));
+                logger.warn("配置项 {}.{} 的值 {} 超出范围 [{}, {}]，已使用 {}", section, key, value, min, max, clamped);
+                return clamped;
+            }
+            return value;
+        }
+        
+        private String format(String section, String key, String def, Object... sample) {
+            String value = string(section, key, def);
+            try {
+                String.format(value, sample);
+                return value;
+            } catch (IllegalFormatException e) {
+                logger.warn("配置项 {}.{} 的格式无效（{}），已使用默认格式", section, key, e.getMessage());
+                return def;
+            }
+        }
+        
+        private EntryPriority priority() {
+            String value = string("selection", "priority", "join-order");
+            EntryPriority priority = EntryPriority.fromConfig(value);
+            if (priority == EntryPriority.JOIN_ORDER && !"join-order".equalsIgnoreCase(value.trim())) {
+                logger.warn("未知的条目优先级 {}，已使用 join-order", value);
+            }
+            return priority;
+        }
+        
+        private List<Integer> permissionWeights() {
+            List<Integer> weights = new ArrayList<>();
+            for (ConfigurationNode node : root.node("selection", "permission-weights").childrenList()) {
+                weights.add(node.getInt());
+            }
+            // 从高到低检查，找到第一个拥有的权重即可
+            weights.sort((a, b) -> Integer.compare(b, a));
+            return weights;
+        }
+        
+        private List<InetSocketAddress> peers() {
+            List<InetSocketAddress> peers = new ArrayList<>();
+            for (ConfigurationNode node : root.node("federation", "peers").childrenList()) {
+                String peer = node.getString();
+                if (peer == null || peer.isBlank()) {
+                    continue;
+                }
+                
+                peer = peer.trim();
+                int separator = peer.lastIndexOf(':');
+                try {
+                    if (separator <= 0) {
+                        throw new IllegalArgumentException("缺少端口");
+                    }
+                    // 不在加载配置时解析域名，连接时再解析
+                    peers.add(InetSocketAddress.createUnresolved(peer.substring(0, separator),
+                        Integer.parseInt(peer.substring(separator + 1))));
+                } catch (IllegalArgumentException e) {
+                    logger.warn("无效的同步对端地址 {}: {}", peer, e.getMessage());
+                }
+            }
+            return peers;
+        }
+    }
+}
@@ -0,0 +1,352 @@
+package net.rms.velocitytablist.federation;
+
+import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.proxy.ProxyServer;
+import net.rms.velocitytablist.manager.CrossServerInfoManager;
+import net.rms.velocitytablist.manager.RemoteRoster;
+import net.rms.velocitytablist.manager.RosterListener;
+import net.rms.velocitytablist.scheduler.PluginScheduler;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 多代理玩家列表同步。
+ * 本代理的玩家变化合并后以带序号的增量帧发布；收到其他代理的增量帧后合并到本地索引。
+ * 定期发布校验和，对端发现序号缺失或校验和不一致时请求全量同步。
+ */
+public class FederationManager implements RosterListener, RemoteRoster {
+    
+    // 对端超过该数量的校验周期没有消息时，移除其所有玩家
+    public static final int EXPIRE_AFTER_CHECKSUM_PERIODS = 3;
+    
+    private final ProxyServer server;
+    private final Logger logger;
+    private final CrossServerInfoManager infoManager;
+    private final FederationTransport transport;
+    private final String proxyId;
+    private final long flushMillis;
+    private final long checksumSeconds;
+    
+    private final PluginScheduler scheduler;
+    
+    // 所有同步状态只在该执行器上修改，任务按顺序在共享工作线程上执行
+    private final Executor executor;
+    private final List<PluginScheduler.Job> jobs = new ArrayList<>();
+    
+    // 尚未发布的本地变化，同一玩家只保留最后一次变化
+    private final Map<UUID, RosterFrame.Change> pending = new LinkedHashMap<>();
+    private long localSequence;
+    private boolean duplicateIdReported;
+    
+    private final Map<String, RemoteProxy> remotes = new ConcurrentHashMap<>();
+    private final Map<UUID, String> owners = new ConcurrentHashMap<>();
+    
+    private volatile boolean isRunning = false;
+    
+    public FederationManager(ProxyServer server, Logger logger, CrossServerInfoManager infoManager,
+                             PluginScheduler scheduler, FederationTransport transport, String proxyId,
+                             long flushMillis, long checksumSeconds) {
+        this.server = server;
+        this.logger = logger;
+        this.scheduler = scheduler;
+        this.executor = scheduler.newSerialExecutor();
+        this.infoManager = infoManager;
+        this.transport = transport;
+        this.proxyId = proxyId;
+        this.flushMillis = flushMillis;
+        this.checksumSeconds = checksumSeconds;
+    }
+    
+    public void start() throws IOException {
+        if (isRunning) {
+            return;
+        }
+        
+        isRunning = true;
+        transport.start(this::receive);
+        
+        jobs.add(scheduler.scheduleAtFixedRate(() -> executor.execute(this::flush),
+            flushMillis, flushMillis, TimeUnit.MILLISECONDS));
+        jobs.add(scheduler.scheduleAtFixedRate(() -> executor.execute(this::publishChecksum),
+            checksumSeconds, checksumSeconds, TimeUnit.SECONDS));
+        
+        // 发布本代理的完整玩家列表，并请求其他代理发送各自的完整列表
+        executor.execute(() -> {
+            publishFull();
+            transport.send(RosterFrame.resync(proxyId, "*").encode());
+        });
+        
+        logger.info("多代理玩家列表同步已启动，代理ID: {}", proxyId);
+    }
+    
+    public void shutdown() {
+        if (!isRunning) {
+            return;
+        }
+        
+        isRunning = false;
+        jobs.forEach(PluginScheduler.Job::cancel);
+        jobs.clear();
+        
+        // 通知其他代理清空本代理的玩家
+        try {
+            CompletableFuture.runAsync(() -> {
+                localSequence++;
+                transport.send(RosterFrame.full(proxyId, localSequence, List.of()).encode());
+            }, executor).get(2, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            logger.debug("发送同步关闭通知失败: {}", e.getMessage());
+        }
+        
+        transport.close();
+    }
+    
+    @Override
+    public void onPlayerMove(UUID playerId, String username, String serverName) {
+        synchronized (pending) {
+            pending.put(playerId, RosterFrame.Change.upsert(playerId, username, serverName));
+        }
+    }
+    
+    @Override
+    public void onPlayerLeave(UUID playerId) {
+        synchronized (pending) {
+            pending.put(playerId, RosterFrame.Change.leave(playerId));
+        }
+    }
+    
+    @Override
+    public void collect(Map<UUID, String> servers, Map<UUID, String> usernames) {
+        for (RemoteProxy remote : remotes.values()) {
+            for (RosterFrame.Change player : remote.players.values()) {
+                servers.put(player.playerId(), player.serverName());
+                usernames.put(player.playerId(), player.username());
+            }
+        }
+    }
+    
+    @Override
+    public boolean contains(UUID playerId) {
+        return owners.containsKey(playerId);
+    }
+    
+    public String getProxyId() {
+        return proxyId;
+    }
+    
+    private void flush() {
+        List<RosterFrame.Change> changes;
+        synchronized (pending) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            changes = new ArrayList<>(pending.values());
+            pending.clear();
+        }
+        
+        try {
+            localSequence++;
+            transport.send(RosterFrame.delta(proxyId, localSequence, changes).encode());
+        } catch (Exception e) {
+            logger.error("发布玩家列表增量时发生错误", e);
+        }
+    }
+    
+    private void publishFull() {
+        // 先发布积压的增量，保证全量帧的序号之后不会再收到更早的变化
+        flush();
+        
+        List<RosterFrame.Change> players = localPlayers();
+        transport.send(RosterFrame.full(proxyId, localSequence, players).encode());
+    }
+    
+    private void publishChecksum() {
+        try {
+            flush();
+            
+            List<RosterFrame.Change> players = localPlayers();
+            transport.send(RosterFrame.checksum(proxyId, localSequence, players.size(),
+                RosterFrame.checksumOf(players)).encode());
+            
+            expireSilentProxies();
+        } catch (Exception e) {
+            logger.error("发布玩家列表校验和时发生错误", e);
+        }
+    }
+    
+    private List<RosterFrame.Change> localPlayers() {
+        List<RosterFrame.Change> players = new ArrayList<>();
+        for (Player player : server.getAllPlayers()) {
+            player.getCurrentServer().ifPresent(conn -> players.add(RosterFrame.Change.upsert(
+                player.getUniqueId(), player.getUsername(), conn.getServerInfo().getName())));
+        }
+        return players;
+    }
+    
+    private void expireSilentProxies() {
+        long expireMillis = TimeUnit.SECONDS.toMillis(checksumSeconds) * EXPIRE_AFTER_CHECKSUM_PERIODS;
+        long now = System.currentTimeMillis();
+        
+        remotes.values().removeIf(remote -> {
+            if (now - remote.lastSeen < expireMillis) {
+                return false;
+            }
+            
+            logger.warn("代理 {} 长时间没有同步消息，移除其 {} 名玩家", remote.proxyId, remote.players.size());
+            for (UUID playerId : new ArrayList<>(remote.players.keySet())) {
+                applyLeave(remote, playerId);
+            }
+            return true;
+        });
+    }
+    
+    private void receive(byte[] data) {
+        try {
+            executor.execute(() -> handle(data));
+        } catch (RejectedExecutionException e) {
+            // 已关闭，忽略
+        }
+    }
+    
+    private void handle(byte[] data) {
+        RosterFrame frame;
+        try {
+            frame = RosterFrame.decode(data);
+        } catch (IOException e) {
+            logger.warn("无法解析玩家列表同步数据: {}", e.getMessage());
+            return;
+        }
+        
+        if (proxyId.equals(frame.getProxyId())) {
+            // 传输不会把本代理发出的帧送回本代理，收到相同ID的帧说明另一个代理使用了相同的ID
+            if (!duplicateIdReported) {
+                duplicateIdReported = true;
+                logger.error("收到代理ID同样为 {} 的同步数据，每个代理的 federation.proxy-id 必须不同，"
+                    + "该代理的玩家不会被同步", proxyId);
+            }
+            return;
+        }
+        
+        if (frame.getType() == RosterFrame.Type.RESYNC) {
+            if (proxyId.equals(frame.getTarget()) || "*".equals(frame.getTarget())) {
+                publishFull();
+            }
+            return;
+        }
+        
+        RemoteProxy remote = remotes.computeIfAbsent(frame.getProxyId(), RemoteProxy::new);
+        remote.lastSeen = System.currentTimeMillis();
+        
+        switch (frame.getType()) {
+            case DELTA:
+                handleDelta(remote, frame);
+                break;
+            case FULL:
+                handleFull(remote, frame);
+                break;
+            case CHECKSUM:
+                handleChecksum(remote, frame);
+                break;
+            default:
+                break;
+        }
+    }
+    
+    private void handleDelta(RemoteProxy remote, RosterFrame frame) {
+        if (remote.synced && frame.getSequence() <= remote.sequence) {
+            // 重复或过期的帧
+            return;
+        }
+        
+        boolean gap = !remote.synced || frame.getSequence() != remote.sequence + 1;
+        for (RosterFrame.Change change : frame.getChanges()) {
+            applyChange(remote, change);
+        }
+        remote.sequence = frame.getSequence();
+        
+        if (gap) {
+            requestResync(remote);
+        }
+    }
+    
+    private void handleFull(RemoteProxy remote, RosterFrame frame) {
+        Set<UUID> stale = new HashSet<>(remote.players.keySet());
+        for (RosterFrame.Change change : frame.getChanges()) {
+            stale.remove(change.playerId());
+            applyChange(remote, change);
+        }
+        for (UUID playerId : stale) {
+            applyLeave(remote, playerId);
+        }
+        
+        remote.sequence = frame.getSequence();
+        remote.synced = true;
+        logger.debug("已从代理 {} 完整同步 {} 名玩家", remote.proxyId, remote.players.size());
+    }
+    
+    private void handleChecksum(RemoteProxy remote, RosterFrame frame) {
+        if (!remote.synced || frame.getSequence() != remote.sequence) {
+            requestResync(remote);
+            return;
+        }
+        
+        if (frame.getPlayerCount() != remote.players.size()
+                || frame.getChecksum() != RosterFrame.checksumOf(remote.players.values())) {
+            logger.debug("代理 {} 的玩家列表校验和不一致，请求完整同步", remote.proxyId);
+            requestResync(remote);
+        }
+    }
+    
+    private void requestResync(RemoteProxy remote) {
+        transport.send(RosterFrame.resync(proxyId, remote.proxyId).encode());
+    }
+    
+    private void applyChange(RemoteProxy remote, RosterFrame.Change change) {
+        if (change.op() == RosterFrame.Op.LEAVE) {
+            applyLeave(remote, change.playerId());
+            return;
+        }
+        
+        remote.players.put(change.playerId(), change);
+        owners.put(change.playerId(), remote.proxyId);
+        
+        // 玩家在本代理在线时以本代理为准
+        if (server.getPlayer(change.playerId()).isEmpty()) {
+            infoManager.applyRemoteMove(change.playerId(), change.username(), change.serverName());
+        }
+    }
+    
+    private void applyLeave(RemoteProxy remote, UUID playerId) {
+        remote.players.remove(playerId);
+        
+        // 玩家已转移到其他代理时，旧代理的离开消息不生效
+        if (owners.remove(playerId, remote.proxyId) && server.getPlayer(playerId).isEmpty()) {
+            infoManager.applyRemoteLeave(playerId);
+        }
+    }
+    
+    private static final class RemoteProxy {
+        private final String proxyId;
+        private final Map<UUID, RosterFrame.Change> players = new ConcurrentHashMap<>();
+        private long sequence;
+        private boolean synced;
+        private volatile long lastSeen = System.currentTimeMillis();
+        
+        private RemoteProxy(String proxyId) {
+            this.proxyId = proxyId;
+        }
+    }
+}
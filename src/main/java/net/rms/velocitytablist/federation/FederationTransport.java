@@ -0,0 +1,17 @@
+package net.rms.velocitytablist.federation;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * 代理之间传输玩家列表数据帧的通道。发送的帧会广播给所有其他代理。
+ * 实现需要线程安全，接收回调可能在任意线程上调用。
+ */
+public interface FederationTransport {
+    
+    void start(Consumer<byte[]> receiver) throws IOException;
+    
+    void send(byte[] frame);
+    
+    void close();
+}
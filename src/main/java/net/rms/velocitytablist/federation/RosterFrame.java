@@ -0,0 +1,212 @@
+package net.rms.velocitytablist.federation;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 代理之间同步玩家列表的二进制数据帧。
+ * <pre>
+ * byte 版本 | byte 类型 | UTF 来源代理 | long 序号 | 类型相关内容
+ *   DELTA/FULL: int 条目数, 每条: byte 操作, long msb, long lsb, [UTF 名称, UTF 服务器]
+ *   CHECKSUM:   int 玩家数, long 校验和
+ *   RESYNC:     UTF 目标代理
+ * </pre>
+ */
+public final class RosterFrame {
+    
+    public static final byte VERSION = 1;
+    
+    public enum Type {
+        DELTA, FULL, CHECKSUM, RESYNC
+    }
+    
+    public enum Op {
+        UPSERT, LEAVE
+    }
+    
+    public record Change(Op op, UUID playerId, String username, String serverName) {
+        
+        public static Change upsert(UUID playerId, String username, String serverName) {
+            return new Change(Op.UPSERT, playerId, username, serverName);
+        }
+        
+        public static Change leave(UUID playerId) {
+            return new Change(Op.LEAVE, playerId, null, null);
+        }
+    }
+    
+    private final Type type;
+    private final String proxyId;
+    private final long sequence;
+    private final List<Change> changes;
+    private final int playerCount;
+    private final long checksum;
+    private final String target;
+    
+    private RosterFrame(Type type, String proxyId, long sequence, List<Change> changes,
+                        int playerCount, long checksum, String target) {
+        this.type = type;
+        this.proxyId = proxyId;
+        this.sequence = sequence;
+        this.changes = changes;
+        this.playerCount = playerCount;
+        this.checksum = checksum;
+        this.target = target;
+    }
+    
+    public static RosterFrame delta(String proxyId, long sequence, List<Change> changes) {
+        return new RosterFrame(Type.DELTA, proxyId, sequence, List.copyOf(changes), 0, 0L, null);
+    }
+    
+    public static RosterFrame full(String proxyId, long sequence, List<Change> changes) {
+        return new RosterFrame(Type.FULL, proxyId, sequence, List.copyOf(changes), 0, 0L, null);
+    }
+    
+    public static RosterFrame checksum(String proxyId, long sequence, int playerCount, long checksum) {
+        return new RosterFrame(Type.CHECKSUM, proxyId, sequence, Collections.emptyList(), playerCount, checksum, null);
+    }
+    
+    public static RosterFrame resync(String proxyId, String target) {
+        return new RosterFrame(Type.RESYNC, proxyId, 0L, Collections.emptyList(), 0, 0L, target);
+    }
+    
+    public Type getType() {
+        return type;
+    }
+    
+    public String getProxyId() {
+        return proxyId;
+    }
+    
+    public long getSequence() {
+        return sequence;
+    }
+    
+    public List<Change> getChanges() {
+        return changes;
+    }
+    
+    public int getPlayerCount() {
+        return playerCount;
+    }
+    
+    public long getChecksum() {
+        return checksum;
+    }
+    
+    public String getTarget() {
+        return target;
+    }
+    
+    public byte[] encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + changes.size() * 48);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            out.writeByte(type.ordinal());
+            out.writeUTF(proxyId);
+            out.writeLong(sequence);
+            
+            switch (type) {
+                case DELTA:
+                case FULL:
+                    out.writeInt(changes.size());
+                    for (Change change : changes) {
+                        out.writeByte(change.op().ordinal());
+                        out.writeLong(change.playerId().getMostSignificantBits());
+                        out.writeLong(change.playerId().getLeastSignificantBits());
+                        if (change.op() == Op.UPSERT) {
+                            out.writeUTF(change.username());
+                            out.writeUTF(change.serverName());
+                        }
+                    }
+                    break;
+                case CHECKSUM:
+                    out.writeInt(playerCount);
+                    out.writeLong(checksum);
+                    break;
+                case RESYNC:
+                    out.writeUTF(target);
+                    break;
+                default:
+                    break;
+            }
+        } catch (IOException e) {
+            // 写入内存流不会发生 IO 异常
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+    
+    public static RosterFrame decode(byte[] data) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            byte version = in.readByte();
+            if (version != VERSION) {
+                throw new IOException("不支持的同步协议版本: " + version);
+            }
+            
+            int typeId = in.readUnsignedByte();
+            if (typeId >= Type.values().length) {
+                throw new IOException("未知的帧类型: " + typeId);
+            }
+            Type type = Type.values()[typeId];
+            String proxyId = in.readUTF();
+            long sequence = in.readLong();
+            
+            switch (type) {
+                case DELTA:
+                case FULL: {
+                    int count = in.readInt();
+                    if (count < 0) {
+                        throw new IOException("无效的条目数: " + count);
+                    }
+                    
+                    List<Change> changes = new ArrayList<>(Math.min(count, 4096));
+                    for (int i = 0; i < count; i++) {
+                        int opId = in.readUnsignedByte();
+                        if (opId >= Op.values().length) {
+                            throw new IOException("未知的操作: " + opId);
+                        }
+                        Op op = Op.values()[opId];
+                        UUID playerId = new UUID(in.readLong(), in.readLong());
+                        if (op == Op.UPSERT) {
+                            changes.add(Change.upsert(playerId, in.readUTF(), in.readUTF()));
+                        } else {
+                            changes.add(Change.leave(playerId));
+                        }
+                    }
+                    return new RosterFrame(type, proxyId, sequence, changes, 0, 0L, null);
+                }
+                case CHECKSUM:
+                    return checksum(proxyId, sequence, in.readInt(), in.readLong());
+                case RESYNC:
+                    return resync(proxyId, in.readUTF());
+                default:
+                    throw new IOException("未知的帧类型: " + type);
+            }
+        }
+    }
+    
+    /**
+     * 与顺序无关的玩家列表校验和，两端对同一组玩家计算出的结果相同。
+     */
+    public static long checksumOf(Iterable<Change> players) {
+        long sum = 0;
+        for (Change player : players) {
+            long hash = player.playerId().getMostSignificantBits() * 31 + player.playerId().getLeastSignificantBits();
+            hash = hash * 31 + player.serverName().hashCode();
+            hash = hash * 31 + player.username().hashCode();
+            hash ^= hash >>> 33;
+            hash *= 0xff51afd7ed558ccdL;
+            hash ^= hash >>> 33;
+            sum += hash;
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,448 @@
+package net.rms.velocitytablist.federation;
+
+import org.slf4j.Logger;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 基于 TCP 的传输实现。每个代理监听一个端口接收其他代理的数据帧，
+ * 并主动连接配置中的所有对端发送数据帧。帧格式为 int 长度 + 内容。
+ *
+ * <p>只接受来自已配置对端地址的连接。对端地址在启动时解析并缓存，之后由各对端的发送线程在重连时
+ * 重新解析，接受线程不做 DNS 查询。连接建立后双方互相认证：接收方发送随机数，发送方以自己的随机数
+ * 和共享密钥的 HMAC 应答，接收方校验后再以 HMAC 应答，双方都通过后才开始传输数据帧。
+ * 每个对端有独立的发送线程和有界的发送队列，不可达或过慢的对端不会阻塞调用方；
+ * 队列满时丢弃积压的帧，对端从序号缺口发现丢失后会请求完整同步。
+ *
+ * <p>握手之后的数据帧既不加密也没有逐帧的消息认证码，同步链路必须运行在可信的内网中。
+ */
+public class TcpTransport implements FederationTransport {
+    
+    private static final int MAX_FRAME_SIZE = 4 * 1024 * 1024;
+    private static final int CONNECT_TIMEOUT_MILLIS = 2000;
+    private static final int HANDSHAKE_TIMEOUT_MILLIS = 5000;
+    private static final long RECONNECT_INTERVAL_MILLIS = 5000;
+    private static final long CLOSE_TIMEOUT_MILLIS = 1000;
+    private static final int OUTBOX_CAPACITY = 256;
+    private static final int NONCE_LENGTH = 16;
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final byte[] MAC_CONTEXT = "velocitytablist-federation-v2".getBytes(StandardCharsets.UTF_8);
+    // 区分双方的应答，防止把一方的 HMAC 反射给另一方
+    private static final byte ROLE_DIALER = 1;
+    private static final byte ROLE_ACCEPTOR = 2;
+    
+    // 每个对端允许的入站连接数，对端重连时旧连接可能尚未超时；
+    // 多个对端使用同一地址时无法区分，按该地址上配置的对端数量放宽
+    private static final int INBOUND_PER_PEER = 2;
+    
+    private final Logger logger;
+    private final InetSocketAddress bindAddress;
+    private final SecretKeySpec key;
+    private final int readTimeoutMillis;
+    private final List<Peer> peers = new ArrayList<>();
+    private final Set<Socket> inbound = ConcurrentHashMap.newKeySet();
+    private final SecureRandom random = new SecureRandom();
+    
+    private volatile ServerSocket serverSocket;
+    private volatile boolean running;
+    
+    /**
+     * @param secret            所有代理共享的密钥，不能为空
+     * @param readTimeoutMillis 入站连接超过该时间没有数据时断开
+     */
+    public TcpTransport(Logger logger, InetSocketAddress bindAddress, List<InetSocketAddress> peerAddresses,
+                        String secret, long readTimeoutMillis) {
+        if (secret == null || secret.isEmpty()) {
+            throw new IllegalArgumentException("共享密钥不能为空");
+        }
+        
+        this.logger = logger;
+        this.bindAddress = bindAddress;
+        this.key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), MAC_ALGORITHM);
+        this.readTimeoutMillis = (int) Math.min(Integer.MAX_VALUE, readTimeoutMillis);
+        for (InetSocketAddress address : peerAddresses) {
+            peers.add(new Peer(address));
+        }
+    }
+    
+    @Override
+    public void start(Consumer<byte[]> receiver) throws IOException {
+        running = true;
+        for (Peer peer : peers) {
+            peer.resolve();
+        }
+        serverSocket = new ServerSocket();
+        serverSocket.bind(bindAddress);
+        
+        Thread acceptThread = new Thread(() -> acceptLoop(receiver), "VelocityTabList-Federation-Accept");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+        
+        for (Peer peer : peers) {
+            peer.start();
+        }
+        
+        logger.info("玩家列表同步监听: {}", bindAddress);
+    }
+    
+    private void acceptLoop(Consumer<byte[]> receiver) {
+        while (running) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                if (running) {
+                    logger.warn("接受同步连接时发生错误: {}", e.getMessage());
+                }
+                continue;
+            }
+            
+            InetAddress address = socket.getInetAddress();
+            int peersAtAddress = countPeersAt(address);
+            if (peersAtAddress == 0) {
+                logger.warn("拒绝来自 {} 的同步连接: 不是已配置的对端", socket.getRemoteSocketAddress());
+                closeQuietly(socket);
+                continue;
+            }
+            
+            // 按对端计数，单个对端不断重连不会占满其他对端的名额；
+            // 只有接受线程添加连接，检查和添加之间数量不会增加
+            int limit = peersAtAddress * INBOUND_PER_PEER;
+            if (countInbound(address) >= limit) {
+                logger.warn("来自 {} 的同步连接数已达上限 {}，拒绝新的连接", address, limit);
+                closeQuietly(socket);
+                continue;
+            }
+            inbound.add(socket);
+            
+            Thread readThread = new Thread(() -> readLoop(socket, receiver),
+                "VelocityTabList-Federation-" + socket.getRemoteSocketAddress());
+            readThread.setDaemon(true);
+            readThread.start();
+        }
+    }
+    
+    /**
+     * 返回缓存的解析结果中包含该地址的已配置对端数量，不是对端地址时返回 0。
+     */
+    private int countPeersAt(InetAddress address) {
+        int count = 0;
+        for (Peer peer : peers) {
+            for (InetAddress resolved : peer.resolved) {
+                if (resolved.equals(address)) {
+                    count++;
+                    break;
+                }
+            }
+        }
+        return count;
+    }
+    
+    private int countInbound(InetAddress address) {
+        int count = 0;
+        for (Socket socket : inbound) {
+            if (address.equals(socket.getInetAddress())) {
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    private void readLoop(Socket socket, Consumer<byte[]> receiver) {
+        try (DataInputStream in = new DataInputStream(socket.getInputStream())) {
+            if (!authenticate(socket, in)) {
+                logger.warn("同步连接 {} 认证失败，请检查各代理的 federation.secret 是否一致",
+                    socket.getRemoteSocketAddress());
+                return;
+            }
+            socket.setSoTimeout(readTimeoutMillis);
+            
+            while (running) {
+                int length = in.readInt();
+                if (length <= 0 || length > MAX_FRAME_SIZE) {
+                    throw new IOException("无效的帧长度: " + length);
+                }
+                
+                byte[] frame = new byte[length];
+                in.readFully(frame);
+                receiver.accept(frame);
+            }
+        } catch (IOException e) {
+            if (running) {
+                logger.debug("同步连接 {} 已断开: {}", socket.getRemoteSocketAddress(), e.getMessage());
+            }
+        } finally {
+            inbound.remove(socket);
+            closeQuietly(socket);
+        }
+    }
+    
+    /**
+     * 接收方的握手：发送随机数，校验发送方对双方随机数计算的 HMAC，通过后以自己的 HMAC 应答，
+     * 让发送方确认接收方同样持有密钥。
+     */
+    private boolean authenticate(Socket socket, DataInputStream in) throws IOException {
+        socket.setSoTimeout(HANDSHAKE_TIMEOUT_MILLIS);
+        
+        byte[] acceptorNonce = new byte[NONCE_LENGTH];
+        random.nextBytes(acceptorNonce);
+        DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+        out.write(acceptorNonce);
+        out.flush();
+        
+        byte[] dialerNonce = new byte[NONCE_LENGTH];
+        in.readFully(dialerNonce);
+        byte[] expected = mac(ROLE_DIALER, acceptorNonce, dialerNonce);
+        byte[] response = new byte[expected.length];
+        in.readFully(response);
+        if (!MessageDigest.isEqual(expected, response)) {
+            return false;
+        }
+        
+        out.write(mac(ROLE_ACCEPTOR, acceptorNonce, dialerNonce));
+        out.flush();
+        return true;
+    }
+    
+    private byte[] mac(byte role, byte[] acceptorNonce, byte[] dialerNonce) throws IOException {
+        try {
+            Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(key);
+            mac.update(MAC_CONTEXT);
+            mac.update(role);
+            mac.update(acceptorNonce);
+            return mac.doFinal(dialerNonce);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("无法计算 " + MAC_ALGORITHM, e);
+        }
+    }
+    
+    @Override
+    public void send(byte[] frame) {
+        for (Peer peer : peers) {
+            peer.offer(frame);
+        }
+    }
+    
+    @Override
+    public void close() {
+        running = false;
+        
+        ServerSocket socket = serverSocket;
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // 关闭时忽略
+            }
+        }
+        
+        inbound.forEach(TcpTransport::closeQuietly);
+        inbound.clear();
+        
+        // 给发送线程一点时间发出已排队的帧（例如关闭通知）
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(CLOSE_TIMEOUT_MILLIS);
+        for (Peer peer : peers) {
+            peer.close(deadline);
+        }
+    }
+    
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+            // 关闭时忽略
+        }
+    }
+    
+    private final class Peer implements Runnable {
+        private final InetSocketAddress address;
+        private final BlockingQueue<byte[]> outbox = new ArrayBlockingQueue<>(OUTBOX_CAPACITY);
+        private Thread thread;
+        
+        // 对端地址的解析结果，由接受线程读取
+        private volatile InetAddress[] resolved = new InetAddress[0];
+        private volatile boolean overflowed;
+        
+        // 以下字段只在发送线程中修改
+        private volatile Socket socket;
+        private DataOutputStream out;
+        private long lastAttempt = -RECONNECT_INTERVAL_MILLIS;
+        
+        private Peer(InetSocketAddress address) {
+            this.address = address;
+        }
+        
+        /**
+         * 解析对端地址并缓存。解析失败时保留上一次的结果。
+         */
+        private void resolve() {
+            try {
+                resolved = InetAddress.getAllByName(address.getHostString());
+            } catch (UnknownHostException e) {
+                logger.debug("无法解析同步对端 {}: {}", address, e.getMessage());
+            }
+        }
+        
+        private void start() {
+            thread = new Thread(this, "VelocityTabList-Federation-Send-" + address);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        
+        private void offer(byte[] frame) {
+            if (outbox.offer(frame)) {
+                return;
+            }
+            
+            // 积压的帧已经没有意义，丢弃后对端会从序号缺口发现丢失并请求完整同步
+            outbox.clear();
+            outbox.offer(frame);
+            if (!overflowed) {
+                overflowed = true;
+                logger.warn("同步对端 {} 的发送队列已满，丢弃积压的数据", address);
+            }
+        }
+        
+        @Override
+        public void run() {
+            while (true) {
+                byte[] frame;
+                try {
+                    frame = outbox.poll(100, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    break;
+                }
+                
+                if (frame == null) {
+                    if (!running) {
+                        break;
+                    }
+                    continue;
+                }
+                
+                // 未连接时直接丢弃，重新连接后对端同样会从序号缺口请求完整同步
+                if (!ensureConnected()) {
+                    continue;
+                }
+                
+                try {
+                    out.writeInt(frame.length);
+                    out.write(frame);
+                    out.flush();
+                    overflowed = false;
+                } catch (IOException e) {
+                    logger.debug("向 {} 发送同步数据失败: {}", address, e.getMessage());
+                    disconnect();
+                }
+            }
+            disconnect();
+        }
+        
+        private boolean ensureConnected() {
+            if (socket != null) {
+                return true;
+            }
+            
+            long now = System.currentTimeMillis();
+            if (!running || now - lastAttempt < RECONNECT_INTERVAL_MILLIS) {
+                return false;
+            }
+            lastAttempt = now;
+            
+            // 每次重连在发送线程中重新解析地址并更新入站白名单，对端地址变化后无需重启
+            resolve();
+            
+            Socket newSocket = new Socket();
+            try {
+                newSocket.setTcpNoDelay(true);
+                newSocket.connect(new InetSocketAddress(address.getHostString(), address.getPort()),
+                    CONNECT_TIMEOUT_MILLIS);
+                
+                // 发送方的握手：以自己的随机数和 HMAC 应答接收方的随机数，再校验接收方的 HMAC
+                newSocket.setSoTimeout(HANDSHAKE_TIMEOUT_MILLIS);
+                DataInputStream in = new DataInputStream(newSocket.getInputStream());
+                byte[] acceptorNonce = new byte[NONCE_LENGTH];
+                in.readFully(acceptorNonce);
+                byte[] dialerNonce = new byte[NONCE_LENGTH];
+                random.nextBytes(dialerNonce);
+                DataOutputStream newOut = new DataOutputStream(new BufferedOutputStream(newSocket.getOutputStream()));
+                newOut.write(dialerNonce);
+                newOut.write(mac(ROLE_DIALER, acceptorNonce, dialerNonce));
+                newOut.flush();
+                
+                byte[] expected = mac(ROLE_ACCEPTOR, acceptorNonce, dialerNonce);
+                byte[] response = new byte[expected.length];
+                in.readFully(response);
+                if (!MessageDigest.isEqual(expected, response)) {
+                    logger.warn("同步对端 {} 认证失败，请检查各代理的 federation.secret 是否一致", address);
+                    closeQuietly(newSocket);
+                    return false;
+                }
+                newSocket.setSoTimeout(0);
+                
+                socket = newSocket;
+                out = newOut;
+                logger.info("已连接到同步对端 {}", address);
+                return true;
+            } catch (IOException e) {
+                logger.debug("连接同步对端 {} 失败: {}", address, e.getMessage());
+                closeQuietly(newSocket);
+                return false;
+            }
+        }
+        
+        private void disconnect() {
+            Socket current = socket;
+            if (current != null) {
+                closeQuietly(current);
+                socket = null;
+                out = null;
+            }
+        }
+        
+        private void close(long deadline) {
+            Thread current = thread;
+            if (current == null) {
+                return;
+            }
+            
+            try {
+                current.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            
+            // 仍在阻塞写入时关闭连接使其退出
+            if (current.isAlive()) {
+                Socket blocked = socket;
+                if (blocked != null) {
+                    closeQuietly(blocked);
+                }
+                current.interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package net.rms.velocitytablist.handler;
+
+import com.google.common.io.ByteArrayDataInput;
+
+import java.util.UUID;
+
+/**
+ * 后端服务器通过 velocitytablist:sync 通道推送的玩家状态帧。
+ * 直接在插件消息的原始数据上逐条读取，不复制数据，也不为每条记录创建中间对象。
+ * <pre>
+ * byte 版本 | byte 类型 | unsigned short 记录数 | 记录...
+ *   记录: long msb, long lsb, byte 字段掩码,
+ *         [byte 标志 (bit0 暂离, bit1 隐身)]  掩码包含 AFK 或 VANISH 时
+ *         [byte 游戏模式]                     掩码包含 GAME_MODE 时
+ *         [UTF 世界名称]                      掩码包含 WORLD 时
+ * </pre>
+ * DELTA 帧只包含发生变化的字段；FULL 帧包含后端上所有玩家的完整状态，未出现的玩家恢复为默认状态。
+ * 代理发往后端的 RESYNC 帧只有版本和类型，后端收到后应推送一次 FULL 帧。
+ */
+public final class BackendFrameReader {
+    
+    public static final int VERSION = 1;
+    
+    public static final int TYPE_DELTA = 0;
+    public static final int TYPE_FULL = 1;
+    public static final int TYPE_RESYNC = 2;
+    
+    public static final int FIELD_AFK = 1;
+    public static final int FIELD_GAME_MODE = 1 << 1;
+    public static final int FIELD_WORLD = 1 << 2;
+    public static final int FIELD_VANISH = 1 << 3;
+    
+    private static final int FLAG_AFK = 1;
+    private static final int FLAG_VANISH = 1 << 1;
+    
+    private final ByteArrayDataInput in;
+    private final int type;
+    private int remaining;
+    
+    private UUID playerId;
+    private int fields;
+    private int flags;
+    private int gameMode;
+    private String world;
+    
+    /**
+     * @throws IllegalArgumentException 版本或类型不受支持时
+     */
+    public BackendFrameReader(ByteArrayDataInput in) {
+        this.in = in;
+        
+        int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("不支持的后端同步协议版本: " + version);
+        }
+        
+        type = in.readUnsignedByte();
+        if (type != TYPE_DELTA && type != TYPE_FULL) {
+            throw new IllegalArgumentException("未知的后端同步帧类型: " + type);
+        }
+        remaining = in.readUnsignedShort();
+    }
+    
+    public static byte[] resyncRequest() {
+        return new byte[]{VERSION, TYPE_RESYNC};
+    }
+    
+    public boolean isFull() {
+        return type == TYPE_FULL;
+    }
+    
+    /**
+     * 读取下一条记录。
+     *
+     * @return 没有更多记录时返回 false
+     */
+    public boolean next() {
+        if (remaining == 0) {
+            return false;
+        }
+        remaining--;
+        
+        playerId = new UUID(in.readLong(), in.readLong());
+        fields = in.readUnsignedByte();
+        flags = (fields & (FIELD_AFK | FIELD_VANISH)) != 0 ? in.readUnsignedByte() : 0;
+        gameMode = (fields & FIELD_GAME_MODE) != 0 ? in.readUnsignedByte() : 0;
+        world = (fields & FIELD_WORLD) != 0 ? in.readUTF() : null;
+        return true;
+    }
+    
+    public UUID playerId() {
+        return playerId;
+    }
+    
+    public int fields() {
+        return fields;
+    }
+    
+    public boolean isAfk() {
+        return (flags & FLAG_AFK) != 0;
+    }
+    
+    public boolean isVanished() {
+        return (flags & FLAG_VANISH) != 0;
+    }
+    
+    public int gameMode() {
+        return gameMode;
+    }
+    
+    public String world() {
+        return world;
+    }
+}
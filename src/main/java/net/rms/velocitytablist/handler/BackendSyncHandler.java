@@ -0,0 +1,236 @@
+package net.rms.velocitytablist.handler;
+
+import com.velocitypowered.api.event.Subscribe;
+import com.velocitypowered.api.event.connection.PluginMessageEvent;
+import com.velocitypowered.api.proxy.ProxyServer;
+import com.velocitypowered.api.proxy.ServerConnection;
+import com.velocitypowered.api.proxy.messages.MinecraftChannelIdentifier;
+import net.rms.velocitytablist.VelocityTabListPlugin;
+import net.rms.velocitytablist.config.PluginConfig;
+import net.rms.velocitytablist.manager.CrossServerInfoManager;
+import net.rms.velocitytablist.manager.PlayerStatus;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.UnaryOperator;
+
+/**
+ * 接收后端服务器推送的玩家状态。
+ * 每个后端单独限流：超出速率的消息直接丢弃，并在下一次应用时请求后端重新推送完整状态；
+ * 合并窗口内收到的多条消息按玩家合并后只应用一次。
+ */
+public class BackendSyncHandler {
+    
+    public static final MinecraftChannelIdentifier CHANNEL = MinecraftChannelIdentifier.create("velocitytablist", "sync");
+    
+    private final VelocityTabListPlugin plugin;
+    private final ProxyServer server;
+    private final CrossServerInfoManager infoManager;
+    
+    private final ConcurrentMap<String, Backend> backends = new ConcurrentHashMap<>();
+    
+    public BackendSyncHandler(VelocityTabListPlugin plugin, ProxyServer server, CrossServerInfoManager infoManager) {
+        this.plugin = plugin;
+        this.server = server;
+        this.infoManager = infoManager;
+    }
+    
+    @Subscribe
+    public void onPluginMessage(PluginMessageEvent event) {
+        if (!CHANNEL.equals(event.getIdentifier())) {
+            return;
+        }
+        
+        // 同步消息只在代理内部处理，不转发给玩家或后端
+        event.setResult(PluginMessageEvent.ForwardResult.handled());
+        
+        // 忽略客户端发来的伪造消息
+        if (!(event.getSource() instanceof ServerConnection)) {
+            return;
+        }
+        
+        String serverName = ((ServerConnection) event.getSource()).getServerInfo().getName();
+        Backend backend = backends.computeIfAbsent(serverName, Backend::new);
+        PluginConfig.BackendSync config = plugin.getConfigManager().getConfig().backendSync();
+        
+        if (!backend.tryAcquire(config.maxFramesPerSecond(), config.burst())) {
+            plugin.getMetrics().recordBackendFrame(false);
+            if (!backend.resyncNeeded) {
+                plugin.getLogger().warn("后端服务器 {} 推送过于频繁，已丢弃部分状态消息", serverName);
+            }
+            backend.resyncNeeded = true;
+            scheduleFlush(backend);
+            return;
+        }
+        
+        try {
+            backend.merge(new BackendFrameReader(event.dataAsDataStream()));
+            plugin.getMetrics().recordBackendFrame(true);
+        } catch (RuntimeException e) {
+            // ByteArrayDataInput 读取越界时抛出 IllegalStateException
+            plugin.getLogger().warn("无法解析后端服务器 {} 的状态消息: {}", serverName, e.getMessage());
+            backend.resyncNeeded = true;
+        }
+        
+        scheduleFlush(backend);
+    }
+    
+    private void scheduleFlush(Backend backend) {
+        if (!backend.flushScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        
+        try {
+            plugin.getScheduler().schedule(() -> flush(backend),
+                plugin.getConfigManager().getBackendSyncCoalesceMillis(), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // 已关闭，忽略
+            backend.flushScheduled.set(false);
+        }
+    }
+    
+    private void flush(Backend backend) {
+        backend.flushScheduled.set(false);
+        
+        Batch batch = backend.drain();
+        try {
+            if (!batch.updates().isEmpty() || batch.full()) {
+                infoManager.applyBackendStatus(backend.serverName, batch.updates(), batch.full());
+            }
+        } catch (Exception e) {
+            plugin.getLogger().error("应用后端服务器 {} 的玩家状态时发生错误", backend.serverName, e);
+        }
+        
+        if (backend.resyncNeeded) {
+            backend.resyncNeeded = false;
+            server.getServer(backend.serverName).ifPresent(registered ->
+                registered.sendPluginMessage(CHANNEL, BackendFrameReader.resyncRequest()));
+        }
+    }
+    
+    static final class Backend {
+        private final String serverName;
+        private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+        private volatile boolean resyncNeeded;
+        
+        // 令牌桶
+        private double tokens = -1;
+        private long lastRefill;
+        
+        private Map<UUID, StatusPatch> pending = new HashMap<>();
+        private boolean full;
+        
+        Backend(String serverName) {
+            this.serverName = serverName;
+        }
+        
+        private synchronized boolean tryAcquire(int ratePerSecond, int burst) {
+            long now = System.nanoTime();
+            if (tokens < 0) {
+                tokens = burst;
+            } else {
+                tokens = Math.min(burst, tokens + (now - lastRefill) * ratePerSecond / 1e9);
+            }
+            lastRefill = now;
+            
+            if (tokens < 1) {
+                return false;
+            }
+            tokens--;
+            return true;
+        }
+        
+        /**
+         * 合并一帧状态。整帧解析完成后才修改待应用的状态，损坏的帧不会留下部分记录。
+         *
+         * @throws IllegalStateException 帧数据被截断时
+         */
+        synchronized void merge(BackendFrameReader reader) {
+            Map<UUID, StatusPatch> parsed = new HashMap<>();
+            while (reader.next()) {
+                StatusPatch patch = new StatusPatch(reader, reader.isFull());
+                parsed.merge(reader.playerId(), patch, (older, newer) -> newer.after(older));
+            }
+            
+            if (reader.isFull()) {
+                // 完整状态覆盖之前尚未应用的变化
+                pending = parsed;
+                full = true;
+                return;
+            }
+            parsed.forEach((playerId, patch) -> pending.merge(playerId, patch, (older, newer) -> newer.after(older)));
+        }
+        
+        /**
+         * 取出并清空待应用的状态。
+         */
+        synchronized Batch drain() {
+            Batch batch = new Batch(pending, full);
+            pending = new HashMap<>();
+            full = false;
+            return batch;
+        }
+    }
+    
+    /**
+     * 一个合并窗口内待应用的状态。full 为 true 时未出现的玩家恢复为默认状态。
+     */
+    record Batch(Map<UUID, StatusPatch> updates, boolean full) {
+    }
+    
+    /**
+     * 单个玩家的状态变化，只覆盖掩码中包含的字段。
+     */
+    static final class StatusPatch implements UnaryOperator<PlayerStatus> {
+        private final boolean replace;
+        private final int fields;
+        private final boolean afk;
+        private final int gameMode;
+        private final String world;
+        private final boolean vanished;
+        
+        private StatusPatch(BackendFrameReader reader, boolean replace) {
+            this(replace, reader.fields(), reader.isAfk(),
+                reader.gameMode() <= 3 ? reader.gameMode() : 0, reader.world(), reader.isVanished());
+        }
+        
+        private StatusPatch(boolean replace, int fields, boolean afk, int gameMode, String world, boolean vanished) {
+            this.replace = replace;
+            this.fields = fields;
+            this.afk = afk;
+            this.gameMode = gameMode;
+            this.world = world;
+            this.vanished = vanished;
+        }
+        
+        /**
+         * 合并两次变化，结果等价于先应用 older 再应用本变化。
+         */
+        private StatusPatch after(StatusPatch older) {
+            if (replace) {
+                return this;
+            }
+            
+            PlayerStatus base = older.apply(PlayerStatus.DEFAULT);
+            PlayerStatus merged = apply(base);
+            return new StatusPatch(older.replace, fields | older.fields,
+                merged.afk(), merged.gameMode(), merged.world(), merged.vanished());
+        }
+        
+        @Override
+        public PlayerStatus apply(PlayerStatus current) {
+            PlayerStatus base = replace ? PlayerStatus.DEFAULT : current;
+            return new PlayerStatus(
+                (fields & BackendFrameReader.FIELD_AFK) != 0 ? afk : base.afk(),
+                (fields & BackendFrameReader.FIELD_GAME_MODE) != 0 ? gameMode : base.gameMode(),
+                (fields & BackendFrameReader.FIELD_WORLD) != 0 ? world : base.world(),
+                (fields & BackendFrameReader.FIELD_VANISH) != 0 ? vanished : base.vanished());
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package net.rms.velocitytablist.handler;
+
+import com.velocitypowered.api.proxy.Player;
+import net.rms.velocitytablist.VelocityTabListPlugin;
+import net.rms.velocitytablist.config.PluginConfig;
+import net.rms.velocitytablist.manager.CrossServerInfoManager;
+import net.rms.velocitytablist.scheduler.PluginScheduler;
+import net.rms.velocitytablist.util.TabListUpdater;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单个玩家Tab列表重建请求的准入控制。
+ * 平时请求立即交给调度器执行，不占用事件线程；短时间内请求过多（后端崩溃、代理重启后大量玩家同时进入）时，
+ * 请求按玩家排队，同一玩家只保留最新的一次，再由调度器按配置的速率逐批执行，
+ * 刚进入的玩家的首次填充优先于切换服务器的玩家。
+ */
+final class RebuildAdmission {
+    
+    private static final long DRAIN_TICK_MILLIS = 50;
+    
+    private final VelocityTabListPlugin plugin;
+    private final CrossServerInfoManager infoManager;
+    
+    // 以下字段由 this 保护
+    private final Map<Player, TabListUpdater> firstFills = new LinkedHashMap<>();
+    private final Map<Player, TabListUpdater> rebuilds = new LinkedHashMap<>();
+    private PluginScheduler.Job drainJob;
+    private double credit;
+    
+    // 令牌桶，令牌耗尽即视为突发
+    private double tokens = -1;
+    private long lastRefill;
+    
+    RebuildAdmission(VelocityTabListPlugin plugin, CrossServerInfoManager infoManager) {
+        this.plugin = plugin;
+        this.infoManager = infoManager;
+        plugin.getMetrics().registerAdmission(this::pending);
+    }
+    
+    /**
+     * 提交一次重建请求。
+     *
+     * @param firstFill 是否是玩家进入代理后的首次填充
+     */
+    void submit(Player viewer, TabListUpdater updater, boolean firstFill) {
+        PluginConfig.Refresh config = plugin.getConfigManager().getConfig().refresh();
+        synchronized (this) {
+            // 已有排队的请求时新请求也要排队，否则会插到排队的玩家前面
+            if (!firstFills.isEmpty() || !rebuilds.isEmpty() || !tryAcquire(config.burstThreshold())) {
+                boolean coalesced = enqueue(viewer, updater, firstFill);
+                plugin.getMetrics().recordRebuildRequest(true, coalesced);
+                startDraining();
+                return;
+            }
+        }
+        
+        plugin.getMetrics().recordRebuildRequest(false, false);
+        try {
+            // 使用当前快照渲染；触发请求的玩家变化已标记为脏，由批量刷新重新构建快照并再次更新
+            plugin.getScheduler().execute(updater::updateTabList);
+        } catch (RejectedExecutionException e) {
+            // 已关闭，忽略
+        }
+    }
+    
+    /**
+     * 丢弃玩家尚未执行的请求。
+     */
+    synchronized void cancel(Player viewer) {
+        firstFills.remove(viewer);
+        rebuilds.remove(viewer);
+    }
+    
+    synchronized void shutdown() {
+        if (drainJob != null) {
+            drainJob.cancel();
+            drainJob = null;
+        }
+        firstFills.clear();
+        rebuilds.clear();
+    }
+    
+    private synchronized long pending() {
+        return firstFills.size() + rebuilds.size();
+    }
+    
+    private boolean enqueue(Player viewer, TabListUpdater updater, boolean firstFill) {
+        // 首次填充尚未执行时，后续的请求并入首次填充，保持优先级
+        if (firstFills.containsKey(viewer)) {
+            firstFills.put(viewer, updater);
+            return true;
+        }
+        if (firstFill) {
+            return firstFills.put(viewer, updater) != null | rebuilds.remove(viewer) != null;
+        }
+        return rebuilds.put(viewer, updater) != null;
+    }
+    
+    private boolean tryAcquire(int burstThreshold) {
+        long now = System.nanoTime();
+        if (tokens < 0) {
+            tokens = burstThreshold;
+        } else {
+            tokens = Math.min(burstThreshold, tokens + (now - lastRefill) * burstThreshold / 1e9);
+        }
+        lastRefill = now;
+        
+        if (tokens < 1) {
+            return false;
+        }
+        tokens--;
+        return true;
+    }
+    
+    private void startDraining() {
+        if (drainJob != null) {
+            return;
+        }
+        
+        try {
+            credit = 0;
+            drainJob = plugin.getScheduler().scheduleAtFixedRate(this::drain,
+                DRAIN_TICK_MILLIS, DRAIN_TICK_MILLIS, TimeUnit.MILLISECONDS);
+            plugin.getLogger().info("Tab列表重建请求过多，开始排队处理");
+        } catch (RejectedExecutionException e) {
+            // 已关闭，忽略
+            firstFills.clear();
+            rebuilds.clear();
+        }
+    }
+    
+    private void drain() {
+        int drainPerSecond = plugin.getConfigManager().getConfig().refresh().drainPerSecond();
+        TabListUpdater[] batch;
+        synchronized (this) {
+            if (firstFills.isEmpty() && rebuilds.isEmpty()) {
+                if (drainJob != null) {
+                    drainJob.cancel();
+                    drainJob = null;
+                }
+                return;
+            }
+            
+            // 速率不是刻度的整数倍时保留余数，平均速率与配置一致
+            credit += drainPerSecond * DRAIN_TICK_MILLIS / 1000.0;
+            int count = (int) Math.min(credit, firstFills.size() + rebuilds.size());
+            credit = Math.min(credit - count, 1.0);
+            
+            batch = new TabListUpdater[count];
+            int taken = take(firstFills, batch, 0);
+            take(rebuilds, batch, taken);
+        }
+        
+        if (batch.length == 0) {
+            return;
+        }
+        
+        // 每批只构建一次快照，快照耗时单独统计，不计入刷新耗时
+        infoManager.refreshSnapshot();
+        long start = System.nanoTime();
+        for (TabListUpdater updater : batch) {
+            updater.updateTabList();
+        }
+        plugin.getMetrics().recordTick(System.nanoTime() - start, batch.length);
+    }
+    
+    private static int take(Map<Player, TabListUpdater> queue, TabListUpdater[] batch, int from) {
+        int index = from;
+        Iterator<TabListUpdater> iterator = queue.values().iterator();
+        while (index < batch.length && iterator.hasNext()) {
+            batch[index++] = iterator.next();
+            iterator.remove();
+        }
+        return index;
+    }
+}
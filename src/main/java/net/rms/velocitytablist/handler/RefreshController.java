@@ -0,0 +1,185 @@
+package net.rms.velocitytablist.handler;
+
+import net.rms.velocitytablist.VelocityTabListPlugin;
+import net.rms.velocitytablist.config.PluginConfig;
+import net.rms.velocitytablist.manager.CrossServerInfoManager;
+import net.rms.velocitytablist.scheduler.PluginScheduler;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 定期完整刷新（校正玩家索引并刷新所有玩家）的间隔控制。
+ * 每次完整刷新后测量这段时间内所有刷新占用的时间和本次完整刷新平均每名玩家收到的条目变化：
+ * 占用超过 CPU 目标或变化很少时延长间隔，变化达到阈值且 CPU 有余量时缩短间隔，其余情况保持不变。
+ * 个别玩家的延迟变化不会让间隔一直停在最短间隔。
+ * 间隔不短于单次完整刷新耗时按 CPU 目标换算的时长，也不超过最长间隔。关闭自适应时使用固定间隔。
+ * 刷新耗时以实际耗时近似单个核心的 CPU 时间，只统计更新玩家的时间，不包括构建快照。
+ */
+public class RefreshController {
+    
+    private static final double STEP = 1.5;
+    // 变化量低于阈值的该比例时视为空闲
+    private static final double IDLE_FRACTION = 0.25;
+    private static final double SMOOTHING = 0.3;
+    
+    private final VelocityTabListPlugin plugin;
+    private final TabListPacketHandler packetHandler;
+    private final CrossServerInfoManager infoManager;
+    
+    // 以下字段由 this 保护
+    private PluginScheduler.Job nextRun;
+    private long generation;
+    private boolean running;
+    private long lastRunAt;
+    private long lastBusyNanos;
+    private double smoothedCostNanos;
+    
+    private volatile long intervalMillis;
+    
+    public RefreshController(VelocityTabListPlugin plugin, TabListPacketHandler packetHandler,
+                             CrossServerInfoManager infoManager) {
+        this.plugin = plugin;
+        this.packetHandler = packetHandler;
+        this.infoManager = infoManager;
+        plugin.getMetrics().registerRefreshInterval(this::getIntervalMillis);
+    }
+    
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        reset(plugin.getConfigManager().getConfig().refresh());
+    }
+    
+    public synchronized void shutdown() {
+        running = false;
+        generation++;
+        if (nextRun != null) {
+            nextRun.cancel();
+            nextRun = null;
+        }
+    }
+    
+    /**
+     * 刷新配置变化时从新的初始间隔重新开始。
+     */
+    public synchronized void onConfigReload(PluginConfig previous, PluginConfig current) {
+        if (running && !previous.refresh().equals(current.refresh())) {
+            reset(current.refresh());
+        }
+    }
+    
+    public long getIntervalMillis() {
+        return intervalMillis;
+    }
+    
+    private void reset(PluginConfig.Refresh config) {
+        long initial = TimeUnit.SECONDS.toMillis(config.updateIntervalSeconds());
+        intervalMillis = config.adaptive() ? clamp(initial, config) : initial;
+        lastRunAt = System.nanoTime();
+        lastBusyNanos = busyNanos();
+        smoothedCostNanos = 0;
+        
+        generation++;
+        if (nextRun != null) {
+            nextRun.cancel();
+        }
+        schedule(generation);
+    }
+    
+    private void schedule(long runGeneration) {
+        try {
+            nextRun = plugin.getScheduler().schedule(() -> run(runGeneration), intervalMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // 已关闭，忽略
+            nextRun = null;
+        }
+    }
+    
+    private void run(long runGeneration) {
+        long start = System.nanoTime();
+        long changes = 0;
+        int viewers = 0;
+        try {
+            // 校正同步延迟等不会触发事件的变化后刷新所有玩家
+            infoManager.updateServerInfo();
+            viewers = packetHandler.getViewerCount();
+            changes = packetHandler.updateAllTabLists();
+        } catch (Exception e) {
+            plugin.getLogger().error("定期刷新Tab列表时发生错误", e);
+        }
+        long cost = System.nanoTime() - start;
+        
+        synchronized (this) {
+            if (!running || runGeneration != generation) {
+                return;
+            }
+            
+            PluginConfig.Refresh config = plugin.getConfigManager().getConfig().refresh();
+            if (config.adaptive()) {
+                adjust(config, cost, changes, viewers);
+            }
+            schedule(runGeneration);
+        }
+    }
+    
+    private void adjust(PluginConfig.Refresh config, long cost, long changes, int viewers) {
+        // 上次完整刷新以来所有刷新（包括玩家变化触发的刷新）占用的时间比例
+        long now = System.nanoTime();
+        long busy = busyNanos();
+        double share = (double) (busy - lastBusyNanos) / Math.max(1, now - lastRunAt);
+        lastRunAt = now;
+        lastBusyNanos = busy;
+        
+        smoothedCostNanos = smoothedCostNanos == 0
+            ? cost
+            : smoothedCostNanos + SMOOTHING * (cost - smoothedCostNanos);
+        
+        long previous = intervalMillis;
+        intervalMillis = nextInterval(config, previous, share, smoothedCostNanos, changes, viewers);
+        
+        if (intervalMillis != previous) {
+            plugin.getLogger().debug("完整刷新间隔调整为 {}ms（刷新占用 {}%，本次变化 {} 个条目/{} 名玩家，耗时 {}ms）",
+                intervalMillis, String.format("%.2f", share * 100), changes, viewers,
+                TimeUnit.NANOSECONDS.toMillis(cost));
+        }
+    }
+    
+    /**
+     * 计算下一次完整刷新的间隔。
+     *
+     * @param share   上次完整刷新以来刷新占用的时间比例
+     * @param changes 本次完整刷新发送的条目变化数
+     * @param viewers 本次完整刷新的玩家数
+     */
+    static long nextInterval(PluginConfig.Refresh config, long previousMillis, double share,
+                             double costNanos, long changes, int viewers) {
+        double target = config.cpuTargetPercent() / 100;
+        double density = (double) changes / Math.max(1, viewers);
+        
+        double next;
+        if (share > target || density < config.churnPerViewer() * IDLE_FRACTION) {
+            // 空闲时逐步放宽，最长不超过配置的最长间隔
+            next = previousMillis * STEP;
+        } else if (density >= config.churnPerViewer()) {
+            next = previousMillis / STEP;
+        } else {
+            next = previousMillis;
+        }
+        // 单次完整刷新的耗时在间隔内摊分后不超过目标
+        next = Math.max(next, TimeUnit.NANOSECONDS.toMillis((long) (costNanos / target)));
+        return clamp((long) next, config);
+    }
+    
+    private long busyNanos() {
+        // 只取更新玩家的时间；快照耗时另有统计，相加会与包含快照的调用方重复计算
+        return plugin.getMetrics().getTickDuration().getSumNanos();
+    }
+    
+    private static long clamp(long millis, PluginConfig.Refresh config) {
+        return Math.max(TimeUnit.SECONDS.toMillis(config.minIntervalSeconds()),
+            Math.min(TimeUnit.SECONDS.toMillis(config.maxIntervalSeconds()), millis));
+    }
+}
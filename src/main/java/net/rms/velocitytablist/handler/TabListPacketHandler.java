@@ -7,11 +7,23 @@ import com.velocitypowered.api.event.player.ServerPostConnectEvent;
 import com.velocitypowered.api.proxy.Player;
 import com.velocitypowered.api.proxy.ProxyServer;
 import net.rms.velocitytablist.VelocityTabListPlugin;
+import net.rms.velocitytablist.config.PluginConfig;
 import net.rms.velocitytablist.manager.CrossServerInfoManager;
+import net.rms.velocitytablist.scheduler.PluginScheduler;
 import net.rms.velocitytablist.util.TabListUpdater;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 public class TabListPacketHandler {
     
@@ -19,13 +31,18 @@ public class TabListPacketHandler {
     private final ProxyServer server;
     private final CrossServerInfoManager infoManager;
     
+    // 每个分区至少包含的玩家数，玩家较少时并行反而更慢
+    private static final int MIN_PARTITION_SIZE = 32;
+    
     private final ConcurrentMap<Player, TabListUpdater> playerUpdaters = new ConcurrentHashMap<>();
+    private final RebuildAdmission admission;
     
     public TabListPacketHandler(VelocityTabListPlugin plugin, ProxyServer server, 
                               CrossServerInfoManager infoManager) {
         this.plugin = plugin;
         this.server = server;
         this.infoManager = infoManager;
+        this.admission = new RebuildAdmission(plugin, infoManager);
     }
     
     @Subscribe
@@ -36,8 +53,8 @@ public class TabListPacketHandler {
         TabListUpdater updater = new TabListUpdater(player, plugin, infoManager);
         playerUpdaters.put(player, updater);
         
-        // 立即初始化Tab列表
-        updater.updateTabList();
+        // 初始化Tab列表，大量玩家同时进入时排队执行
+        admission.submit(player, updater, true);
     }
     
     @Subscribe
@@ -46,8 +63,9 @@ public class TabListPacketHandler {
         
         TabListUpdater updater = playerUpdaters.get(player);
         if (updater != null) {
-            // 服务器切换时立即更新Tab列表
-            updater.updateTabList();
+            // 服务器切换时更新Tab列表，即使玩家列表没有变化
+            updater.invalidate();
+            admission.submit(player, updater, false);
         }
     }
     
@@ -56,26 +74,152 @@ public class TabListPacketHandler {
         Player player = event.getPlayer();
         
         // 清理更新器
+        admission.cancel(player);
         TabListUpdater updater = playerUpdaters.remove(player);
         if (updater != null) {
             updater.cleanup();
         }
     }
     
-    public void updateAllTabLists() {
+    public int getViewerCount() {
+        return playerUpdaters.size();
+    }
+    
+    /**
+     * @return 本次刷新发送的条目变化数
+     */
+    public long updateAllTabLists() {
+        // 每次刷新只构建一次快照，所有玩家共享
+        infoManager.refreshSnapshot();
+        
         // 更新所有玩家的Tab列表
-        playerUpdaters.values().forEach(TabListUpdater::updateTabList);
+        return fanOut(playerUpdaters.values());
     }
     
-    public void handlePluginMessage(Player player, String channel, byte[] data) {
-        // 处理插件消息，用于与后端服务器通信
-        if ("velocitytablist:sync".equals(channel)) {
+    /**
+     * 只刷新受已变化服务器影响的玩家：玩家看不到自己所在的服务器，
+     * 因此当变化的服务器只有玩家当前所在服务器时可以跳过。
+     */
+    public void refreshDirtyServers(Set<String> dirtyServers) {
+        infoManager.refreshSnapshot();
+        
+        List<TabListUpdater> affected = new ArrayList<>();
+        for (Map.Entry<Player, TabListUpdater> entry : playerUpdaters.entrySet()) {
+            String currentServer = entry.getKey().getCurrentServer()
+                .map(conn -> conn.getServerInfo().getName())
+                .orElse(null);
+            
+            if (dirtyServers.size() == 1 && dirtyServers.contains(currentServer)) {
+                continue;
+            }
             
-            infoManager.requestSync();
+            affected.add(entry.getValue());
+        }
+        
+        fanOut(affected);
+    }
+    
+    /**
+     * 将玩家分区后并行更新。每个分区在截止时间后停止，剩余玩家作为重建请求重新排队。
+     */
+    private long fanOut(Collection<TabListUpdater> updaters) {
+        long start = System.nanoTime();
+        int viewers = updaters.size();
+        LongAdder changes = new LongAdder();
+        try {
+            fanOutPartitions(updaters, changes);
+            return changes.sum();
+        } finally {
+            plugin.getMetrics().recordTick(System.nanoTime() - start, viewers);
+        }
+    }
+    
+    private void fanOutPartitions(Collection<TabListUpdater> updaters, LongAdder changes) {
+        PluginConfig.Refresh config = plugin.getConfigManager().getConfig().refresh();
+        PluginScheduler scheduler = plugin.getScheduler();
+        // 当前线程也领取分区，因此最多比工作线程数多一个分区
+        int concurrency = Math.min(config.maxThreads(), scheduler.getWorkerThreads() + 1);
+        int partitions = Math.min(concurrency, updaters.size() / MIN_PARTITION_SIZE);
+        
+        if (!config.parallel() || partitions <= 1) {
+            for (TabListUpdater updater : updaters) {
+                changes.add(updater.updateTabList());
+            }
+            return;
+        }
+        
+        List<TabListUpdater> snapshot = new ArrayList<>(updaters);
+        long deadlineMillis = config.deadlineMillis();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadlineMillis);
+        
+        Runnable[] tasks = new Runnable[partitions];
+        for (int i = 0; i < partitions; i++) {
+            int from = i * snapshot.size() / partitions;
+            int to = (i + 1) * snapshot.size() / partitions;
+            List<TabListUpdater> partition = snapshot.subList(from, to);
+            
+            tasks[i] = () -> {
+                for (int index = 0; index < partition.size(); index++) {
+                    if (System.nanoTime() - deadline > 0) {
+                        requeue(partition.subList(index, partition.size()));
+                        return;
+                    }
+                    changes.add(partition.get(index).updateTabList());
+                }
+            };
+        }
+        
+        // 分区由当前线程和工作线程共同领取：当前线程不等待排队中的分区，而是自己执行，
+        // 即使共享线程池被其他阻塞任务占满，刷新也不会退化为等待截止时间
+        AtomicInteger nextPartition = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(partitions);
+        Runnable claim = () -> {
+            for (int i = nextPartition.getAndIncrement(); i < partitions; i = nextPartition.getAndIncrement()) {
+                try {
+                    tasks[i].run();
+                } catch (RuntimeException e) {
+                    plugin.getLogger().error("并行更新Tab列表时发生错误", e);
+                } finally {
+                    done.countDown();
+                }
+            }
+        };
+        for (int i = 1; i < partitions; i++) {
+            try {
+                scheduler.runAsync(claim);
+            } catch (RejectedExecutionException e) {
+                // 调度器已关闭，剩余分区由当前线程执行
+                break;
+            }
+        }
+        claim.run();
+        
+        // 只剩工作线程已经领取并正在执行的分区
+        try {
+            long remaining = Math.max(0L, deadline - System.nanoTime());
+            if (!done.await(remaining, TimeUnit.NANOSECONDS)) {
+                plugin.getLogger().warn("Tab列表更新超过截止时间 {}ms，未完成的玩家已重新排队", deadlineMillis);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * 截止时间前没有轮到的玩家交给准入控制，按排队速率稍后更新，不必等到下一次完整刷新。
+     */
+    private void requeue(List<TabListUpdater> skipped) {
+        for (TabListUpdater updater : skipped) {
+            Player player = updater.getPlayer();
+            // 期间已离开的玩家不再排队
+            if (playerUpdaters.get(player) == updater) {
+                admission.submit(player, updater, false);
+            }
         }
     }
     
     public void shutdown() {
+        admission.shutdown();
         
         playerUpdaters.values().forEach(TabListUpdater::cleanup);
         playerUpdaters.clear();
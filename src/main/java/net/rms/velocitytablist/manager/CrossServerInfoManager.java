@@ -1,35 +1,71 @@
 package net.rms.velocitytablist.manager;
 
+import com.velocitypowered.api.event.PostOrder;
 import com.velocitypowered.api.event.Subscribe;
 import com.velocitypowered.api.event.connection.DisconnectEvent;
 import com.velocitypowered.api.event.player.ServerPostConnectEvent;
 import com.velocitypowered.api.proxy.Player;
 import com.velocitypowered.api.proxy.ProxyServer;
 import com.velocitypowered.api.proxy.server.RegisteredServer;
-import com.velocitypowered.api.proxy.server.ServerInfo;
+import net.kyori.adventure.text.Component;
+import net.rms.velocitytablist.config.ConfigManager;
+import net.rms.velocitytablist.config.PluginConfig;
+import net.rms.velocitytablist.metrics.PluginMetrics;
+import net.rms.velocitytablist.scheduler.PluginScheduler;
+import net.rms.velocitytablist.util.DisplayNameCache;
+import net.rms.velocitytablist.util.LatencySmoother;
+import net.rms.velocitytablist.util.ProfilePool;
 import org.slf4j.Logger;
 
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 
 public class CrossServerInfoManager {
     
+    public static final String SEE_VANISHED_PERMISSION = "velocitytablist.see-vanished";
+    
     private final ProxyServer server;
     private final Logger logger;
+    private final ConfigManager configManager;
+    private final DisplayNameCache displayNameCache;
+    private final PluginMetrics metrics;
+    private final PluginScheduler scheduler;
+    
+    private final RosterIndex rosterIndex = new RosterIndex();
+    private final LatencySmoother latencySmoother = new LatencySmoother();
+    private final Map<UUID, Integer> permissionWeights = new ConcurrentHashMap<>();
+    private final Map<UUID, Integer> viewerClasses = new ConcurrentHashMap<>();
+    
+    // 多代理同步：本地变化通知监听器，其他代理的玩家由 remoteRoster 提供
+    private final List<RosterListener> rosterListeners = new CopyOnWriteArrayList<>();
+    private volatile RemoteRoster remoteRoster = RemoteRoster.EMPTY;
+    private volatile ServerHealthMonitor healthMonitor;
+    private volatile ProfilePool profilePool;
+    
+    private volatile RosterSnapshot snapshot = RosterSnapshot.EMPTY;
+    private long epoch;
     
-    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
-    private final Map<String, ServerInfo> serverInfoCache = new ConcurrentHashMap<>();
-    private final Map<String, List<Player>> serverPlayerCache = new ConcurrentHashMap<>();
-    private final Map<String, Long> lastUpdateTime = new ConcurrentHashMap<>();
+    // 自上次刷新以来发生变化的服务器，在防抖窗口结束后合并为一次刷新
+    private final Set<String> dirtyServers = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    private volatile Consumer<Set<String>> dirtyListener;
     
-    private ScheduledFuture<?> updateTask;
     private volatile boolean isRunning = false;
     
-    public CrossServerInfoManager(ProxyServer server, Logger logger) {
+    public CrossServerInfoManager(ProxyServer server, Logger logger, ConfigManager configManager,
+                                  DisplayNameCache displayNameCache, PluginMetrics metrics,
+                                  PluginScheduler scheduler) {
         this.server = server;
         this.logger = logger;
+        this.configManager = configManager;
+        this.displayNameCache = displayNameCache;
+        this.metrics = metrics;
+        this.scheduler = scheduler;
     }
     
     public void start() {
@@ -40,18 +76,20 @@ public class CrossServerInfoManager {
         isRunning = true;
         logger.debug("启动信息收集器...");
         
-        // 初始化服务器信息缓存
+        // 初始化服务器信息缓存，之后由定期完整刷新校正
         updateServerInfo();
+        refreshSnapshot();
+    }
+    
+    /**
+     * 应用重新加载后的配置：权重变化时清空权限缓存。
+     */
+    public void onConfigReload(PluginConfig previous, PluginConfig current) {
+        if (!previous.selection().equals(current.selection())) {
+            permissionWeights.clear();
+        }
         
-        // 启动定期更新任务（每30秒）
-        updateTask = scheduler.scheduleAtFixedRate(
-                this::updateServerInfo,
-                0,
-                30,
-                TimeUnit.SECONDS
-        );
-        
-        logger.debug("信息收集器已启动，更新间隔: 30秒");
+        refreshSnapshot();
     }
     
     public void shutdown() {
@@ -62,163 +100,409 @@ public class CrossServerInfoManager {
         isRunning = false;
         logger.debug("正在关闭信息收集器...");
         
-        if (updateTask != null && !updateTask.isCancelled()) {
-            updateTask.cancel(false);
-        }
-        
-        scheduler.shutdown();
-        try {
-            if (!scheduler.awaitTermination(5, TimeUnit.SECONDS)) {
-                scheduler.shutdownNow();
-            }
-        } catch (InterruptedException e) {
-            scheduler.shutdownNow();
-            Thread.currentThread().interrupt();
-        }
-        
         logger.debug("信息收集器已关闭");
     }
     
-    @Subscribe
+    // 先于其他监听器执行，保证Tab列表更新时索引已是最新
+    @Subscribe(order = PostOrder.FIRST)
     public void onPlayerConnect(ServerPostConnectEvent event) {
         Player player = event.getPlayer();
         String serverName = player.getCurrentServer()
             .map(conn -> conn.getServerInfo().getName())
             .orElse("unknown");
         
-        // 更新玩家服务器缓存
-        updatePlayerServerCache(player, serverName);
+        // 更新玩家服务器索引
+        String previousServer = rosterIndex.move(player.getUniqueId(), player.getUsername(), serverName);
+        
+        // 权限可能随服务器上下文变化，切换服务器后重新计算
+        permissionWeights.remove(player.getUniqueId());
+        viewerClasses.remove(player.getUniqueId());
+        
+        for (RosterListener listener : rosterListeners) {
+            listener.onPlayerMove(player.getUniqueId(), player.getUsername(), serverName);
+        }
+        
+        // 新旧服务器的玩家列表都发生了变化
+        if (previousServer != null && !previousServer.equals(serverName)) {
+            markDirty(previousServer);
+        }
+        markDirty(serverName);
         
         logger.debug("玩家 {} 连接到服务器 {}", player.getUsername(), serverName);
     }
     
-    @Subscribe
+    @Subscribe(order = PostOrder.FIRST)
     public void onPlayerDisconnect(DisconnectEvent event) {
         Player player = event.getPlayer();
         
-        // 从所有服务器缓存中移除玩家
-        serverPlayerCache.values().forEach(players -> players.remove(player));
+        // 从索引中移除玩家
+        String previousServer = rosterIndex.remove(player.getUniqueId());
+        if (previousServer != null) {
+            markDirty(previousServer);
+        }
+        displayNameCache.invalidate(player.getUniqueId());
+        releaseProfiles(player.getUniqueId());
+        latencySmoother.remove(player.getUniqueId());
+        permissionWeights.remove(player.getUniqueId());
+        viewerClasses.remove(player.getUniqueId());
+        
+        for (RosterListener listener : rosterListeners) {
+            listener.onPlayerLeave(player.getUniqueId());
+        }
         
         logger.debug("玩家 {} 断开连接", player.getUsername());
     }
     
+    public void addRosterListener(RosterListener listener) {
+        rosterListeners.add(listener);
+    }
+    
+    public void setRemoteRoster(RemoteRoster remoteRoster) {
+        this.remoteRoster = remoteRoster != null ? remoteRoster : RemoteRoster.EMPTY;
+    }
+    
+    /**
+     * 设置后端健康检查，离线服务器的玩家不再出现在快照中。
+     */
+    public void setHealthMonitor(ServerHealthMonitor healthMonitor) {
+        this.healthMonitor = healthMonitor;
+    }
+    
+    /**
+     * 设置虚拟条目的 GameProfile 池，玩家离开时释放其 GameProfile。
+     */
+    public void setProfilePool(ProfilePool profilePool) {
+        this.profilePool = profilePool;
+    }
+    
+    /**
+     * 应用其他代理上的玩家移动。
+     */
+    public void applyRemoteMove(UUID playerId, String username, String serverName) {
+        String previousServer = rosterIndex.move(playerId, username, serverName);
+        if (serverName.equals(previousServer)) {
+            return;
+        }
+        
+        if (previousServer != null) {
+            markDirty(previousServer);
+        }
+        markDirty(serverName);
+    }
+    
+    /**
+     * 应用其他代理上的玩家离开。
+     */
+    public void applyRemoteLeave(UUID playerId) {
+        String previousServer = rosterIndex.remove(playerId);
+        if (previousServer != null) {
+            markDirty(previousServer);
+        }
+        displayNameCache.invalidate(playerId);
+        releaseProfiles(playerId);
+    }
+    
+    private void releaseProfiles(UUID playerId) {
+        ProfilePool pool = profilePool;
+        if (pool != null) {
+            pool.release(playerId);
+        }
+    }
+    
+    /**
+     * 应用后端服务器推送的玩家状态。
+     *
+     * @param updates 每个玩家的状态变化
+     * @param full    是否为完整状态，为 true 时未包含的玩家恢复为默认状态
+     */
+    public void applyBackendStatus(String serverName, Map<UUID, ? extends UnaryOperator<PlayerStatus>> updates,
+                                   boolean full) {
+        boolean changed = false;
+        for (Map.Entry<UUID, ? extends UnaryOperator<PlayerStatus>> entry : updates.entrySet()) {
+            // 玩家已切换到其他服务器时忽略旧服务器的推送
+            String currentServer = rosterIndex.getServer(entry.getKey());
+            if (currentServer != null && !currentServer.equals(serverName)) {
+                continue;
+            }
+            changed |= rosterIndex.updateStatus(entry.getKey(), serverName, entry.getValue());
+        }
+        
+        if (full) {
+            for (RosterIndex.Member member : rosterIndex.getMembers(serverName)) {
+                if (!updates.containsKey(member.playerId())) {
+                    changed |= rosterIndex.updateStatus(member.playerId(), serverName, status -> PlayerStatus.DEFAULT);
+                }
+            }
+        }
+        
+        if (changed) {
+            markDirty(serverName);
+        }
+    }
+    
+    /**
+     * 设置脏服务器刷新回调。回调在防抖窗口结束后调用，参数为期间发生变化的所有服务器。
+     */
+    public void setDirtyListener(Consumer<Set<String>> dirtyListener) {
+        this.dirtyListener = dirtyListener;
+    }
+    
+    /**
+     * 标记服务器玩家列表已变化。防抖窗口内的多次变化只会触发一次刷新。
+     */
+    public void markDirty(String serverName) {
+        dirtyServers.add(serverName);
+        
+        if (isRunning && flushScheduled.compareAndSet(false, true)) {
+            try {
+                scheduler.schedule(this::flushDirtyServers,
+                    configManager.getRefreshDebounceMillis(), TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // 已关闭，忽略
+                flushScheduled.set(false);
+            }
+        }
+    }
+    
+    private void flushDirtyServers() {
+        flushScheduled.set(false);
+        
+        Set<String> changed = new HashSet<>();
+        for (Iterator<String> iterator = dirtyServers.iterator(); iterator.hasNext(); ) {
+            changed.add(iterator.next());
+            iterator.remove();
+        }
+        
+        if (changed.isEmpty()) {
+            return;
+        }
+        
+        Consumer<Set<String>> listener = dirtyListener;
+        if (listener == null) {
+            return;
+        }
+        
+        try {
+            listener.accept(Collections.unmodifiableSet(changed));
+        } catch (Exception e) {
+            logger.error("刷新已变化服务器时发生错误", e);
+        }
+    }
+    
+    /**
+     * 以实际在线玩家校正玩家索引并采样延迟，不重新构建快照：
+     * 调用方随后的刷新会构建一次快照，避免同一次完整刷新构建两次。
+     */
     public void updateServerInfo() {
         try {
-            // 更新所有服务器信息
-            for (RegisteredServer registeredServer : server.getAllServers()) {
-                ServerInfo serverInfo = registeredServer.getServerInfo();
-                serverInfoCache.put(serverInfo.getName(), serverInfo);
-                
-                // 更新玩家列表
-                List<Player> players = new ArrayList<>(registeredServer.getPlayersConnected());
-                serverPlayerCache.put(serverInfo.getName(), players);
-                
-                lastUpdateTime.put(serverInfo.getName(), System.currentTimeMillis());
+            // 以实际在线玩家（包括其他代理上的玩家）校正索引，只处理有差异的玩家；
+            // 收集期间由事件更新过的玩家以事件为准
+            long since = rosterIndex.getVersion();
+            Map<UUID, String> live = new HashMap<>();
+            Map<UUID, String> usernames = new HashMap<>();
+            remoteRoster.collect(live, usernames);
+            for (Player player : server.getAllPlayers()) {
+                // 延迟只在定期刷新时采样
+                latencySmoother.update(player.getUniqueId(), player.getPing());
+                player.getCurrentServer().ifPresent(conn -> {
+                    live.put(player.getUniqueId(), conn.getServerInfo().getName());
+                    usernames.put(player.getUniqueId(), player.getUsername());
+                });
             }
             
-            logger.debug("已更新 {} 个服务器的信息", serverInfoCache.size());
+            Set<String> changed = rosterIndex.reconcile(live, usernames, since);
+            if (!changed.isEmpty()) {
+                logger.debug("校正玩家索引，{} 个服务器发生变化", changed.size());
+                changed.forEach(this::markDirty);
+            }
+            
+            // Velocity 没有权限变化事件，定期重新检查观察者能否看到隐身玩家
+            viewerClasses.clear();
+            
+            logger.debug("已校正玩家索引，共 {} 名玩家", rosterIndex.size());
             
         } catch (Exception e) {
             logger.error("更新服务器信息时发生错误", e);
         }
     }
     
-    private void updatePlayerServerCache(Player player, String serverName) {
-        // 从旧服务器移除玩家
-        serverPlayerCache.values().forEach(players -> players.remove(player));
+    /**
+     * 重新构建共享的玩家列表快照。每次刷新只需调用一次，所有更新器共用结果。
+     * 内容没有变化的服务器沿用之前的列表和纪元；所有服务器都没有变化时快照纪元不变。
+     */
+    public synchronized RosterSnapshot refreshSnapshot() {
+        long start = System.nanoTime();
+        int maxPlayers = configManager.getMaxPlayersPerServer();
+        EntryPriority priority = configManager.getEntryPriority();
+        RosterSnapshot previous = snapshot;
+        Map<String, RosterSnapshot.ServerRoster> servers = new LinkedHashMap<>();
+        boolean changed = false;
         
-        // 添加到新服务器
-        serverPlayerCache.computeIfAbsent(serverName, k -> new ArrayList<>()).add(player);
-    }
-    
-    public Map<RegisteredServer, List<Player>> getServerPlayerMap() {
-        Map<RegisteredServer, List<Player>> result = new HashMap<>();
+        // 隐身状态只在变化时重新计算位图，这里直接取当前的位图
+        VisibilityIndex visibility = rosterIndex.getVisibility();
+        BitSet[] hidden = new BitSet[VisibilityIndex.VIEWER_CLASSES];
+        for (int viewerClass = 0; viewerClass < hidden.length; viewerClass++) {
+            hidden[viewerClass] = visibility.hiddenFrom(viewerClass);
+        }
+        BitSet vanished = visibility.getVanished();
         
         for (RegisteredServer registeredServer : server.getAllServers()) {
             String serverName = registeredServer.getServerInfo().getName();
-            List<Player> players = serverPlayerCache.getOrDefault(serverName, new ArrayList<>());
+            // 离线服务器上的玩家已经无法交互，不再显示
+            Collection<RosterIndex.Member> members = isHealthy(serverName)
+                ? rosterIndex.getMembers(serverName)
+                : Collections.emptyList();
+            BitSet memberIds = new BitSet();
+            for (RosterIndex.Member member : members) {
+                memberIds.set(member.visibilityId());
+            }
+            int playerCount = memberIds.cardinality();
             
-            // 限制每个服务器显示的玩家数量
-            if (players.size() > 10) {
-                players = players.subList(0, 10);
+            // 多选出与隐身玩家数量相同的条目，过滤掉隐身玩家后仍然能填满每服务器上限
+            BitSet vanishedMembers = (BitSet) memberIds.clone();
+            vanishedMembers.and(vanished);
+            int limit = maxPlayers + vanishedMembers.cardinality();
+            
+            List<RosterSnapshot.RosterEntry> entries = new ArrayList<>(Math.min(playerCount, limit));
+            for (RosterIndex.Member member : selectTopMembers(members, limit, priority)) {
+                Player player = server.getPlayer(member.playerId()).orElse(null);
+                if (player == null && !remoteRoster.contains(member.playerId())) {
+                    continue;
+                }
+                
+                PlayerStatus status = rosterIndex.getStatus(member.playerId());
+                Component displayName = displayNameCache.getPlayerName(
+                    member.playerId(), member.username(), serverName, status.afk());
+                // 其他代理上的玩家没有延迟信息；本地玩家沿用定期刷新时的平滑值
+                int latency = player != null ? latencySmoother.current(member.playerId(), player.getPing()) : 0;
+                entries.add(new RosterSnapshot.RosterEntry(member.playerId(), member.username(), latency,
+                    status.gameMode(), displayName, member.visibilityId()));
             }
             
-            result.put(registeredServer, new ArrayList<>(players));
+            long contentHash = RosterSnapshot.ServerRoster.contentHash(playerCount, entries, vanishedMembers);
+            RosterSnapshot.ServerRoster roster = previous.getServer(serverName);
+            if (roster == null || !roster.matches(contentHash, memberIds, maxPlayers)) {
+                roster = new RosterSnapshot.ServerRoster(serverName, playerCount, entries, memberIds, maxPlayers,
+                    ++epoch, contentHash);
+                changed = true;
+            }
+            servers.put(serverName, roster);
         }
         
-        return result;
-    }
-    
-    public List<Player> getPlayersOnServer(String serverName) {
-        return new ArrayList<>(serverPlayerCache.getOrDefault(serverName, new ArrayList<>()));
+        // 服务器被注销时也需要更新
+        if (!changed && servers.size() != previous.getServers().size()) {
+            epoch++;
+            changed = true;
+        }
+        
+        RosterSnapshot newSnapshot = new RosterSnapshot(servers, System.currentTimeMillis(),
+            changed ? epoch : previous.getEpoch(), hidden);
+        snapshot = newSnapshot;
+        metrics.recordRosterRefresh(System.nanoTime() - start);
+        return newSnapshot;
     }
     
-    public int getTotalPlayerCount() {
-        return server.getPlayerCount();
+    /**
+     * 按优先级选出最多 limit 名玩家（包括隐身玩家），按优先级从高到低排列。
+     * 进入顺序即索引顺序，直接取前缀；其他优先级使用容量为 limit 的堆。
+     */
+    private List<RosterIndex.Member> selectTopMembers(Collection<RosterIndex.Member> members, int limit,
+                                                     EntryPriority priority) {
+        List<RosterIndex.Member> selected = new ArrayList<>(Math.min(members.size(), limit));
+        
+        if (priority == EntryPriority.JOIN_ORDER) {
+            for (RosterIndex.Member member : members) {
+                if (selected.size() >= limit) {
+                    break;
+                }
+                selected.add(member);
+            }
+            return selected;
+        }
+        
+        Comparator<EntryPriority.Candidate> better = priority.comparator();
+        PriorityQueue<EntryPriority.Candidate> heap = new PriorityQueue<>(limit + 1, better.reversed());
+        for (RosterIndex.Member member : members) {
+            int weight = priority == EntryPriority.PERMISSION_WEIGHT ? getPermissionWeight(member.playerId()) : 0;
+            heap.offer(new EntryPriority.Candidate(member, weight));
+            if (heap.size() > limit) {
+                heap.poll();
+            }
+        }
+        
+        List<EntryPriority.Candidate> candidates = new ArrayList<>(heap);
+        candidates.sort(better);
+        for (EntryPriority.Candidate candidate : candidates) {
+            selected.add(candidate.member());
+        }
+        return selected;
     }
     
-    public int getServerPlayerCount(String serverName) {
-        return serverPlayerCache.getOrDefault(serverName, new ArrayList<>()).size();
+    private int getPermissionWeight(UUID playerId) {
+        Integer cached = permissionWeights.get(playerId);
+        if (cached != null) {
+            return cached;
+        }
+        
+        Player player = server.getPlayer(playerId).orElse(null);
+        if (player == null) {
+            return 0;
+        }
+        
+        // 权重已按从高到低排序，第一个拥有的权限即为最高权重
+        int weight = 0;
+        for (int candidate : configManager.getPermissionWeights()) {
+            if (player.hasPermission("velocitytablist.priority." + candidate)) {
+                weight = Math.max(candidate, 0);
+                break;
+            }
+        }
+        permissionWeights.put(playerId, weight);
+        return weight;
     }
     
-    public Set<String> getServerNames() {
-        return new HashSet<>(serverInfoCache.keySet());
+    /**
+     * 返回观察者的可见性类别：拥有 {@value #SEE_VANISHED_PERMISSION} 权限的玩家可以看到隐身玩家。
+     * 结果会被缓存，切换服务器和定期校正时重新检查权限。
+     */
+    public int getViewerClass(Player viewer) {
+        return viewerClasses.computeIfAbsent(viewer.getUniqueId(), id -> viewer.hasPermission(SEE_VANISHED_PERMISSION)
+            ? VisibilityIndex.VIEWER_STAFF
+            : VisibilityIndex.VIEWER_PLAYER);
     }
     
-    public ServerInfo getServerInfo(String serverName) {
-        return serverInfoCache.get(serverName);
+    public RosterSnapshot getSnapshot() {
+        return snapshot;
     }
     
-    public boolean isServerOnline(String serverName) {
-        RegisteredServer server = this.server.getServer(serverName).orElse(null);
-        if (server == null) {
-            return false;
-        }
+    public Map<RegisteredServer, List<Player>> getServerPlayerMap() {
+        Map<RegisteredServer, List<Player>> result = new HashMap<>();
+        
+        int maxPlayers = configManager.getMaxPlayersPerServer();
         
-        // 检查服务器是否在最近的更新时间内
-        Long lastUpdate = lastUpdateTime.get(serverName);
-        if (lastUpdate == null) {
-            return false;
+        for (RegisteredServer registeredServer : server.getAllServers()) {
+            String serverName = registeredServer.getServerInfo().getName();
+            
+            // 限制每个服务器显示的玩家数量
+            result.put(registeredServer, resolvePlayers(serverName, maxPlayers));
         }
         
-        long timeSinceUpdate = System.currentTimeMillis() - lastUpdate;
-        return timeSinceUpdate < (30 * 2000); // 2倍更新间隔作为超时
-    }
-    
-    public void requestUpdate(ServerInfo serverInfo) {
-        CompletableFuture.runAsync(() -> {
-            try {
-                // 立即更新指定服务器的信息
-                RegisteredServer server = this.server.getServer(serverInfo.getName()).orElse(null);
-                if (server != null) {
-                    List<Player> players = new ArrayList<>(server.getPlayersConnected());
-                    serverPlayerCache.put(serverInfo.getName(), players);
-                    lastUpdateTime.put(serverInfo.getName(), System.currentTimeMillis());
-                    
-                    logger.debug("已更新服务器 {} 的信息", serverInfo.getName());
-                }
-            } catch (Exception e) {
-                logger.error("更新服务器 {} 信息时发生错误", serverInfo.getName(), e);
-            }
-        }, scheduler);
+        return result;
     }
     
-    public void requestSync() {
-        CompletableFuture.runAsync(() -> {
-            try {
-                updateServerInfo();
-                logger.debug("已同步所有服务器信息");
-            } catch (Exception e) {
-                logger.error("同步服务器信息时发生错误", e);
+    private List<Player> resolvePlayers(String serverName, int limit) {
+        List<Player> players = new ArrayList<>();
+        for (RosterIndex.Member member : rosterIndex.getMembers(serverName)) {
+            if (players.size() >= limit) {
+                break;
             }
-        }, scheduler);
-    }
-    
-    public long getLastUpdateTime(String serverName) {
-        return lastUpdateTime.getOrDefault(serverName, 0L);
+            server.getPlayer(member.playerId()).ifPresent(players::add);
+        }
+        return players;
     }
     
-    public boolean isRunning() {
-        return isRunning;
+    private boolean isHealthy(String serverName) {
+        ServerHealthMonitor monitor = healthMonitor;
+        return monitor == null || monitor.isOnline(serverName);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,49 @@
+package net.rms.velocitytablist.manager;
+
+import java.util.Comparator;
+import java.util.Locale;
+
+/**
+ * 每个服务器名额有限时，优先显示哪些玩家。
+ */
+public enum EntryPriority {
+    
+    /** 按进入服务器的先后顺序 */
+    JOIN_ORDER,
+    
+    /** 最近进入或切换到该服务器的玩家优先 */
+    RECENT_ACTIVITY,
+    
+    /** 按 velocitytablist.priority.<权重> 权限的权重，权重相同时按进入顺序 */
+    PERMISSION_WEIGHT;
+    
+    public static EntryPriority fromConfig(String value) {
+        if (value == null) {
+            return JOIN_ORDER;
+        }
+        
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            return JOIN_ORDER;
+        }
+    }
+    
+    /**
+     * 返回"越靠前越优先"的比较器。
+     */
+    Comparator<Candidate> comparator() {
+        switch (this) {
+            case RECENT_ACTIVITY:
+                return Comparator.comparingLong((Candidate candidate) -> candidate.member().joinSequence()).reversed();
+            case PERMISSION_WEIGHT:
+                return Comparator.comparingInt(Candidate::weight).reversed()
+                    .thenComparingLong(candidate -> candidate.member().joinSequence());
+            default:
+                return Comparator.comparingLong(candidate -> candidate.member().joinSequence());
+        }
+    }
+    
+    record Candidate(RosterIndex.Member member, int weight) {
+    }
+}
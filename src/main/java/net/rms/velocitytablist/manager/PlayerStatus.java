@@ -0,0 +1,9 @@
+package net.rms.velocitytablist.manager;
+
+/**
+ * 后端服务器推送的玩家状态。
+ */
+public record PlayerStatus(boolean afk, int gameMode, String world, boolean vanished) {
+    
+    public static final PlayerStatus DEFAULT = new PlayerStatus(false, 0, null, false);
+}
@@ -0,0 +1,28 @@
+package net.rms.velocitytablist.manager;
+
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 其他代理上的玩家。本代理校正索引时需要保留这些玩家。
+ */
+public interface RemoteRoster {
+    
+    RemoteRoster EMPTY = new RemoteRoster() {
+        @Override
+        public void collect(Map<UUID, String> servers, Map<UUID, String> usernames) {
+        }
+        
+        @Override
+        public boolean contains(UUID playerId) {
+            return false;
+        }
+    };
+    
+    /**
+     * 将其他代理上的玩家及其所在服务器、名称写入给定的映射。
+     */
+    void collect(Map<UUID, String> servers, Map<UUID, String> usernames);
+    
+    boolean contains(UUID playerId);
+}
@@ -0,0 +1,284 @@
+package net.rms.velocitytablist.manager;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+
+/**
+ * 玩家到服务器的索引。以玩家UUID为键，不持有已断开连接的 Player 对象。
+ * 每个服务器维护一个按加入顺序排列的并发集合，移动和断开连接无需扫描所有服务器。
+ */
+public class RosterIndex {
+    
+    private static final Comparator<Member> JOIN_ORDER = Comparator
+        .comparingLong(Member::joinSequence)
+        .thenComparing(Member::playerId);
+    
+    private final ConcurrentMap<UUID, Member> members = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, NavigableSet<Member>> servers = new ConcurrentHashMap<>();
+    private final AtomicLong joinSequence = new AtomicLong();
+    
+    // 后端推送的玩家状态，只对推送它的服务器有效，玩家切换服务器后自动失效
+    private final ConcurrentMap<UUID, ServerStatus> statuses = new ConcurrentHashMap<>();
+    private final VisibilityIndex visibility = new VisibilityIndex();
+    
+    // 每个玩家最后一次变化时的版本，在修改玩家的原子操作内写入。移除的玩家也保留，
+    // 校正时跳过收集在线玩家之后发生变化的玩家，已经早于本次校正的版本在校正结束时清理
+    private final AtomicLong version = new AtomicLong();
+    private final ConcurrentMap<UUID, Long> changedAt = new ConcurrentHashMap<>();
+    
+    /**
+     * 当前版本。在收集实际在线玩家之前读取，作为 {@link #reconcile} 的参数。
+     */
+    public long getVersion() {
+        return version.get();
+    }
+    
+    /**
+     * 将玩家移动到指定服务器。
+     *
+     * @return 玩家之前所在的服务器，不存在时为 null
+     */
+    public String move(UUID playerId, String username, String serverName) {
+        return move(playerId, username, serverName, Long.MAX_VALUE);
+    }
+    
+    /**
+     * @param since 玩家在此版本之后发生过变化时不修改
+     */
+    private String move(UUID playerId, String username, String serverName, long since) {
+        if (changedSince(playerId, since)) {
+            return null;
+        }
+        
+        String[] previous = new String[1];
+        
+        members.compute(playerId, (id, old) -> {
+            if (changedSince(id, since)) {
+                return old;
+            }
+            touch(id);
+            
+            if (old != null) {
+                if (old.serverName().equals(serverName) && old.username().equals(username)) {
+                    previous[0] = serverName;
+                    return old;
+                }
+                previous[0] = old.serverName();
+                serverSet(old.serverName()).remove(old);
+            }
+            
+            // 可见性ID和成员在同一个原子操作内分配和回收，存在的成员总是持有有效的ID
+            Member member = new Member(id, username, serverName, joinSequence.incrementAndGet(),
+                visibility.assign(id));
+            serverSet(serverName).add(member);
+            return member;
+        });
+        
+        if (previous[0] != null && !previous[0].equals(serverName)) {
+            // 旧服务器推送的状态不再有效，新服务器提前推送的状态保留
+            ServerStatus status = statuses.computeIfPresent(playerId,
+                (id, old) -> old.serverName().equals(serverName) ? old : null);
+            visibility.setVanished(playerId, status != null && status.status().vanished());
+        }
+        
+        return previous[0];
+    }
+    
+    /**
+     * 移除玩家。
+     *
+     * @return 玩家之前所在的服务器，不存在时为 null
+     */
+    public String remove(UUID playerId) {
+        return remove(playerId, Long.MAX_VALUE);
+    }
+    
+    private String remove(UUID playerId, long since) {
+        String[] previous = new String[1];
+        boolean[] removed = new boolean[1];
+        
+        members.compute(playerId, (id, old) -> {
+            if (changedSince(id, since)) {
+                return old;
+            }
+            touch(id);
+            removed[0] = true;
+            
+            if (old != null) {
+                previous[0] = old.serverName();
+                serverSet(old.serverName()).remove(old);
+            }
+            visibility.release(id);
+            return null;
+        });
+        
+        if (removed[0]) {
+            statuses.remove(playerId);
+        }
+        return previous[0];
+    }
+    
+    /**
+     * 返回玩家在当前所在服务器上的状态，没有状态时返回默认状态。
+     */
+    public PlayerStatus getStatus(UUID playerId) {
+        ServerStatus status = statuses.get(playerId);
+        if (status == null) {
+            return PlayerStatus.DEFAULT;
+        }
+        
+        Member member = members.get(playerId);
+        // 玩家尚未进入索引时也接受状态，避免后端推送早于连接事件
+        if (member != null && !member.serverName().equals(status.serverName())) {
+            return PlayerStatus.DEFAULT;
+        }
+        return status.status();
+    }
+    
+    /**
+     * 更新玩家在指定服务器上的状态。
+     *
+     * @return 玩家的有效状态是否发生变化
+     */
+    public boolean updateStatus(UUID playerId, String serverName, UnaryOperator<PlayerStatus> update) {
+        PlayerStatus before = getStatus(playerId);
+        PlayerStatus after = update.apply(before);
+        if (after.equals(before)) {
+            return false;
+        }
+        
+        statuses.compute(playerId, (id, old) -> {
+            touch(id);
+            return after.equals(PlayerStatus.DEFAULT) ? null : new ServerStatus(serverName, after);
+        });
+        
+        visibility.setVanished(playerId, after.vanished());
+        return true;
+    }
+    
+    public boolean isVanished(UUID playerId) {
+        return visibility.isVanished(playerId);
+    }
+    
+    public VisibilityIndex getVisibility() {
+        return visibility;
+    }
+    
+    public String getServer(UUID playerId) {
+        Member member = members.get(playerId);
+        return member != null ? member.serverName() : null;
+    }
+    
+    /**
+     * 返回服务器上按加入顺序排列的玩家，视图为弱一致性。
+     */
+    public Collection<Member> getMembers(String serverName) {
+        NavigableSet<Member> set = servers.get(serverName);
+        return set != null ? Collections.unmodifiableCollection(set) : Collections.emptySet();
+    }
+    
+    public int getPlayerCount(String serverName) {
+        NavigableSet<Member> set = servers.get(serverName);
+        return set != null ? set.size() : 0;
+    }
+    
+    public int size() {
+        return members.size();
+    }
+    
+    /**
+     * 以实际在线的玩家校正索引，移除已不存在的玩家。
+     * 在 since 之后发生过变化的玩家以索引为准，不按 live 修改。
+     *
+     * @param live  当前实际在线玩家及其所在服务器
+     * @param since 开始收集 live 之前的 {@link #getVersion()}
+     * @return 发生变化的服务器
+     */
+    public Set<String> reconcile(Map<UUID, String> live, Map<UUID, String> usernames, long since) {
+        Set<String> changed = ConcurrentHashMap.newKeySet();
+        
+        for (Map.Entry<UUID, String> entry : live.entrySet()) {
+            if (changedSince(entry.getKey(), since)) {
+                continue;
+            }
+            
+            Member current = members.get(entry.getKey());
+            String username = usernames.getOrDefault(entry.getKey(), current != null ? current.username() : "");
+            if (current != null && current.serverName().equals(entry.getValue())
+                    && current.username().equals(username)) {
+                continue;
+            }
+            
+            String previous = move(entry.getKey(), username, entry.getValue(), since);
+            if (previous != null) {
+                changed.add(previous);
+            }
+            changed.add(entry.getValue());
+        }
+        
+        for (UUID playerId : members.keySet()) {
+            if (!live.containsKey(playerId)) {
+                String previous = remove(playerId, since);
+                if (previous != null) {
+                    changed.add(previous);
+                }
+            }
+        }
+        
+        // 清理从未进入索引的玩家状态，收集之后才推送的状态保留
+        for (UUID playerId : statuses.keySet()) {
+            if (!live.containsKey(playerId)) {
+                statuses.computeIfPresent(playerId, (id, status) -> changedSince(id, since) ? status : null);
+            }
+        }
+        // 只回收不在索引中的玩家的ID，与 move 和 remove 对同一玩家的修改互斥
+        for (UUID playerId : visibility.players()) {
+            if (!live.containsKey(playerId)) {
+                members.compute(playerId, (id, member) -> {
+                    if (member == null && !changedSince(id, since)) {
+                        visibility.release(id);
+                    }
+                    return member;
+                });
+            }
+        }
+        
+        // 只按值删除，并发写入的新版本不受影响
+        changedAt.values().removeIf(stamp -> stamp <= since);
+        return changed;
+    }
+    
+    private void touch(UUID playerId) {
+        changedAt.put(playerId, version.incrementAndGet());
+    }
+    
+    private boolean changedSince(UUID playerId, long since) {
+        Long changed = changedAt.get(playerId);
+        return changed != null && changed > since;
+    }
+    
+    private NavigableSet<Member> serverSet(String serverName) {
+        return servers.computeIfAbsent(serverName, name -> new ConcurrentSkipListSet<>(JOIN_ORDER));
+    }
+    
+    /**
+     * 索引中的单个玩家。
+     *
+     * @param visibilityId 玩家在 {@link VisibilityIndex} 中的ID
+     */
+    public record Member(UUID playerId, String username, String serverName, long joinSequence, int visibilityId) {
+    }
+    
+    private record ServerStatus(String serverName, PlayerStatus status) {
+    }
+}
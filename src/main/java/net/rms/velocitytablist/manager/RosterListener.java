@@ -0,0 +1,13 @@
+package net.rms.velocitytablist.manager;
+
+import java.util.UUID;
+
+/**
+ * 本代理玩家列表变化的监听器。
+ */
+public interface RosterListener {
+    
+    void onPlayerMove(UUID playerId, String username, String serverName);
+    
+    void onPlayerLeave(UUID playerId);
+}
@@ -0,0 +1,162 @@
+package net.rms.velocitytablist.manager;
+
+import net.kyori.adventure.text.Component;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 某一时刻所有服务器玩家列表的不可变快照。
+ * 每次刷新只构建一次，所有玩家的Tab列表更新器共享同一份快照。
+ * 快照和每个服务器都带有单调递增的纪元，内容没有变化时纪元保持不变，更新器据此跳过无变化的刷新。
+ * 隐身玩家也包含在快照中，每类观察者看到的列表由成员位图过滤得到，同一快照内按类别共享。
+ */
+public final class RosterSnapshot {
+    
+    public static final RosterSnapshot EMPTY = new RosterSnapshot(Collections.emptyMap(), 0L, 0L,
+        new BitSet[] {new BitSet(), new BitSet()});
+    
+    private final Map<String, ServerRoster> servers;
+    private final long createdAt;
+    private final long epoch;
+    private final BitSet[] hidden;
+    private final ConcurrentMap<String, ServerView[]> views = new ConcurrentHashMap<>();
+    
+    /**
+     * @param hidden 构建快照时每类观察者看不到的玩家ID，按 {@link VisibilityIndex} 的观察者类别索引
+     */
+    public RosterSnapshot(Map<String, ServerRoster> servers, long createdAt, long epoch, BitSet[] hidden) {
+        this.servers = Collections.unmodifiableMap(servers);
+        this.createdAt = createdAt;
+        this.epoch = epoch;
+        this.hidden = hidden;
+    }
+    
+    public Collection<ServerRoster> getServers() {
+        return servers.values();
+    }
+    
+    public ServerRoster getServer(String serverName) {
+        return servers.get(serverName);
+    }
+    
+    public long getCreatedAt() {
+        return createdAt;
+    }
+    
+    /**
+     * 任意服务器的内容或服务器列表发生变化时递增。
+     */
+    public long getEpoch() {
+        return epoch;
+    }
+    
+    /**
+     * 返回指定类别的观察者看到的服务器玩家列表。
+     */
+    public ServerView getView(ServerRoster roster, int viewerClass) {
+        ServerView[] cached = views.computeIfAbsent(roster.serverName(),
+            name -> new ServerView[VisibilityIndex.VIEWER_CLASSES]);
+        ServerView view = cached[viewerClass];
+        if (view == null) {
+            // 并发计算时结果相同，不需要加锁
+            view = roster.filter(hidden[viewerClass]);
+            cached[viewerClass] = view;
+        }
+        return view;
+    }
+    
+    /**
+     * 单个服务器的玩家列表，已按显示顺序排列。条目包括隐身玩家，数量为每服务器上限加上隐身玩家数，
+     * 保证过滤掉隐身玩家后仍有足够的条目。
+     *
+     * @param playerCount 包括隐身玩家在内的玩家数
+     * @param memberIds   服务器上所有玩家的可见性ID，不能修改
+     * @param entryLimit  每个观察者最多看到的条目数
+     * @param epoch       内容最后一次变化时的纪元
+     * @param contentHash 人数、条目内容和隐身状态的哈希，用于判断重新构建后内容是否变化
+     */
+    public record ServerRoster(String serverName, int playerCount, List<RosterEntry> entries, BitSet memberIds,
+                               int entryLimit, long epoch, long contentHash) {
+        
+        public ServerRoster {
+            entries = List.copyOf(entries);
+        }
+        
+        /**
+         * 过滤掉 hidden 中的玩家。
+         */
+        ServerView filter(BitSet hidden) {
+            if (!memberIds.intersects(hidden)) {
+                List<RosterEntry> shown = entries.size() > entryLimit ? entries.subList(0, entryLimit) : entries;
+                return new ServerView(playerCount, shown);
+            }
+            
+            BitSet visible = (BitSet) memberIds.clone();
+            visible.andNot(hidden);
+            
+            List<RosterEntry> result = new ArrayList<>(Math.min(entryLimit, entries.size()));
+            for (RosterEntry entry : entries) {
+                if (result.size() >= entryLimit) {
+                    break;
+                }
+                if (visible.get(entry.visibilityId())) {
+                    result.add(entry);
+                }
+            }
+            return new ServerView(visible.cardinality(), result);
+        }
+        
+        /**
+         * 重新构建的内容是否与本列表相同。哈希只覆盖被选出的条目，未被选出的玩家变化时只有成员位图不同，
+         * 而可见性ID会被回收复用，沿用旧位图会导致过滤结果错误，所以成员位图需要单独比较。
+         */
+        boolean matches(long contentHash, BitSet memberIds, int entryLimit) {
+            return this.contentHash == contentHash && this.entryLimit == entryLimit
+                && this.memberIds.equals(memberIds);
+        }
+        
+        public static long contentHash(int playerCount, List<RosterEntry> entries, BitSet vanishedMembers) {
+            long hash = mix(playerCount ^ (long) vanishedMembers.hashCode() << 32);
+            for (RosterEntry entry : entries) {
+                hash = mix(hash ^ entry.playerId().getMostSignificantBits());
+                hash = mix(hash ^ entry.playerId().getLeastSignificantBits());
+                hash = mix(hash ^ entry.username().hashCode());
+                hash = mix(hash ^ ((long) entry.latency() << 32 | entry.gameMode()));
+                hash = mix(hash ^ entry.visibilityId());
+                hash = mix(hash ^ Objects.hashCode(entry.displayName()));
+            }
+            return hash;
+        }
+        
+        // SplitMix64 的混合函数
+        private static long mix(long value) {
+            value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+            value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+            return value ^ (value >>> 31);
+        }
+    }
+    
+    /**
+     * 某类观察者看到的服务器玩家列表，已截断到每服务器上限。
+     *
+     * @param playerCount 该观察者能看到的玩家数
+     */
+    public record ServerView(int playerCount, List<RosterEntry> entries) {
+    }
+    
+    /**
+     * 已格式化好的单个玩家条目。
+     */
+    public record RosterEntry(UUID playerId, String username, int latency, int gameMode, Component displayName,
+                              int visibilityId) {
+    }
+}
@@ -0,0 +1,233 @@
+package net.rms.velocitytablist.manager;
+
+import com.velocitypowered.api.proxy.ProxyServer;
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+import com.velocitypowered.api.proxy.server.ServerPing;
+import net.rms.velocitytablist.config.ConfigManager;
+import net.rms.velocitytablist.config.PluginConfig;
+import net.rms.velocitytablist.metrics.PluginMetrics;
+import net.rms.velocitytablist.scheduler.PluginScheduler;
+import org.slf4j.Logger;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * 后端服务器健康检查。每秒检查一次哪些服务器到了 ping 时间，同时进行的 ping 数有上限，
+ * 每次 ping 都有超时，单个无响应的后端不会拖慢其他后端的检查。
+ * 持续成功的服务器逐渐延长 ping 间隔，失败后立即恢复最短间隔；连续失败达到阈值后视为离线。
+ * 每个服务器缓存最近一次成功的 ping 结果，供 /vtl stats 显示。
+ */
+public class ServerHealthMonitor {
+    
+    private static final long TICK_MILLIS = 1000;
+    
+    private final ProxyServer server;
+    private final Logger logger;
+    private final ConfigManager configManager;
+    private final PluginMetrics metrics;
+    private final PluginScheduler scheduler;
+    
+    private final Map<String, Backend> backends = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile Consumer<String> statusListener;
+    
+    private PluginScheduler.Job tickJob;
+    
+    public ServerHealthMonitor(ProxyServer server, Logger logger, ConfigManager configManager,
+                               PluginMetrics metrics, PluginScheduler scheduler) {
+        this.server = server;
+        this.logger = logger;
+        this.configManager = configManager;
+        this.metrics = metrics;
+        this.scheduler = scheduler;
+        metrics.registerHealth(this::countDown);
+    }
+    
+    public synchronized void start() {
+        if (tickJob != null) {
+            return;
+        }
+        tickJob = scheduler.scheduleAtFixedRate(this::tick, 0, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+    
+    public synchronized void shutdown() {
+        if (tickJob != null) {
+            tickJob.cancel();
+            tickJob = null;
+        }
+    }
+    
+    /**
+     * 设置在线状态变化回调，参数为服务器名。
+     */
+    public void setStatusListener(Consumer<String> statusListener) {
+        this.statusListener = statusListener;
+    }
+    
+    /**
+     * 服务器是否在线。尚未检查过的服务器和关闭健康检查时视为在线。
+     */
+    public boolean isOnline(String serverName) {
+        if (!configManager.isHealthCheckEnabled()) {
+            return true;
+        }
+        Backend backend = backends.get(serverName);
+        return backend == null || backend.online;
+    }
+    
+    /**
+     * 最近一次成功的 ping 结果，尚未成功检查过时为空。
+     */
+    public Optional<ServerPing> getLastPing(String serverName) {
+        Backend backend = backends.get(serverName);
+        return backend != null ? Optional.ofNullable(backend.lastPing) : Optional.empty();
+    }
+    
+    private long countDown() {
+        if (!configManager.isHealthCheckEnabled()) {
+            return 0;
+        }
+        return backends.values().stream().filter(backend -> !backend.online).count();
+    }
+    
+    private void tick() {
+        PluginConfig.Health config = configManager.getConfig().health();
+        if (!config.enabled()) {
+            return;
+        }
+        
+        long now = System.nanoTime();
+        Set<String> registered = new HashSet<>();
+        for (RegisteredServer registeredServer : server.getAllServers()) {
+            String serverName = registeredServer.getServerInfo().getName();
+            registered.add(serverName);
+            
+            Backend backend = backends.computeIfAbsent(serverName, name -> new Backend(name, config, now));
+            if (backend.probing || now - backend.nextProbeAt < 0) {
+                continue;
+            }
+            // 达到上限时剩余的服务器等到下一秒，已检查过的服务器下一秒不会再次到期
+            if (inFlight.get() >= config.maxInFlight()) {
+                continue;
+            }
+            
+            try {
+                probe(registeredServer, backend, config);
+            } catch (RejectedExecutionException e) {
+                // 已关闭，忽略
+                backend.probing = false;
+                inFlight.decrementAndGet();
+                return;
+            }
+        }
+        
+        // 服务器被注销后丢弃状态
+        backends.keySet().retainAll(registered);
+    }
+    
+    private void probe(RegisteredServer registeredServer, Backend backend, PluginConfig.Health config) {
+        backend.probing = true;
+        inFlight.incrementAndGet();
+        long start = System.nanoTime();
+        
+        CompletableFuture<ServerPing> result = new CompletableFuture<>();
+        PluginScheduler.Job timeout = scheduler.schedule(
+            () -> result.completeExceptionally(new TimeoutException("ping 超时")),
+            config.timeoutMillis(), TimeUnit.MILLISECONDS);
+        
+        result.whenComplete((ping, error) -> {
+            timeout.cancel();
+            metrics.recordHealthProbe(error == null, System.nanoTime() - start);
+            onProbeComplete(backend, ping, error, configManager.getConfig().health());
+        });
+        
+        CompletableFuture<ServerPing> ping;
+        try {
+            ping = registeredServer.ping();
+        } catch (RuntimeException e) {
+            ping = CompletableFuture.failedFuture(e);
+        }
+        
+        // 超时只决定本次检查的结果；ping 本身结束前仍然占用名额，也不会对同一服务器发起新的 ping
+        ping.whenComplete((value, error) -> {
+            if (error != null) {
+                result.completeExceptionally(error);
+            } else {
+                result.complete(value);
+            }
+            backend.probing = false;
+            inFlight.decrementAndGet();
+        });
+    }
+    
+    private void onProbeComplete(Backend backend, ServerPing ping, Throwable error, PluginConfig.Health config) {
+        long minInterval = TimeUnit.SECONDS.toNanos(config.minIntervalSeconds());
+        long maxInterval = TimeUnit.SECONDS.toNanos(config.maxIntervalSeconds());
+        boolean changed = false;
+        int failures;
+        
+        synchronized (backend) {
+            if (error == null) {
+                backend.lastPing = ping;
+                backend.failures = 0;
+                backend.interval = Math.max(minInterval, Math.min(maxInterval, backend.interval * 2));
+                changed = !backend.online;
+                backend.online = true;
+            } else {
+                backend.failures++;
+                backend.interval = minInterval;
+                if (backend.online && backend.failures >= config.failureThreshold()) {
+                    backend.online = false;
+                    changed = true;
+                }
+            }
+            backend.nextProbeAt = System.nanoTime() + backend.interval;
+            failures = backend.failures;
+        }
+        
+        if (!changed) {
+            return;
+        }
+        
+        if (error == null) {
+            logger.info("后端服务器 {} 已恢复在线", backend.serverName);
+        } else {
+            logger.warn("后端服务器 {} 连续 {} 次 ping 失败，视为离线: {}", backend.serverName, failures,
+                error.getMessage());
+        }
+        
+        Consumer<String> listener = statusListener;
+        if (listener != null) {
+            listener.accept(backend.serverName);
+        }
+    }
+    
+    private static final class Backend {
+        private final String serverName;
+        private volatile boolean online = true;
+        private volatile boolean probing;
+        private volatile ServerPing lastPing;
+        
+        private volatile long nextProbeAt;
+        
+        // 以下字段由 this 保护
+        private int failures;
+        private long interval;
+        
+        private Backend(String serverName, PluginConfig.Health config, long now) {
+            this.serverName = serverName;
+            this.interval = TimeUnit.SECONDS.toNanos(config.minIntervalSeconds());
+            this.nextProbeAt = now;
+        }
+    }
+}
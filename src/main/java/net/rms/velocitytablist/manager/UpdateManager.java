@@ -2,6 +2,7 @@ package net.rms.velocitytablist.manager;
 
 import com.velocitypowered.api.proxy.ProxyServer;
 import net.rms.velocitytablist.VelocityTabListPlugin;
+import net.rms.velocitytablist.scheduler.PluginScheduler;
 import org.slf4j.Logger;
 
 import java.io.IOException;
@@ -14,8 +15,6 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Duration;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 public class UpdateManager {
@@ -32,7 +31,7 @@ public class UpdateManager {
     private final int checkIntervalHours;
     
     private final HttpClient httpClient;
-    private ScheduledExecutorService scheduler;
+    private PluginScheduler.Job checkTask;
     
     public UpdateManager(VelocityTabListPlugin plugin, ProxyServer server, Logger logger, 
                         String currentVersion, String versionUrl, String githubRepo,
@@ -49,8 +48,10 @@ public class UpdateManager {
         this.checkOnStartup = checkOnStartup;
         this.checkIntervalHours = checkIntervalHours;
         
+        // 请求完成后的回调在插件的工作线程上执行，不再为 HTTP 客户端单独创建线程池
         this.httpClient = HttpClient.newBuilder()
             .connectTimeout(Duration.ofSeconds(10))
+            .executor(plugin.getScheduler().workers())
             .build();
     }
     
@@ -62,18 +63,12 @@ public class UpdateManager {
         
         logger.info("启动自动更新管理器...");
         
-        // 使用 Velocity 推荐的 buildTask API 替代 createScheduledExecutorService
-        // scheduler = server.getScheduler().createScheduledExecutorService(plugin);
-        
-        // 使用标准的 ScheduledExecutorService，在 shutdown 时手动清理
-        scheduler = Executors.newScheduledThreadPool(1);
-        
         if (checkOnStartup) {
             checkForUpdates();
         }
         
         if (checkIntervalHours > 0) {
-            scheduler.scheduleAtFixedRate(
+            checkTask = plugin.getScheduler().scheduleAtFixedRate(
                 this::checkForUpdates,
                 checkIntervalHours,
                 checkIntervalHours,
@@ -84,16 +79,9 @@ public class UpdateManager {
     }
     
     public void shutdown() {
-        if (scheduler != null && !scheduler.isShutdown()) {
-            scheduler.shutdown();
-            try {
-                if (!scheduler.awaitTermination(5, TimeUnit.SECONDS)) {
-                    scheduler.shutdownNow();
-                }
-            } catch (InterruptedException e) {
-                scheduler.shutdownNow();
-                Thread.currentThread().interrupt();
-            }
+        if (checkTask != null) {
+            checkTask.cancel();
+            checkTask = null;
         }
     }
     
@@ -125,17 +113,20 @@ public class UpdateManager {
     }
     
     private CompletableFuture<String> fetchLatestVersion() {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(versionUrl))
-                    .timeout(Duration.ofSeconds(10))
-                    .GET()
-                    .build();
-                
-                HttpResponse<String> response = httpClient.send(request, 
-                    HttpResponse.BodyHandlers.ofString());
-                
+        HttpRequest request;
+        try {
+            request = HttpRequest.newBuilder()
+                .uri(URI.create(versionUrl))
+                .timeout(Duration.ofSeconds(10))
+                .GET()
+                .build();
+        } catch (IllegalArgumentException e) {
+            logger.error("无效的版本检查地址: {}", versionUrl, e);
+            return CompletableFuture.completedFuture(null);
+        }
+        
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+            .thenApply(response -> {
                 if (response.statusCode() == 200) {
                     String version = response.body().trim();
                     if (version.startsWith("V ")) {
@@ -146,11 +137,11 @@ public class UpdateManager {
                     logger.warn("获取版本信息失败，HTTP状态码: {}", response.statusCode());
                     return null;
                 }
-            } catch (Exception e) {
-                logger.error("获取最新版本时发生错误", e);
+            })
+            .exceptionally(throwable -> {
+                logger.error("获取最新版本时发生错误", throwable);
                 return null;
-            }
-        });
+            });
     }
     
     private boolean isNewerVersion(String latestVersion) {
@@ -188,17 +179,19 @@ public class UpdateManager {
             githubRepo, latestVersion, latestVersion
         );
         
-        CompletableFuture.supplyAsync(() -> {
+        HttpRequest request = HttpRequest.newBuilder()
+            .uri(URI.create(downloadUrl))
+            .timeout(Duration.ofMinutes(5))
+            .GET()
+            .build();
+        
+        httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray()).handle((response, throwable) -> {
+            if (throwable != null) {
+                logger.error("下载更新时发生错误", throwable);
+                return false;
+            }
+            
             try {
-                HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(downloadUrl))
-                    .timeout(Duration.ofMinutes(5))
-                    .GET()
-                    .build();
-                
-                HttpResponse<byte[]> response = httpClient.send(request, 
-                    HttpResponse.BodyHandlers.ofByteArray());
-                
                 if (response.statusCode() == 200) {
                     Path updateFile = Paths.get("plugins", String.format("velocitytablist-%s.jar", latestVersion));
                     Files.createDirectories(updateFile.getParent());
@@ -211,8 +204,8 @@ public class UpdateManager {
                     logger.warn("下载更新失败，HTTP状态码: {}", response.statusCode());
                     return false;
                 }
-            } catch (Exception e) {
-                logger.error("下载更新时发生错误", e);
+            } catch (IOException e) {
+                logger.error("保存更新文件时发生错误", e);
                 return false;
             }
         }).thenAccept(success -> {
@@ -0,0 +1,135 @@
+package net.rms.velocitytablist.manager;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 玩家可见性索引。每名玩家分配一个紧凑的整数ID，ID在玩家离开后回收复用；
+ * 每类观察者对应一个"看不到的玩家"位图，只在隐身状态变化时重新计算，
+ * 过滤玩家列表时只需要对服务器的成员位图做一次位运算。
+ */
+public class VisibilityIndex {
+    
+    public static final int VIEWER_PLAYER = 0;
+    public static final int VIEWER_STAFF = 1;
+    public static final int VIEWER_CLASSES = 2;
+    
+    private static final UUID[] NO_PLAYERS = new UUID[0];
+    
+    private final Map<UUID, Integer> ids = new HashMap<>();
+    private final BitSet freeIds = new BitSet();
+    private UUID[] players = NO_PLAYERS;
+    private int nextId;
+    
+    private final BitSet vanished = new BitSet();
+    
+    // 写时复制，读取时无需加锁；返回的位图不能修改
+    private volatile BitSet[] hidden = {new BitSet(), new BitSet()};
+    
+    /**
+     * 返回玩家的ID，没有时分配一个新ID。
+     */
+    public synchronized int assign(UUID playerId) {
+        Integer id = ids.get(playerId);
+        if (id != null) {
+            return id;
+        }
+        
+        int newId = freeIds.nextSetBit(0);
+        if (newId >= 0) {
+            freeIds.clear(newId);
+        } else {
+            newId = nextId++;
+            if (newId >= players.length) {
+                players = Arrays.copyOf(players, Math.max(64, players.length * 2));
+            }
+        }
+        
+        players[newId] = playerId;
+        ids.put(playerId, newId);
+        return newId;
+    }
+    
+    /**
+     * 返回玩家的ID，没有时返回 -1。
+     */
+    public synchronized int idOf(UUID playerId) {
+        Integer id = ids.get(playerId);
+        return id != null ? id : -1;
+    }
+    
+    public synchronized UUID playerOf(int id) {
+        return id >= 0 && id < nextId ? players[id] : null;
+    }
+    
+    /**
+     * 回收玩家的ID。
+     */
+    public synchronized void release(UUID playerId) {
+        Integer id = ids.remove(playerId);
+        if (id == null) {
+            return;
+        }
+        
+        players[id] = null;
+        freeIds.set(id);
+        if (vanished.get(id)) {
+            vanished.clear(id);
+            rebuildHidden();
+        }
+    }
+    
+    /**
+     * 返回当前持有ID的所有玩家。
+     */
+    public synchronized UUID[] players() {
+        return ids.keySet().toArray(NO_PLAYERS);
+    }
+    
+    /**
+     * 设置玩家的隐身状态。
+     *
+     * @return 状态是否发生变化
+     */
+    public synchronized boolean setVanished(UUID playerId, boolean isVanished) {
+        int id = isVanished ? assign(playerId) : idOf(playerId);
+        if (id < 0 || vanished.get(id) == isVanished) {
+            return false;
+        }
+        
+        vanished.set(id, isVanished);
+        rebuildHidden();
+        return true;
+    }
+    
+    public synchronized boolean isVanished(UUID playerId) {
+        int id = idOf(playerId);
+        return id >= 0 && vanished.get(id);
+    }
+    
+    /**
+     * 返回所有隐身玩家的ID，返回的位图不能修改。
+     */
+    public BitSet getVanished() {
+        return hidden[VIEWER_PLAYER];
+    }
+    
+    /**
+     * 返回指定类别的观察者看不到的玩家ID，返回的位图不能修改。
+     */
+    public BitSet hiddenFrom(int viewerClass) {
+        return hidden[viewerClass];
+    }
+    
+    public synchronized int size() {
+        return ids.size();
+    }
+    
+    private void rebuildHidden() {
+        // 普通玩家看不到隐身玩家，管理员可以看到所有玩家
+        hidden = new BitSet[] {(BitSet) vanished.clone(), new BitSet()};
+    }
+}
@@ -0,0 +1,93 @@
+package net.rms.velocitytablist.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 固定桶的耗时直方图（毫秒），记录无锁，适合在刷新热路径上使用。
+ */
+public class Histogram {
+    
+    private static final double[] BUCKETS_MILLIS = {1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500};
+    
+    private final LongAdder[] counts = new LongAdder[BUCKETS_MILLIS.length + 1];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumNanos = new LongAdder();
+    private volatile long maxNanos;
+    
+    public Histogram() {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+    
+    public void recordNanos(long nanos) {
+        double millis = nanos / 1_000_000.0;
+        int bucket = BUCKETS_MILLIS.length;
+        for (int i = 0; i < BUCKETS_MILLIS.length; i++) {
+            if (millis <= BUCKETS_MILLIS[i]) {
+                bucket = i;
+                break;
+            }
+        }
+        
+        counts[bucket].increment();
+        count.increment();
+        sumNanos.add(nanos);
+        if (nanos > maxNanos) {
+            maxNanos = nanos;
+        }
+    }
+    
+    public long getCount() {
+        return count.sum();
+    }
+    
+    public long getSumNanos() {
+        return sumNanos.sum();
+    }
+    
+    public double getMeanMillis() {
+        long total = count.sum();
+        return total == 0 ? 0 : sumNanos.sum() / 1_000_000.0 / total;
+    }
+    
+    public double getMaxMillis() {
+        return maxNanos / 1_000_000.0;
+    }
+    
+    /**
+     * 按桶上界估算百分位数（毫秒）。
+     */
+    public double getPercentileMillis(double percentile) {
+        long total = count.sum();
+        if (total == 0) {
+            return 0;
+        }
+        
+        long target = (long) Math.ceil(total * percentile);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS_MILLIS.length; i++) {
+            seen += counts[i].sum();
+            if (seen >= target) {
+                return BUCKETS_MILLIS[i];
+            }
+        }
+        return getMaxMillis();
+    }
+    
+    void writePrometheus(StringBuilder out, String name, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" histogram\n");
+        
+        long cumulative = 0;
+        for (int i = 0; i < BUCKETS_MILLIS.length; i++) {
+            cumulative += counts[i].sum();
+            out.append(name).append("_bucket{le=\"").append(BUCKETS_MILLIS[i] / 1000.0).append("\"} ")
+                .append(cumulative).append('\n');
+        }
+        cumulative += counts[BUCKETS_MILLIS.length].sum();
+        out.append(name).append("_bucket{le=\"+Inf\"} ").append(cumulative).append('\n');
+        out.append(name).append("_sum ").append(sumNanos.sum() / 1_000_000_000.0).append('\n');
+        out.append(name).append("_count ").append(cumulative).append('\n');
+    }
+}
@@ -0,0 +1,367 @@
+package net.rms.velocitytablist.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * 插件运行指标：刷新耗时、刷新玩家数、完整刷新间隔、条目变化数、重建请求排队情况、后端健康检查、缓存命中率、玩家列表构建耗时和调度器状态。
+ * 通过 /vtl stats 命令和本地 Prometheus 文本端点对外提供。
+ */
+public class PluginMetrics {
+    
+    private final Histogram tickDuration = new Histogram();
+    private final Histogram rosterRefreshDuration = new Histogram();
+    private final Histogram taskLatency = new Histogram();
+    private final Histogram taskDuration = new Histogram();
+    private final Histogram probeDuration = new Histogram();
+    
+    private final LongAdder ticks = new LongAdder();
+    private final LongAdder viewersRefreshed = new LongAdder();
+    private final LongAdder viewersSkipped = new LongAdder();
+    private final LongAdder entriesAdded = new LongAdder();
+    private final LongAdder entriesRemoved = new LongAdder();
+    private final LongAdder entriesUpdated = new LongAdder();
+    private final LongAdder backendFramesAccepted = new LongAdder();
+    private final LongAdder backendFramesDropped = new LongAdder();
+    private final LongAdder rebuildsImmediate = new LongAdder();
+    private final LongAdder rebuildsQueued = new LongAdder();
+    private final LongAdder rebuildsCoalesced = new LongAdder();
+    private final LongAdder probesSucceeded = new LongAdder();
+    private final LongAdder probesFailed = new LongAdder();
+    private volatile int lastTickViewers;
+    
+    private final Map<String, CacheStats> caches = new ConcurrentHashMap<>();
+    private volatile SchedulerStats scheduler;
+    private volatile LongSupplier rebuildsPending = () -> 0;
+    private volatile LongSupplier backendsDown = () -> 0;
+    private volatile LongSupplier refreshIntervalMillis = () -> 0;
+    
+    public void recordTick(long durationNanos, int viewers) {
+        tickDuration.recordNanos(durationNanos);
+        ticks.increment();
+        viewersRefreshed.add(viewers);
+        lastTickViewers = viewers;
+    }
+    
+    /**
+     * 记录一次因可见服务器没有变化而跳过的玩家刷新。
+     */
+    public void recordViewerSkipped() {
+        viewersSkipped.increment();
+    }
+    
+    public void recordRosterRefresh(long durationNanos) {
+        rosterRefreshDuration.recordNanos(durationNanos);
+    }
+    
+    public void recordEntriesAdded(int count) {
+        entriesAdded.add(count);
+    }
+    
+    public void recordEntriesRemoved(int count) {
+        entriesRemoved.add(count);
+    }
+    
+    public void recordEntriesUpdated(int count) {
+        entriesUpdated.add(count);
+    }
+    
+    public void recordBackendFrame(boolean accepted) {
+        if (accepted) {
+            backendFramesAccepted.increment();
+        } else {
+            backendFramesDropped.increment();
+        }
+    }
+    
+    /**
+     * 记录一次单个玩家的重建请求。
+     *
+     * @param queued 是否因请求过多而排队
+     * @param coalesced 是否与同一玩家尚未执行的请求合并
+     */
+    public void recordRebuildRequest(boolean queued, boolean coalesced) {
+        if (!queued) {
+            rebuildsImmediate.increment();
+        } else if (coalesced) {
+            rebuildsCoalesced.increment();
+        } else {
+            rebuildsQueued.increment();
+        }
+    }
+    
+    /**
+     * 记录一次后端健康检查。
+     */
+    public void recordHealthProbe(boolean success, long durationNanos) {
+        probeDuration.recordNanos(durationNanos);
+        if (success) {
+            probesSucceeded.increment();
+        } else {
+            probesFailed.increment();
+        }
+    }
+    
+    /**
+     * 记录一次后台任务的排队时间和执行时间。
+     */
+    public void recordTask(long latencyNanos, long durationNanos) {
+        taskLatency.recordNanos(latencyNanos);
+        taskDuration.recordNanos(durationNanos);
+    }
+    
+    /**
+     * 注册一个缓存，读取指标时通过回调获取命中和未命中次数。
+     */
+    public void registerCache(String name, LongSupplier hits, LongSupplier misses) {
+        caches.put(name, new CacheStats(hits, misses));
+    }
+    
+    /**
+     * 注册调度器，读取指标时通过回调获取队列长度、活跃线程数、定时任务数和因队列已满而推迟到下一个时间轮刻度提交的任务数。
+     */
+    public void registerScheduler(LongSupplier queueDepth, LongSupplier activeWorkers,
+                                  LongSupplier timerTasks, LongSupplier deferred) {
+        scheduler = new SchedulerStats(queueDepth, activeWorkers, timerTasks, deferred);
+    }
+    
+    /**
+     * 注册重建请求队列，读取指标时通过回调获取排队的玩家数。
+     */
+    public void registerAdmission(LongSupplier pending) {
+        rebuildsPending = pending;
+    }
+    
+    /**
+     * 注册健康检查，读取指标时通过回调获取离线的后端数。
+     */
+    public void registerHealth(LongSupplier down) {
+        backendsDown = down;
+    }
+    
+    /**
+     * 注册完整刷新间隔控制器，读取指标时通过回调获取当前的间隔（毫秒）。
+     */
+    public void registerRefreshInterval(LongSupplier intervalMillis) {
+        refreshIntervalMillis = intervalMillis;
+    }
+    
+    public Histogram getTickDuration() {
+        return tickDuration;
+    }
+    
+    public long getTicks() {
+        return ticks.sum();
+    }
+    
+    public long getViewersRefreshed() {
+        return viewersRefreshed.sum();
+    }
+    
+    public long getViewersSkipped() {
+        return viewersSkipped.sum();
+    }
+    
+    public int getLastTickViewers() {
+        return lastTickViewers;
+    }
+    
+    public long getEntriesAdded() {
+        return entriesAdded.sum();
+    }
+    
+    public long getEntriesRemoved() {
+        return entriesRemoved.sum();
+    }
+    
+    public long getEntriesUpdated() {
+        return entriesUpdated.sum();
+    }
+    
+    public long getBackendFramesAccepted() {
+        return backendFramesAccepted.sum();
+    }
+    
+    public long getBackendFramesDropped() {
+        return backendFramesDropped.sum();
+    }
+    
+    public long getRebuildsImmediate() {
+        return rebuildsImmediate.sum();
+    }
+    
+    public long getRebuildsQueued() {
+        return rebuildsQueued.sum();
+    }
+    
+    public long getRebuildsCoalesced() {
+        return rebuildsCoalesced.sum();
+    }
+    
+    public long getRebuildsPending() {
+        return rebuildsPending.getAsLong();
+    }
+    
+    public long getProbesSucceeded() {
+        return probesSucceeded.sum();
+    }
+    
+    public long getProbesFailed() {
+        return probesFailed.sum();
+    }
+    
+    public long getBackendsDown() {
+        return backendsDown.getAsLong();
+    }
+    
+    public long getRefreshIntervalMillis() {
+        return refreshIntervalMillis.getAsLong();
+    }
+    
+    /**
+     * 生成适合在聊天框中显示的摘要。
+     */
+    public List<String> summaryLines() {
+        List<String> lines = new ArrayList<>();
+        lines.add(String.format("刷新次数: %d, 上次刷新玩家数: %d, 累计刷新玩家数: %d, 无变化跳过: %d",
+            getTicks(), getLastTickViewers(), getViewersRefreshed(), getViewersSkipped()));
+        lines.add(String.format("刷新耗时: 平均 %.2fms, p50 %.0fms, p99 %.0fms, 最大 %.2fms",
+            tickDuration.getMeanMillis(), tickDuration.getPercentileMillis(0.5),
+            tickDuration.getPercentileMillis(0.99), tickDuration.getMaxMillis()));
+        lines.add(String.format("完整刷新间隔: %.1f秒", getRefreshIntervalMillis() / 1000.0));
+        lines.add(String.format("玩家列表构建耗时: 平均 %.2fms, p99 %.0fms",
+            rosterRefreshDuration.getMeanMillis(), rosterRefreshDuration.getPercentileMillis(0.99)));
+        lines.add(String.format("条目变化: 新增 %d, 移除 %d, 更新 %d",
+            getEntriesAdded(), getEntriesRemoved(), getEntriesUpdated()));
+        lines.add(String.format("后端状态消息: 接收 %d, 丢弃 %d",
+            getBackendFramesAccepted(), getBackendFramesDropped()));
+        lines.add(String.format("单个玩家重建: 立即 %d, 排队 %d, 合并 %d, 等待中 %d",
+            getRebuildsImmediate(), getRebuildsQueued(), getRebuildsCoalesced(), getRebuildsPending()));
+        lines.add(String.format("健康检查: 成功 %d, 失败 %d, 平均耗时 %.2fms, 离线后端 %d",
+            getProbesSucceeded(), getProbesFailed(), probeDuration.getMeanMillis(), getBackendsDown()));
+        caches.forEach((name, stats) -> lines.add(String.format("缓存 %s 命中率: %.1f%%",
+            name, stats.hitRatio() * 100)));
+        
+        SchedulerStats schedulerStats = scheduler;
+        if (schedulerStats != null) {
+            lines.add(String.format("调度器: 队列 %d, 活跃线程 %d, 定时任务 %d, 队列满推迟 %d",
+                schedulerStats.queueDepth.getAsLong(), schedulerStats.activeWorkers.getAsLong(),
+                schedulerStats.timerTasks.getAsLong(), schedulerStats.deferred.getAsLong()));
+            lines.add(String.format("后台任务: 排队 p99 %.0fms, 执行平均 %.2fms, 执行 p99 %.0fms",
+                taskLatency.getPercentileMillis(0.99), taskDuration.getMeanMillis(),
+                taskDuration.getPercentileMillis(0.99)));
+        }
+        return lines;
+    }
+    
+    /**
+     * 生成 Prometheus 文本格式的指标。
+     */
+    public String toPrometheusText() {
+        StringBuilder out = new StringBuilder(2048);
+        tickDuration.writePrometheus(out, "vtl_tick_duration_seconds", "Duration of a tab list refresh pass");
+        rosterRefreshDuration.writePrometheus(out, "vtl_roster_refresh_duration_seconds",
+            "Duration of building the shared roster snapshot");
+        taskLatency.writePrometheus(out, "vtl_scheduler_task_latency_seconds",
+            "Time a background task waited in the scheduler queue");
+        taskDuration.writePrometheus(out, "vtl_scheduler_task_duration_seconds",
+            "Execution time of a background task");
+        probeDuration.writePrometheus(out, "vtl_health_probe_duration_seconds", "Duration of a backend ping");
+        
+        writeCounter(out, "vtl_ticks_total", "Number of refresh passes", getTicks());
+        writeCounter(out, "vtl_viewers_refreshed_total", "Number of viewer tab lists refreshed", getViewersRefreshed());
+        writeCounter(out, "vtl_viewers_skipped_total", "Viewer refreshes skipped because nothing visible changed",
+            getViewersSkipped());
+        writeGauge(out, "vtl_last_tick_viewers", "Viewers refreshed in the last pass", getLastTickViewers());
+        writeGauge(out, "vtl_refresh_interval_millis", "Current interval between full refresh passes",
+            getRefreshIntervalMillis());
+        writeCounter(out, "vtl_entries_added_total", "Tab list entries added", getEntriesAdded());
+        writeCounter(out, "vtl_entries_removed_total", "Tab list entries removed", getEntriesRemoved());
+        writeCounter(out, "vtl_entries_updated_total", "Tab list entries updated in place", getEntriesUpdated());
+        writeCounter(out, "vtl_backend_frames_accepted_total", "Backend status frames accepted",
+            getBackendFramesAccepted());
+        writeCounter(out, "vtl_backend_frames_dropped_total", "Backend status frames dropped by the rate limit",
+            getBackendFramesDropped());
+        writeCounter(out, "vtl_rebuilds_immediate_total", "Single viewer rebuilds run immediately",
+            getRebuildsImmediate());
+        writeCounter(out, "vtl_rebuilds_queued_total", "Single viewer rebuilds queued during a burst",
+            getRebuildsQueued());
+        writeCounter(out, "vtl_rebuilds_coalesced_total", "Single viewer rebuilds merged into a queued request",
+            getRebuildsCoalesced());
+        writeGauge(out, "vtl_rebuilds_pending", "Viewers waiting for a queued rebuild", getRebuildsPending());
+        writeCounter(out, "vtl_health_probes_succeeded_total", "Backend pings that succeeded", getProbesSucceeded());
+        writeCounter(out, "vtl_health_probes_failed_total", "Backend pings that failed or timed out",
+            getProbesFailed());
+        writeGauge(out, "vtl_backends_down", "Backends currently considered offline", getBackendsDown());
+        
+        SchedulerStats schedulerStats = scheduler;
+        if (schedulerStats != null) {
+            writeGauge(out, "vtl_scheduler_queue_depth", "Tasks waiting for a worker thread",
+                schedulerStats.queueDepth.getAsLong());
+            writeGauge(out, "vtl_scheduler_active_workers", "Worker threads running a task",
+                schedulerStats.activeWorkers.getAsLong());
+            writeGauge(out, "vtl_scheduler_timer_tasks", "Delayed and periodic tasks waiting on the timer",
+                schedulerStats.timerTasks.getAsLong());
+            writeCounter(out, "vtl_scheduler_deferred_total",
+                "Tasks deferred to the next timer tick because the queue was full",
+                schedulerStats.deferred.getAsLong());
+        }
+        
+        out.append("# HELP vtl_cache_requests_total Cache lookups by result\n");
+        out.append("# TYPE vtl_cache_requests_total counter\n");
+        caches.forEach((name, stats) -> {
+            out.append("vtl_cache_requests_total{cache=\"").append(name).append("\",result=\"hit\"} ")
+                .append(stats.hits.getAsLong()).append('\n');
+            out.append("vtl_cache_requests_total{cache=\"").append(name).append("\",result=\"miss\"} ")
+                .append(stats.misses.getAsLong()).append('\n');
+        });
+        return out.toString();
+    }
+    
+    private static void writeCounter(StringBuilder out, String name, String help, long value) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" counter\n");
+        out.append(name).append(' ').append(value).append('\n');
+    }
+    
+    private static void writeGauge(StringBuilder out, String name, String help, long value) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" gauge\n");
+        out.append(name).append(' ').append(value).append('\n');
+    }
+    
+    private static final class SchedulerStats {
+        private final LongSupplier queueDepth;
+        private final LongSupplier activeWorkers;
+        private final LongSupplier timerTasks;
+        private final LongSupplier deferred;
+        
+        private SchedulerStats(LongSupplier queueDepth, LongSupplier activeWorkers,
+                               LongSupplier timerTasks, LongSupplier deferred) {
+            this.queueDepth = queueDepth;
+            this.activeWorkers = activeWorkers;
+            this.timerTasks = timerTasks;
+            this.deferred = deferred;
+        }
+    }
+    
+    private static final class CacheStats {
+        private final LongSupplier hits;
+        private final LongSupplier misses;
+        
+        private CacheStats(LongSupplier hits, LongSupplier misses) {
+            this.hits = hits;
+            this.misses = misses;
+        }
+        
+        private double hitRatio() {
+            long hitCount = hits.getAsLong();
+            long total = hitCount + misses.getAsLong();
+            return total == 0 ? 0 : (double) hitCount / total;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package net.rms.velocitytablist.metrics;
+
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executor;
+
+/**
+ * 在本地地址上以 Prometheus 文本格式提供插件指标（GET /metrics）。
+ */
+public class PrometheusExporter {
+    
+    private final PluginMetrics metrics;
+    private final Logger logger;
+    private final Executor executor;
+    
+    private HttpServer httpServer;
+    
+    /**
+     * @param executor 处理请求的执行器，使用插件共享的工作线程
+     */
+    public PrometheusExporter(PluginMetrics metrics, Logger logger, Executor executor) {
+        this.metrics = metrics;
+        this.logger = logger;
+        this.executor = executor;
+    }
+    
+    public void start(String host, int port) {
+        try {
+            httpServer = HttpServer.create(new InetSocketAddress(host, port), 0);
+            httpServer.createContext("/metrics", exchange -> {
+                try {
+                    if (!"GET".equals(exchange.getRequestMethod())) {
+                        exchange.sendResponseHeaders(405, -1);
+                        return;
+                    }
+                    
+                    byte[] body = metrics.toPrometheusText().getBytes(StandardCharsets.UTF_8);
+                    exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                    exchange.sendResponseHeaders(200, body.length);
+                    try (OutputStream output = exchange.getResponseBody()) {
+                        output.write(body);
+                    }
+                } finally {
+                    exchange.close();
+                }
+            });
+            
+            httpServer.setExecutor(executor);
+            httpServer.start();
+            
+            logger.info("指标端点已启动: http://{}:{}/metrics", host, port);
+        } catch (IOException e) {
+            logger.error("启动指标端点时发生错误", e);
+        }
+    }
+    
+    public void shutdown() {
+        if (httpServer != null) {
+            httpServer.stop(0);
+            httpServer = null;
+        }
+    }
+}
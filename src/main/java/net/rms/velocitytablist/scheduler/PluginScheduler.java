@@ -0,0 +1,242 @@
+package net.rms.velocitytablist.scheduler;
+
+import net.rms.velocitytablist.metrics.PluginMetrics;
+import org.slf4j.Logger;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 插件统一的调度器：一个时间轮线程负责定时和周期任务，固定大小的工作线程池负责执行任务。
+ * 插件内的所有后台工作都应通过这里提交，线程数与代理上安装的插件数量无关。
+ * 工作队列有上限。队列满时任务推迟到时间轮的下一个刻度重新提交，并计入推迟次数；
+ * 提交任务的线程（事件线程、Netty 线程、时间轮线程）从不直接执行任务。
+ */
+public class PluginScheduler {
+    
+    private static final int WHEEL_SIZE = 512;
+    
+    private final Logger logger;
+    private final PluginMetrics metrics;
+    private final ThreadPoolExecutor workers;
+    private final TimingWheel wheel;
+    private final LongAdder deferred = new LongAdder();
+    
+    private volatile boolean isRunning = true;
+    
+    public PluginScheduler(Logger logger, PluginMetrics metrics, int workerThreads, int queueCapacity, long tickMillis) {
+        this.logger = logger;
+        this.metrics = metrics;
+        
+        AtomicInteger threadId = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(workerThreads, workerThreads, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity),
+            runnable -> {
+                Thread thread = new Thread(runnable, "VelocityTabList-Worker-" + threadId.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.AbortPolicy());
+        
+        this.wheel = new TimingWheel("VelocityTabList-Timer", tickMillis, WHEEL_SIZE, timeout -> submit(
+            timeout.task instanceof MeasuredTask ? (MeasuredTask) timeout.task : new MeasuredTask(timeout.task)));
+        
+        metrics.registerScheduler(() -> workers.getQueue().size(), workers::getActiveCount,
+            wheel::size, deferred::sum);
+    }
+    
+    /**
+     * 在工作线程上执行任务。
+     *
+     * @throws RejectedExecutionException 调度器已关闭时
+     */
+    public void execute(Runnable task) {
+        if (!isRunning) {
+            throw new RejectedExecutionException("调度器已关闭");
+        }
+        submit(new MeasuredTask(task));
+    }
+    
+    private void submit(MeasuredTask task) {
+        try {
+            workers.execute(task);
+        } catch (RejectedExecutionException e) {
+            if (!isRunning || workers.isShutdown()) {
+                throw new RejectedExecutionException("调度器已关闭", e);
+            }
+            // 队列已满：交给时间轮在下一个刻度重新提交，排队耗时从最初提交时算起
+            deferred.increment();
+            wheel.add(task, 0L);
+        }
+    }
+    
+    public CompletableFuture<Void> runAsync(Runnable task) {
+        return CompletableFuture.runAsync(task, this::execute);
+    }
+    
+    public <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier) {
+        return CompletableFuture.supplyAsync(supplier, this::execute);
+    }
+    
+    /**
+     * 延迟执行一次任务。
+     */
+    public Job schedule(Runnable task, long delay, TimeUnit unit) {
+        if (!isRunning) {
+            throw new RejectedExecutionException("调度器已关闭");
+        }
+        return new OneShotJob(task, unit.toNanos(delay));
+    }
+    
+    /**
+     * 周期执行任务。上一次执行完成后才计算下一次执行时间，同一任务不会并发执行；
+     * 执行时间超过周期时跳过错过的执行，而不是连续补执行。
+     */
+    public Job scheduleAtFixedRate(Runnable task, long initialDelay, long period, TimeUnit unit) {
+        if (!isRunning) {
+            throw new RejectedExecutionException("调度器已关闭");
+        }
+        return new PeriodicJob(task, unit.toNanos(initialDelay), unit.toNanos(period));
+    }
+    
+    /**
+     * 返回按提交顺序逐个执行任务的执行器，任务仍在共享的工作线程上运行。
+     */
+    public Executor newSerialExecutor() {
+        return new SerialExecutor(this::execute);
+    }
+    
+    /**
+     * 共享的工作线程池，供需要 {@link Executor} 的 API 使用。
+     */
+    public Executor workers() {
+        return this::execute;
+    }
+    
+    public int getWorkerThreads() {
+        return workers.getCorePoolSize();
+    }
+    
+    public void shutdown() {
+        if (!isRunning) {
+            return;
+        }
+        
+        isRunning = false;
+        wheel.stop();
+        
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(5, TimeUnit.SECONDS)) {
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * 已调度的任务。
+     */
+    public interface Job {
+        
+        void cancel();
+        
+        boolean isCancelled();
+    }
+    
+    private final class MeasuredTask implements Runnable {
+        private final Runnable task;
+        private final long submittedAt;
+        
+        private MeasuredTask(Runnable task) {
+            this.task = task;
+            this.submittedAt = System.nanoTime();
+        }
+        
+        @Override
+        public void run() {
+            long start = System.nanoTime();
+            try {
+                task.run();
+            } catch (Throwable t) {
+                logger.error("执行后台任务时发生错误", t);
+            } finally {
+                metrics.recordTask(start - submittedAt, System.nanoTime() - start);
+            }
+        }
+    }
+    
+    private final class OneShotJob implements Job {
+        private final TimingWheel.Timeout timeout;
+        
+        private OneShotJob(Runnable task, long delayNanos) {
+            this.timeout = wheel.add(task, delayNanos);
+        }
+        
+        @Override
+        public void cancel() {
+            timeout.cancelled = true;
+        }
+        
+        @Override
+        public boolean isCancelled() {
+            return timeout.cancelled;
+        }
+    }
+    
+    private final class PeriodicJob implements Job, Runnable {
+        private final Runnable task;
+        private final long periodNanos;
+        private volatile TimingWheel.Timeout timeout;
+        private volatile boolean cancelled;
+        private long nextRun;
+        
+        private PeriodicJob(Runnable task, long initialDelayNanos, long periodNanos) {
+            this.task = task;
+            this.periodNanos = Math.max(1L, periodNanos);
+            this.nextRun = System.nanoTime() + initialDelayNanos;
+            this.timeout = wheel.add(this, initialDelayNanos);
+        }
+        
+        @Override
+        public void run() {
+            if (cancelled) {
+                return;
+            }
+            
+            try {
+                task.run();
+            } finally {
+                long now = System.nanoTime();
+                nextRun += periodNanos;
+                if (nextRun - now < 0) {
+                    nextRun = now + periodNanos - (now - nextRun) % periodNanos;
+                }
+                
+                if (!cancelled && isRunning) {
+                    timeout = wheel.add(this, nextRun - now);
+                }
+            }
+        }
+        
+        @Override
+        public void cancel() {
+            cancelled = true;
+            timeout.cancelled = true;
+        }
+        
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+}
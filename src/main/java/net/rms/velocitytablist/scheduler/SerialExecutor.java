@@ -0,0 +1,50 @@
+package net.rms.velocitytablist.scheduler;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 在共享线程池上按提交顺序逐个执行任务，同一时刻最多占用一个工作线程。
+ */
+final class SerialExecutor implements Executor {
+    
+    private final Executor delegate;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    
+    SerialExecutor(Executor delegate) {
+        this.delegate = delegate;
+    }
+    
+    @Override
+    public void execute(Runnable task) {
+        tasks.add(task);
+        scheduleDrain();
+    }
+    
+    private void scheduleDrain() {
+        if (!tasks.isEmpty() && scheduled.compareAndSet(false, true)) {
+            try {
+                delegate.execute(this::drain);
+            } catch (RuntimeException e) {
+                scheduled.set(false);
+                throw e;
+            }
+        }
+    }
+    
+    private void drain() {
+        try {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+        } finally {
+            scheduled.set(false);
+            // 释放标记后可能又有新任务加入
+            scheduleDrain();
+        }
+    }
+}
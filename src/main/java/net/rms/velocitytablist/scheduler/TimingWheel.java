@@ -0,0 +1,163 @@
+package net.rms.velocitytablist.scheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * 哈希时间轮。单个线程按固定刻度推进，到期的任务交给 dispatcher 执行，
+ * 时间轮线程本身不运行任务。添加和取消都是 O(1)，精度为一个刻度。
+ */
+final class TimingWheel {
+    
+    private final long tickNanos;
+    private final List<Timeout>[] buckets;
+    private final int mask;
+    private final Consumer<Timeout> dispatcher;
+    
+    // 其他线程添加的任务先放入队列，由时间轮线程在下一个刻度放入桶中
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    
+    private final Thread thread;
+    private final long startNanos;
+    private volatile boolean running = true;
+    private long tick;
+    
+    @SuppressWarnings("unchecked")
+    TimingWheel(String threadName, long tickMillis, int wheelSize, Consumer<Timeout> dispatcher) {
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.dispatcher = dispatcher;
+        
+        int normalized = Integer.highestOneBit(Math.max(16, wheelSize - 1) << 1);
+        this.buckets = new List[normalized];
+        for (int i = 0; i < normalized; i++) {
+            buckets[i] = new ArrayList<>();
+        }
+        this.mask = normalized - 1;
+        
+        this.startNanos = System.nanoTime();
+        this.thread = new Thread(this::run, threadName);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+    
+    Timeout add(Runnable task, long delayNanos) {
+        Timeout timeout = new Timeout(task, System.nanoTime() + Math.max(0L, delayNanos));
+        pending.add(timeout);
+        size.incrementAndGet();
+        return timeout;
+    }
+    
+    /**
+     * 等待中的任务数（包括已取消但尚未清理的任务）。
+     */
+    int size() {
+        return size.get();
+    }
+    
+    void stop() {
+        running = false;
+        thread.interrupt();
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        pending.clear();
+        size.set(0);
+    }
+    
+    private void run() {
+        while (running) {
+            if (!waitForNextTick()) {
+                break;
+            }
+            
+            transferPending();
+            expire(buckets[(int) (tick & mask)]);
+            tick++;
+        }
+    }
+    
+    private boolean waitForNextTick() {
+        long deadline = startNanos + (tick + 1) * tickNanos;
+        while (true) {
+            long sleepNanos = deadline - System.nanoTime();
+            if (sleepNanos <= 0) {
+                return true;
+            }
+            
+            try {
+                TimeUnit.NANOSECONDS.sleep(sleepNanos);
+            } catch (InterruptedException e) {
+                if (!running) {
+                    return false;
+                }
+            }
+        }
+    }
+    
+    private void transferPending() {
+        Timeout timeout;
+        while ((timeout = pending.poll()) != null) {
+            if (timeout.cancelled) {
+                size.decrementAndGet();
+                continue;
+            }
+            
+            // 已经过期的任务放入当前刻度，立即执行
+            long ticks = Math.max(tick, (timeout.deadlineNanos - startNanos + tickNanos - 1) / tickNanos);
+            timeout.remainingRounds = (ticks - tick) / buckets.length;
+            buckets[(int) (ticks & mask)].add(timeout);
+        }
+    }
+    
+    private void expire(List<Timeout> bucket) {
+        int kept = 0;
+        for (int i = 0; i < bucket.size(); i++) {
+            Timeout timeout = bucket.get(i);
+            if (timeout.cancelled) {
+                size.decrementAndGet();
+                continue;
+            }
+            
+            if (timeout.remainingRounds > 0) {
+                timeout.remainingRounds--;
+                bucket.set(kept++, timeout);
+                continue;
+            }
+            
+            size.decrementAndGet();
+            try {
+                dispatcher.accept(timeout);
+            } catch (RuntimeException e) {
+                // 线程池已关闭，丢弃剩余任务
+            }
+        }
+        
+        // 原地压缩，避免每个刻度分配新列表
+        for (int i = bucket.size() - 1; i >= kept; i--) {
+            bucket.remove(i);
+        }
+    }
+    
+    /**
+     * 时间轮中的单个任务。
+     */
+    static final class Timeout {
+        final Runnable task;
+        final long deadlineNanos;
+        volatile boolean cancelled;
+        long remainingRounds;
+        
+        private Timeout(Runnable task, long deadlineNanos) {
+            this.task = task;
+            this.deadlineNanos = deadlineNanos;
+        }
+    }
+}
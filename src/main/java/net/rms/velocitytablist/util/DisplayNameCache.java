@@ -0,0 +1,125 @@
+package net.rms.velocitytablist.util;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
+import net.rms.velocitytablist.config.ConfigManager;
+import net.rms.velocitytablist.config.PluginConfig;
+
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 显示名称组件缓存，由插件全局共享。
+ * 只有玩家名称、所在服务器或格式配置（代数）变化时才重新生成，
+ * 稳定状态下每次刷新都复用同一个不可变的 Component 实例。
+ */
+public class DisplayNameCache {
+    
+    // 超过该数量时整体清空，防止未收到断开事件的玩家长期占用内存
+    private static final int MAX_PLAYER_ENTRIES = 16384;
+    private static final int MAX_SERVER_ENTRIES = 1024;
+    
+    private final ConfigManager configManager;
+    
+    private final ConcurrentMap<UUID, CachedName> playerNames = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, CachedName> morePlayersNames = new ConcurrentHashMap<>();
+    
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    
+    public DisplayNameCache(ConfigManager configManager) {
+        this.configManager = configManager;
+    }
+    
+    public Component getPlayerName(UUID playerId, String username, String serverName, boolean afk) {
+        PluginConfig config = configManager.getConfig();
+        int generation = config.generation();
+        int afkFlag = afk ? 1 : 0;
+        CachedName cached = playerNames.get(playerId);
+        if (cached != null && cached.matches(generation, username, serverName, afkFlag)) {
+            hits.increment();
+            return cached.component;
+        }
+        
+        misses.increment();
+        if (playerNames.size() >= MAX_PLAYER_ENTRIES) {
+            playerNames.clear();
+        }
+        
+        String displayText = String.format(config.display().playerFormat(), username, serverName);
+        if (afk) {
+            displayText += config.display().afkSuffix();
+        }
+        Component component = Component.text(displayText).color(NamedTextColor.GRAY);
+        playerNames.put(playerId, new CachedName(generation, username, serverName, afkFlag, component));
+        return component;
+    }
+    
+    public Component getMorePlayersName(String serverName, int remainingCount) {
+        PluginConfig config = configManager.getConfig();
+        int generation = config.generation();
+        CachedName cached = morePlayersNames.get(serverName);
+        if (cached != null && cached.matches(generation, null, serverName, remainingCount)) {
+            hits.increment();
+            return cached.component;
+        }
+        
+        misses.increment();
+        if (morePlayersNames.size() >= MAX_SERVER_ENTRIES) {
+            morePlayersNames.clear();
+        }
+        
+        // 旧的格式只有一个参数，多余的服务器名参数会被忽略
+        String displayText = String.format(config.display().morePlayersFormat(), remainingCount, serverName);
+        Component component = Component.text(displayText).color(NamedTextColor.GRAY);
+        morePlayersNames.put(serverName, new CachedName(generation, null, serverName, remainingCount, component));
+        return component;
+    }
+    
+    public void invalidate(UUID playerId) {
+        playerNames.remove(playerId);
+    }
+    
+    public void clear() {
+        playerNames.clear();
+        morePlayersNames.clear();
+    }
+    
+    public long getHitCount() {
+        return hits.sum();
+    }
+    
+    public long getMissCount() {
+        return misses.sum();
+    }
+    
+    public int size() {
+        return playerNames.size() + morePlayersNames.size();
+    }
+    
+    private static final class CachedName {
+        private final int generation;
+        private final String username;
+        private final String serverName;
+        private final int count;
+        private final Component component;
+        
+        private CachedName(int generation, String username, String serverName, int count, Component component) {
+            this.generation = generation;
+            this.username = username;
+            this.serverName = serverName;
+            this.count = count;
+            this.component = component;
+        }
+        
+        private boolean matches(int generation, String username, String serverName, int count) {
+            return this.generation == generation
+                && this.count == count
+                && Objects.equals(this.username, username)
+                && Objects.equals(this.serverName, serverName);
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package net.rms.velocitytablist.util;
+
+import com.velocitypowered.api.util.GameProfile;
+import net.kyori.adventure.text.Component;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * 单个观察者已发送的虚拟条目：以UUID的高低位为键的开放寻址哈希表，延迟和游戏模式打包保存在基本类型数组中。
+ * 显示名称和 GameProfile 保存发送时的实例引用而不是哈希，比较时先比较引用，引用不同时再比较内容，
+ * 哈希冲突不会让变化的名称或皮肤被当作没有变化。不保留 TabListEntry 对象。
+ * 虚拟UUID的版本位不为零，因此全零的键表示空槽。删除使用后移法，不留下墓碑。
+ * 不是线程安全的。
+ */
+final class EntryStateTable {
+    
+    private static final int MIN_CAPACITY = 16;
+    private static final int MAX_LATENCY = 0xFFFFFF;
+    
+    private long[] msbs;
+    private long[] lsbs;
+    private long[] states;
+    private Component[] names;
+    private GameProfile[] profiles;
+    // 最后一次被标记的轮次，用于找出本轮没有被标记的条目
+    private int[] rounds;
+    private int size;
+    private int round;
+    
+    EntryStateTable() {
+        allocate(MIN_CAPACITY);
+    }
+    
+    /**
+     * 打包条目的延迟和游戏模式。
+     */
+    static long pack(int latency, int gameMode) {
+        long clampedLatency = Math.max(0, Math.min(MAX_LATENCY, latency));
+        return (clampedLatency << 8) | (gameMode & 0xFF);
+    }
+    
+    /**
+     * 显示名称是否相同。显示名称缓存在内容不变时返回同一实例，通常只需要比较引用。
+     */
+    static boolean sameName(Component sent, Component wanted) {
+        return sent == wanted || Objects.equals(sent, wanted);
+    }
+    
+    /**
+     * GameProfile 的UUID、名称和属性（皮肤）是否相同。GameProfile 不能原地更新，不同时条目需要重新添加。
+     * 共享的 GameProfile 没有变化时是同一实例。
+     */
+    static boolean sameProfile(GameProfile sent, GameProfile wanted) {
+        if (sent == wanted) {
+            return true;
+        }
+        if (sent == null || wanted == null || !sent.getId().equals(wanted.getId())
+                || !sent.getName().equals(wanted.getName())) {
+            return false;
+        }
+        
+        List<GameProfile.Property> sentProperties = sent.getProperties();
+        List<GameProfile.Property> wantedProperties = wanted.getProperties();
+        if (sentProperties.size() != wantedProperties.size()) {
+            return false;
+        }
+        for (int i = 0; i < sentProperties.size(); i++) {
+            GameProfile.Property a = sentProperties.get(i);
+            GameProfile.Property b = wantedProperties.get(i);
+            if (!a.getName().equals(b.getName()) || !a.getValue().equals(b.getValue())
+                    || !Objects.equals(a.getSignature(), b.getSignature())) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    static int latencyOf(long state) {
+        return (int) ((state >>> 8) & MAX_LATENCY);
+    }
+    
+    static int gameModeOf(long state) {
+        return (int) (state & 0xFF);
+    }
+    
+    /**
+     * 开始新的一轮标记。轮次只需要与表中已有的值不同，0 保留给未标记的条目。
+     */
+    int nextRound() {
+        round = round == Integer.MAX_VALUE ? 1 : round + 1;
+        return round;
+    }
+    
+    int size() {
+        return size;
+    }
+    
+    int capacity() {
+        return msbs.length;
+    }
+    
+    /**
+     * 返回条目所在的槽，不存在时返回 -1。
+     */
+    int find(long msb, long lsb) {
+        int mask = msbs.length - 1;
+        for (int slot = slot(msb, lsb, mask); ; slot = (slot + 1) & mask) {
+            if (msbs[slot] == msb && lsbs[slot] == lsb) {
+                return slot;
+            }
+            if (isEmpty(slot)) {
+                return -1;
+            }
+        }
+    }
+    
+    void put(long msb, long lsb, long state, Component name, GameProfile profile, int round) {
+        if ((size + 1) * 2 > msbs.length) {
+            resize(msbs.length * 2);
+        }
+        
+        int mask = msbs.length - 1;
+        int slot = slot(msb, lsb, mask);
+        while (!isEmpty(slot) && !(msbs[slot] == msb && lsbs[slot] == lsb)) {
+            slot = (slot + 1) & mask;
+        }
+        if (isEmpty(slot)) {
+            size++;
+        }
+        msbs[slot] = msb;
+        lsbs[slot] = lsb;
+        states[slot] = state;
+        names[slot] = name;
+        profiles[slot] = profile;
+        rounds[slot] = round;
+    }
+    
+    void remove(long msb, long lsb) {
+        int slot = find(msb, lsb);
+        if (slot < 0) {
+            return;
+        }
+        
+        // 后移法：把同一探测链上后面的条目前移填补空位
+        int mask = msbs.length - 1;
+        int hole = slot;
+        for (int next = (hole + 1) & mask; !isEmpty(next); next = (next + 1) & mask) {
+            int home = slot(msbs[next], lsbs[next], mask);
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                move(next, hole);
+                hole = next;
+            }
+        }
+        clear(hole);
+        size--;
+        
+        if (size * 8 < msbs.length && msbs.length > MIN_CAPACITY) {
+            resize(msbs.length / 2);
+        }
+    }
+    
+    boolean isEmpty(int slot) {
+        return msbs[slot] == 0 && lsbs[slot] == 0;
+    }
+    
+    long stateAt(int slot) {
+        return states[slot];
+    }
+    
+    Component nameAt(int slot) {
+        return names[slot];
+    }
+    
+    GameProfile profileAt(int slot) {
+        return profiles[slot];
+    }
+    
+    int roundAt(int slot) {
+        return rounds[slot];
+    }
+    
+    void mark(int slot, long state, Component name, int round) {
+        states[slot] = state;
+        names[slot] = name;
+        rounds[slot] = round;
+    }
+    
+    UUID idAt(int slot) {
+        return new UUID(msbs[slot], lsbs[slot]);
+    }
+    
+    private void move(int from, int to) {
+        msbs[to] = msbs[from];
+        lsbs[to] = lsbs[from];
+        states[to] = states[from];
+        names[to] = names[from];
+        profiles[to] = profiles[from];
+        rounds[to] = rounds[from];
+    }
+    
+    private void clear(int slot) {
+        msbs[slot] = 0;
+        lsbs[slot] = 0;
+        states[slot] = 0;
+        names[slot] = null;
+        profiles[slot] = null;
+        rounds[slot] = 0;
+    }
+    
+    private void allocate(int capacity) {
+        msbs = new long[capacity];
+        lsbs = new long[capacity];
+        states = new long[capacity];
+        names = new Component[capacity];
+        profiles = new GameProfile[capacity];
+        rounds = new int[capacity];
+        size = 0;
+    }
+    
+    private void resize(int capacity) {
+        long[] oldMsbs = msbs;
+        long[] oldLsbs = lsbs;
+        long[] oldStates = states;
+        Component[] oldNames = names;
+        GameProfile[] oldProfiles = profiles;
+        int[] oldRounds = rounds;
+        
+        allocate(capacity);
+        for (int i = 0; i < oldMsbs.length; i++) {
+            if (oldMsbs[i] != 0 || oldLsbs[i] != 0) {
+                put(oldMsbs[i], oldLsbs[i], oldStates[i], oldNames[i], oldProfiles[i], oldRounds[i]);
+            }
+        }
+    }
+    
+    private static int slot(long msb, long lsb, int mask) {
+        long hash = (msb ^ lsb) * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 32) & mask;
+    }
+}
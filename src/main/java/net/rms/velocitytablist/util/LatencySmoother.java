@@ -0,0 +1,79 @@
+package net.rms.velocitytablist.util;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 对玩家延迟做指数加权平滑，并量化到客户端信号格的阈值区间。
+ * 不改变信号格数的抖动不会产生新的延迟值，也就不会产生更新包。
+ * 样本只在固定的完整刷新时记录，事件触发的刷新沿用上一次的平滑值，平滑的时间常数不随事件频率变化。
+ */
+public class LatencySmoother {
+    
+    // 新样本的权重
+    private static final double ALPHA = 0.3;
+    
+    // 客户端信号格阈值（毫秒）及每个区间对外显示的代表值
+    private static final int[] THRESHOLDS = {150, 300, 600, 1000};
+    private static final int[] BUCKET_LATENCY = {75, 225, 450, 800, 1000};
+    
+    private final ConcurrentMap<UUID, Smoothed> values = new ConcurrentHashMap<>();
+    
+    /**
+     * 记录新的延迟样本，返回量化后的延迟。
+     */
+    public int update(UUID playerId, long ping) {
+        if (ping < 0) {
+            return -1;
+        }
+        
+        Smoothed smoothed = values.computeIfAbsent(playerId, id -> new Smoothed(ping));
+        return quantize(smoothed.update(ping));
+    }
+    
+    /**
+     * 返回最近一次平滑后的量化延迟，不记录样本。还没有样本时以 ping 作为第一个样本。
+     */
+    public int current(UUID playerId, long ping) {
+        Smoothed smoothed = values.get(playerId);
+        if (smoothed == null) {
+            return update(playerId, ping);
+        }
+        return quantize(smoothed.get());
+    }
+    
+    public void remove(UUID playerId) {
+        values.remove(playerId);
+    }
+    
+    public int size() {
+        return values.size();
+    }
+    
+    public static int quantize(double latency) {
+        for (int i = 0; i < THRESHOLDS.length; i++) {
+            if (latency < THRESHOLDS[i]) {
+                return BUCKET_LATENCY[i];
+            }
+        }
+        return BUCKET_LATENCY[BUCKET_LATENCY.length - 1];
+    }
+    
+    private static final class Smoothed {
+        private double value;
+        
+        private Smoothed(double initial) {
+            this.value = initial;
+        }
+        
+        private synchronized double update(long sample) {
+            value += ALPHA * (sample - value);
+            return value;
+        }
+        
+        private synchronized double get() {
+            return value;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package net.rms.velocitytablist.util;
+
+import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.proxy.ProxyServer;
+import com.velocitypowered.api.util.GameProfile;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 虚拟条目的 GameProfile 池，由插件全局共享。
+ * 每个虚拟UUID只创建一个不可变的 GameProfile，所有观察者的条目引用同一个实例；
+ * 玩家的皮肤属性在第一次使用时从源玩家复制，玩家离开后释放；
+ * 第一次使用时没有皮肤属性的玩家（例如先从其他代理同步而来）定期重新读取。
+ */
+public class ProfilePool {
+    
+    private static final String TEXTURES = "textures";
+    
+    // 超过该数量时移除最早加载的一部分，防止未收到离开事件的玩家长期占用内存
+    private static final int MAX_SOURCES = 16384;
+    private static final long TEXTURE_RETRY_NANOS = TimeUnit.SECONDS.toNanos(30);
+    
+    private final ProxyServer server;
+    
+    private final ConcurrentMap<UUID, Source> sources = new ConcurrentHashMap<>();
+    private final AtomicLong loadSequence = new AtomicLong();
+    // 分隔符和"更多玩家"等条目的数量有限，不需要释放
+    private final ConcurrentMap<UUID, GameProfile> fixedProfiles = new ConcurrentHashMap<>();
+    
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    
+    public ProfilePool(ProxyServer server) {
+        this.server = server;
+    }
+    
+    /**
+     * 返回玩家在某个服务器上的虚拟条目使用的 GameProfile。
+     *
+     * @param virtualId 虚拟UUID
+     * @param sourceId  源玩家的UUID
+     */
+    public GameProfile getPlayerProfile(UUID virtualId, UUID sourceId, String username) {
+        Source source = source(sourceId);
+        GameProfile profile = source.profiles.get(virtualId);
+        if (profile != null && profile.getName().equals(username)) {
+            hits.increment();
+            return profile;
+        }
+        
+        misses.increment();
+        profile = new GameProfile(virtualId, username, source.textures);
+        source.profiles.put(virtualId, profile);
+        return profile;
+    }
+    
+    /**
+     * 返回没有皮肤属性的固定条目使用的 GameProfile。
+     */
+    public GameProfile getFixedProfile(UUID virtualId, String name) {
+        GameProfile profile = fixedProfiles.get(virtualId);
+        if (profile != null && profile.getName().equals(name)) {
+            hits.increment();
+            return profile;
+        }
+        
+        misses.increment();
+        profile = new GameProfile(virtualId, name, Collections.emptyList());
+        fixedProfiles.put(virtualId, profile);
+        return profile;
+    }
+    
+    /**
+     * 释放玩家的所有虚拟 GameProfile。
+     */
+    public void release(UUID sourceId) {
+        sources.remove(sourceId);
+    }
+    
+    public long getHitCount() {
+        return hits.sum();
+    }
+    
+    public long getMissCount() {
+        return misses.sum();
+    }
+    
+    private Source source(UUID sourceId) {
+        Source source = sources.get(sourceId);
+        if (source != null && !source.needsTextureRetry()) {
+            return source;
+        }
+        
+        if (source == null && sources.size() >= MAX_SOURCES) {
+            evictOldest();
+        }
+        return sources.compute(sourceId, (id, old) -> {
+            if (old != null && !old.needsTextureRetry()) {
+                return old;
+            }
+            
+            List<GameProfile.Property> textures = loadTextures(id);
+            if (old != null && textures.isEmpty()) {
+                // 仍然没有皮肤属性，保留已创建的 GameProfile
+                old.loadedAt = System.nanoTime();
+                return old;
+            }
+            return new Source(textures, loadSequence.incrementAndGet());
+        });
+    }
+    
+    /**
+     * 移除最早加载的八分之一，仍在使用的玩家下次使用时重新加载。
+     */
+    private synchronized void evictOldest() {
+        if (sources.size() < MAX_SOURCES) {
+            return;
+        }
+        
+        long[] sequences = sources.values().stream().mapToLong(source -> source.sequence).sorted().toArray();
+        long cutoff = sequences[sequences.length / 8];
+        sources.values().removeIf(source -> source.sequence < cutoff);
+    }
+    
+    private List<GameProfile.Property> loadTextures(UUID sourceId) {
+        // 其他代理上的玩家没有皮肤属性，显示默认皮肤
+        List<GameProfile.Property> textures = new ArrayList<>(1);
+        Player player = server.getPlayer(sourceId).orElse(null);
+        if (player != null) {
+            for (GameProfile.Property property : player.getGameProfileProperties()) {
+                if (TEXTURES.equals(property.getName())) {
+                    textures.add(property);
+                }
+            }
+        }
+        return textures.isEmpty() ? Collections.emptyList() : List.copyOf(textures);
+    }
+    
+    private static final class Source {
+        private final List<GameProfile.Property> textures;
+        private final long sequence;
+        private final ConcurrentMap<UUID, GameProfile> profiles = new ConcurrentHashMap<>(4);
+        private volatile long loadedAt = System.nanoTime();
+        
+        private Source(List<GameProfile.Property> textures, long sequence) {
+            this.textures = textures;
+            this.sequence = sequence;
+        }
+        
+        private boolean needsTextureRetry() {
+            return textures.isEmpty() && System.nanoTime() - loadedAt >= TEXTURE_RETRY_NANOS;
+        }
+    }
+}
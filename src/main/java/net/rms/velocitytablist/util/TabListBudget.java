@@ -0,0 +1,97 @@
+package net.rms.velocitytablist.util;
+
+import java.util.Arrays;
+
+/**
+ * 将Tab列表的总条目上限分配给各个服务器（注水式分配）。
+ * 玩家少的服务器先拿满，剩余名额再平均分给玩家多的服务器；
+ * 被截断的服务器还需要额外一行"更多玩家"条目，也计入上限。
+ */
+public final class TabListBudget {
+    
+    private TabListBudget() {
+    }
+    
+    /**
+     * @param playerCounts 每个服务器的在线人数
+     * @param caps         每个服务器最多可显示的玩家数
+     * @param budget       总条目上限
+     * @return 每个服务器实际显示的玩家数，-1 表示该服务器整体不显示
+     */
+    public static int[] allocate(int[] playerCounts, int[] caps, int budget) {
+        int n = playerCounts.length;
+        int[] demands = new int[n];
+        for (int i = 0; i < n; i++) {
+            demands[i] = Math.min(playerCounts[i], caps[i]);
+        }
+        
+        // 为被截断服务器的"更多玩家"行预留名额，预留数量稳定后结束
+        int reserved = 0;
+        int[] allocation = waterFill(demands, budget);
+        for (int round = 0; round < 4; round++) {
+            int truncated = countTruncated(playerCounts, allocation);
+            if (truncated == reserved) {
+                break;
+            }
+            reserved = truncated;
+            allocation = waterFill(demands, Math.max(0, budget - reserved));
+        }
+        
+        // 兜底：按顺序累计行数，超出上限的服务器整体不显示
+        int rows = 0;
+        for (int i = 0; i < n; i++) {
+            if (playerCounts[i] == 0) {
+                continue;
+            }
+            
+            int serverRows = allocation[i] + (playerCounts[i] > allocation[i] ? 1 : 0);
+            if (rows + serverRows > budget) {
+                allocation[i] = -1;
+                continue;
+            }
+            rows += serverRows;
+        }
+        return allocation;
+    }
+    
+    static int[] waterFill(int[] demands, int budget) {
+        int n = demands.length;
+        int[] allocation = new int[n];
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Integer.compare(demands[a], demands[b]));
+        
+        int remaining = budget;
+        for (int k = 0; k < n; k++) {
+            int index = order[k];
+            int share = remaining / (n - k);
+            if (demands[index] <= share) {
+                allocation[index] = demands[index];
+                remaining -= demands[index];
+                continue;
+            }
+            
+            // 剩下的服务器需求都不低于平均份额，平均分配，余数给排在前面的服务器
+            int left = n - k;
+            int base = remaining / left;
+            int extra = remaining % left;
+            for (int j = k; j < n; j++) {
+                allocation[order[j]] = base + (j - k < extra ? 1 : 0);
+            }
+            break;
+        }
+        return allocation;
+    }
+    
+    private static int countTruncated(int[] playerCounts, int[] allocation) {
+        int truncated = 0;
+        for (int i = 0; i < playerCounts.length; i++) {
+            if (playerCounts[i] > allocation[i]) {
+                truncated++;
+            }
+        }
+        return truncated;
+    }
+}
@@ -3,16 +3,16 @@ package net.rms.velocitytablist.util;
 import com.velocitypowered.api.proxy.Player;
 import com.velocitypowered.api.proxy.player.TabList;
 import com.velocitypowered.api.proxy.player.TabListEntry;
-import com.velocitypowered.api.proxy.server.RegisteredServer;
 import com.velocitypowered.api.util.GameProfile;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.NamedTextColor;
 import net.rms.velocitytablist.VelocityTabListPlugin;
+import net.rms.velocitytablist.config.PluginConfig;
 import net.rms.velocitytablist.manager.CrossServerInfoManager;
+import net.rms.velocitytablist.manager.RosterSnapshot;
 
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class TabListUpdater {
     
@@ -21,103 +21,232 @@ public class TabListUpdater {
     private final CrossServerInfoManager infoManager;
     private final UUIDGenerator uuidGenerator;
     
-    private final ConcurrentMap<UUID, TabListEntry> virtualEntries = new ConcurrentHashMap<>();
-    private volatile boolean isUpdating = false;
+    // 已发送的虚拟条目只保存UUID、打包后的字段以及显示名称和 GameProfile 的引用，只在持有 isUpdating 时访问
+    private final EntryStateTable virtualEntries = new EntryStateTable();
+    private final AtomicBoolean isUpdating = new AtomicBoolean(false);
+    
+    // 更新期间又有更新请求时置位，持有者释放后再更新一次
+    private volatile boolean rerun;
+    
+    // 上次刷新时的快照纪元、所在服务器、配置版本、可见性类别和可见服务器的纪元，只在持有 isUpdating 时访问
+    private long renderedEpoch = -1;
+    private String renderedServer;
+    private int renderedGeneration = -1;
+    private int renderedViewerClass = -1;
+    private Map<String, Long> renderedServerEpochs = Collections.emptyMap();
+    private volatile boolean invalidated;
+    
+    // 关闭后不再更新；虚拟条目由 cleanup() 或结束时发现已关闭的更新移除，removed 只在持有 isUpdating 时访问
+    private volatile boolean closed;
+    private boolean removed;
     
     public TabListUpdater(Player player, VelocityTabListPlugin plugin, CrossServerInfoManager infoManager) {
         this.player = player;
         this.plugin = plugin;
         this.infoManager = infoManager;
-        this.uuidGenerator = new UUIDGenerator();
+        this.uuidGenerator = plugin.getUUIDGenerator();
     }
     
-    public void updateTabList() {
-        if (isUpdating) {
-            return;
+    /**
+     * 更新玩家的Tab列表。其他线程正在更新时不等待，由该线程结束后再更新一次。
+     *
+     * @return 本次发送的条目变化数，跳过更新或交给正在更新的线程时为 0
+     */
+    public int updateTabList() {
+        // 事件线程和并行刷新线程可能同时更新同一玩家：先登记请求再尝试获取，
+        // 获取失败时持有者释放后一定能看到请求
+        rerun = true;
+        int changes = 0;
+        while (rerun && isUpdating.compareAndSet(false, true)) {
+            rerun = false;
+            try {
+                changes += update();
+            } finally {
+                isUpdating.set(false);
+                // cleanup() 在更新期间被调用时没有拿到 isUpdating，由更新线程代为移除
+                if (closed) {
+                    removeEntries();
+                }
+            }
+        }
+        return changes;
+    }
+    
+    public Player getPlayer() {
+        return player;
+    }
+    
+    private int update() {
+        if (closed) {
+            return 0;
         }
         
-        isUpdating = true;
         try {
+            // 整次更新使用同一份配置快照和玩家列表快照
+            PluginConfig config = plugin.getConfigManager().getConfig();
+            RosterSnapshot snapshot = infoManager.getSnapshot();
+            String currentServer = player.getCurrentServer()
+                .map(conn -> conn.getServerInfo().getName())
+                .orElse(null);
+            int viewerClass = infoManager.getViewerClass(player);
+            
+            if (isUpToDate(snapshot, config, currentServer, viewerClass)) {
+                plugin.getMetrics().recordViewerSkipped();
+                return 0;
+            }
+            boolean clientReset = invalidated;
+            invalidated = false;
+            
             TabList tabList = player.getTabList();
+            TabListWriter writer = new TabListWriter(tabList, virtualEntries, plugin.getMetrics());
+            if (clientReset) {
+                writer.verifyClient();
+            }
+            if (!config.display().incrementalUpdates()) {
+                // 重建模式：移除所有旧的虚拟条目后重新添加；增量模式只发送新增和移除的条目，以及变化的字段
+                writer.removeAll();
+            }
             
-            // 清理旧的虚拟条目
-            cleanupVirtualEntries(tabList);
+            // 添加跨服务器信息，所有修改合并后一次性发送
+            for (TabListEntry entry : buildDesiredEntries(tabList, config, snapshot, currentServer, viewerClass)) {
+                writer.upsert(entry);
+            }
+            int changes = writer.flush();
             
-            // 添加跨服务器信息
-            addCrossServerEntries(tabList);
+            markRendered(snapshot, config, currentServer, viewerClass);
+            return changes;
             
         } catch (Exception e) {
             plugin.getLogger().error("更新玩家 {} 的Tab列表时发生错误", player.getUsername(), e);
-        } finally {
-            isUpdating = false;
+            return 0;
         }
     }
     
-    private void cleanupVirtualEntries(TabList tabList) {
-        // 移除所有虚拟条目
-        for (UUID uuid : virtualEntries.keySet()) {
-            try {
-                tabList.removeEntry(uuid);
-            } catch (Exception e) {
-                // 忽略移除不存在条目时的异常
+    /**
+     * 下一次更新时强制重新计算，例如玩家切换服务器后客户端的Tab列表可能已被重置。
+     */
+    public void invalidate() {
+        invalidated = true;
+    }
+    
+    /**
+     * 判断上次刷新后玩家能看到的服务器是否都没有变化。玩家看不到自己所在的服务器，
+     * 因此快照纪元变化但只有当前服务器变化时也可以跳过。
+     */
+    private boolean isUpToDate(RosterSnapshot snapshot, PluginConfig config, String currentServer, int viewerClass) {
+        if (invalidated || config.generation() != renderedGeneration || viewerClass != renderedViewerClass
+                || !Objects.equals(currentServer, renderedServer)) {
+            return false;
+        }
+        
+        if (snapshot.getEpoch() == renderedEpoch) {
+            return true;
+        }
+        
+        int matched = 0;
+        for (RosterSnapshot.ServerRoster roster : snapshot.getServers()) {
+            if (roster.serverName().equals(currentServer)) {
+                continue;
+            }
+            
+            Long epoch = renderedServerEpochs.get(roster.serverName());
+            if (epoch == null || epoch != roster.epoch()) {
+                return false;
             }
+            matched++;
+        }
+        
+        if (matched != renderedServerEpochs.size()) {
+            return false;
         }
-        virtualEntries.clear();
+        renderedEpoch = snapshot.getEpoch();
+        return true;
     }
     
-    private void addCrossServerEntries(TabList tabList) {
+    private void markRendered(RosterSnapshot snapshot, PluginConfig config, String currentServer, int viewerClass) {
+        Map<String, Long> serverEpochs = new HashMap<>();
+        for (RosterSnapshot.ServerRoster roster : snapshot.getServers()) {
+            if (!roster.serverName().equals(currentServer)) {
+                serverEpochs.put(roster.serverName(), roster.epoch());
+            }
+        }
+        
+        renderedServerEpochs = serverEpochs;
+        renderedEpoch = snapshot.getEpoch();
+        renderedServer = currentServer;
+        renderedGeneration = config.generation();
+        renderedViewerClass = viewerClass;
+    }
+    
+    private List<TabListEntry> buildDesiredEntries(TabList tabList, PluginConfig config, RosterSnapshot snapshot,
+                                                   String currentServer, int viewerClass) {
         
         List<TabListEntry> entriesToAdd = new ArrayList<>();
+        // 关闭跨服务器显示时不添加任何条目，已发送的条目在写入时移除
+        if (!config.display().crossServerEnabled()) {
+            return entriesToAdd;
+        }
         
         // 添加分隔符
-        String separatorText = "";
+        String separatorText = config.display().separatorText();
         if (separatorText != null && !separatorText.trim().isEmpty()) {
-            entriesToAdd.add(createSeparatorEntry(tabList));
+            entriesToAdd.add(createSeparatorEntry(tabList, separatorText));
         }
         
-        // 获取所有服务器信息
-        Collection<RegisteredServer> servers = plugin.getServer().getAllServers();
-        
-        for (RegisteredServer server : servers) {
-            // 跳过当前服务器（如果配置要求）
-            if (player.getCurrentServer().isPresent() && 
-                player.getCurrentServer().get().getServerInfo().equals(server.getServerInfo())) {
+        // 使用共享快照，不再逐个遍历服务器并重新格式化；隐身玩家按观察者类别过滤
+        // 跳过当前服务器和空服务器
+        List<String> serverNames = new ArrayList<>();
+        List<RosterSnapshot.ServerView> visible = new ArrayList<>();
+        for (RosterSnapshot.ServerRoster roster : snapshot.getServers()) {
+            if (roster.serverName().equals(currentServer)) {
                 continue;
             }
             
-            Collection<Player> serverPlayers = server.getPlayersConnected();
-            if (serverPlayers.isEmpty()) {
+            RosterSnapshot.ServerView view = snapshot.getView(roster, viewerClass);
+            if (view.entries().isEmpty()) {
+                continue;
+            }
+            serverNames.add(roster.serverName());
+            visible.add(view);
+        }
+        
+        // 按总条目上限为每个服务器分配名额
+        int[] playerCounts = new int[visible.size()];
+        int[] caps = new int[visible.size()];
+        for (int i = 0; i < visible.size(); i++) {
+            playerCounts[i] = visible.get(i).playerCount();
+            caps[i] = visible.get(i).entries().size();
+        }
+        int budget = config.display().maxTabListSize() - entriesToAdd.size();
+        int[] allocation = TabListBudget.allocate(playerCounts, caps, budget);
+        
+        for (int i = 0; i < visible.size(); i++) {
+            if (allocation[i] < 0) {
                 continue;
             }
             
-            // 直接添加服务器玩家（限制数量）不显示服务器标题
-            int maxPlayers = 10; // 默认每服务器显示10个玩家
-            int count = 0;
+            // 直接添加服务器玩家（快照中已按优先级排序）不显示服务器标题
+            RosterSnapshot.ServerView view = visible.get(i);
+            String serverName = serverNames.get(i);
+            for (int j = 0; j < allocation[i]; j++) {
+                entriesToAdd.add(createCrossServerPlayerEntry(tabList, view.entries().get(j), serverName));
+            }
             
-            for (Player serverPlayer : serverPlayers) {
-                if (count >= maxPlayers) {
-                    // 添加"更多玩家"条目
-                    entriesToAdd.add(createMorePlayersEntry(tabList, serverPlayers.size() - maxPlayers));
-                    break;
-                }
-                
-                entriesToAdd.add(createCrossServerPlayerEntry(tabList, serverPlayer, server));
-                count++;
+            int remaining = view.playerCount() - allocation[i];
+            if (remaining > 0) {
+                // 添加"更多玩家"条目
+                entriesToAdd.add(createMorePlayersEntry(tabList, serverName, remaining));
             }
         }
         
-        // 批量添加条目
-        for (TabListEntry entry : entriesToAdd) {
-            tabList.addEntry(entry);
-            virtualEntries.put(entry.getProfile().getId(), entry);
-        }
+        return entriesToAdd;
     }
     
-    private TabListEntry createSeparatorEntry(TabList tabList) {
+    private TabListEntry createSeparatorEntry(TabList tabList, String separatorText) {
         UUID uuid = uuidGenerator.generateSeparatorUUID("main");
-        GameProfile profile = new GameProfile(uuid, "separator", Collections.emptyList());
+        GameProfile profile = plugin.getProfilePool().getFixedProfile(uuid, "separator");
         
-        Component displayName = Component.text("")
+        Component displayName = Component.text(separatorText)
             .color(NamedTextColor.GOLD);
         
         return TabListEntry.builder()
@@ -129,56 +258,28 @@ public class TabListUpdater {
             .build();
     }
     
-    private TabListEntry createServerHeaderEntry(TabList tabList, RegisteredServer server, int playerCount) {
-        UUID uuid = uuidGenerator.generateServerHeaderUUID(server.getServerInfo().getName());
-        GameProfile profile = new GameProfile(uuid, server.getServerInfo().getName(), Collections.emptyList());
-        
-        String format = "§e§l%s §7(%d人在线)"; // 服务器标题格式
-        String displayText = String.format(format, server.getServerInfo().getName(), playerCount);
-        
-        Component displayName = Component.text(displayText)
-            .color(NamedTextColor.YELLOW);
-        
-        return TabListEntry.builder()
-            .tabList(tabList)
-            .profile(profile)
-            .displayName(displayName)
-            .latency(0)
-            .gameMode(0)
-            .build();
-    }
-    
-    private TabListEntry createCrossServerPlayerEntry(TabList tabList, Player serverPlayer, RegisteredServer server) {
-        UUID uuid = uuidGenerator.generatePlayerVirtualUUID(
-            serverPlayer.getUniqueId(), 
-            server.getServerInfo().getName()
-        );
-        GameProfile profile = new GameProfile(uuid, serverPlayer.getUsername(), Collections.emptyList());
-        
-        String format = "§7%s §8[%s]"; // 跨服务器玩家格式
-        String displayText = String.format(format, 
-            serverPlayer.getUsername(), 
-            server.getServerInfo().getName()
-        );
-        
-        Component displayName = Component.text(displayText)
-            .color(NamedTextColor.GRAY);
+    private TabListEntry createCrossServerPlayerEntry(TabList tabList, RosterSnapshot.RosterEntry rosterEntry,
+                                                      String serverName) {
+        UUID uuid = uuidGenerator.generatePlayerVirtualUUID(rosterEntry.playerId(), serverName);
+        // 所有观察者共用同一个带皮肤属性的 GameProfile
+        GameProfile profile = plugin.getProfilePool().getPlayerProfile(uuid, rosterEntry.playerId(),
+            rosterEntry.username());
         
         return TabListEntry.builder()
             .tabList(tabList)
             .profile(profile)
-            .displayName(displayName)
-            .latency((int) serverPlayer.getPing())
-            .gameMode(0)
+            .displayName(rosterEntry.displayName())
+            .latency(rosterEntry.latency())
+            .gameMode(rosterEntry.gameMode())
             .build();
     }
     
-    private TabListEntry createMorePlayersEntry(TabList tabList, int remainingCount) {
-        UUID uuid = uuidGenerator.generateSeparatorUUID("more_players");
-        GameProfile profile = new GameProfile(uuid, "more_players", Collections.emptyList());
+    private TabListEntry createMorePlayersEntry(TabList tabList, String serverName, int remainingCount) {
+        // 每个服务器使用独立的UUID，避免多个服务器的条目互相覆盖
+        UUID uuid = uuidGenerator.generateMorePlayersUUID(serverName);
+        GameProfile profile = plugin.getProfilePool().getFixedProfile(uuid, "more_players");
         
-        Component displayName = Component.text("§7... 还有 " + remainingCount + " 名玩家")
-            .color(NamedTextColor.GRAY);
+        Component displayName = plugin.getDisplayNameCache().getMorePlayersName(serverName, remainingCount);
         
         return TabListEntry.builder()
             .tabList(tabList)
@@ -189,10 +290,31 @@ public class TabListUpdater {
             .build();
     }
     
+    /**
+     * 关闭更新器并移除所有虚拟条目。有更新正在进行时不等待，由该更新结束时移除。
+     */
     public void cleanup() {
-        if (player.isActive()) {
-            TabList tabList = player.getTabList();
-            cleanupVirtualEntries(tabList);
+        closed = true;
+        removeEntries();
+    }
+    
+    private void removeEntries() {
+        // 已发送条目表不是线程安全的；拿不到 isUpdating 时持有者释放后会再次检查 closed
+        if (!isUpdating.compareAndSet(false, true)) {
+            return;
+        }
+        
+        try {
+            if (removed || !player.isActive()) {
+                return;
+            }
+            removed = true;
+            
+            TabListWriter writer = new TabListWriter(player.getTabList(), virtualEntries, plugin.getMetrics());
+            writer.removeAll();
+            writer.flush();
+        } finally {
+            isUpdating.set(false);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,172 @@
+package net.rms.velocitytablist.util;
+
+import com.velocitypowered.api.proxy.player.TabList;
+import com.velocitypowered.api.proxy.player.TabListEntry;
+import net.kyori.adventure.text.Component;
+import net.rms.velocitytablist.metrics.PluginMetrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * 收集一次刷新中单个玩家应有的全部虚拟条目，在 {@link #flush()} 时与已发送的条目比较后一次性发送。
+ * 没有写入的已发送条目被移除，仍然需要的条目只更新变化的字段，值没有变化的字段不发送；
+ * GameProfile（例如补充加载的皮肤）变化的条目不能原地更新，移除后重新添加。
+ * 所有移除在添加和更新之前发送。
+ * 不是线程安全的，只在持有更新器的 isUpdating 时使用。
+ */
+final class TabListWriter {
+    
+    private final TabList tabList;
+    private final EntryStateTable sent;
+    private final PluginMetrics metrics;
+    
+    private final List<TabListEntry> upserts = new ArrayList<>();
+    private boolean rebuild;
+    private boolean verifyClient;
+    
+    /**
+     * @param sent 已发送给客户端的条目，发送时同步修改
+     */
+    TabListWriter(TabList tabList, EntryStateTable sent, PluginMetrics metrics) {
+        this.tabList = tabList;
+        this.sent = sent;
+        this.metrics = metrics;
+    }
+    
+    /**
+     * 移除所有已发送的条目，之后写入的条目即使UUID相同也重新添加，而不是原地更新。
+     */
+    void removeAll() {
+        rebuild = true;
+    }
+    
+    /**
+     * 客户端的列表可能已被代理清空（例如切换服务器时）：本轮对所有已发送的条目检查客户端列表，
+     * 不在其中的重新添加。平时只在条目状态变化时查询客户端列表。
+     */
+    void verifyClient() {
+        verifyClient = true;
+    }
+    
+    /**
+     * 写入一个应有的条目，已存在相同UUID的条目时只更新变化的字段。
+     */
+    void upsert(TabListEntry entry) {
+        upserts.add(entry);
+    }
+    
+    /**
+     * @return 本次新增、移除和更新的条目总数
+     */
+    int flush() {
+        int round = sent.nextRound();
+        
+        // 先标记仍然需要的条目，同时找出需要新增的条目
+        int updated = 0;
+        List<TabListEntry> additions = new ArrayList<>();
+        List<UUID> replaced = new ArrayList<>();
+        for (TabListEntry wanted : upserts) {
+            UUID entryId = wanted.getProfile().getId();
+            long state = EntryStateTable.pack(wanted.getLatency(), wanted.getGameMode());
+            Component name = wanted.getDisplayNameComponent().orElse(null);
+            int slot = rebuild ? -1 : sent.find(entryId.getMostSignificantBits(), entryId.getLeastSignificantBits());
+            // 状态没有变化的条目不查询客户端列表
+            if (slot >= 0 && !verifyClient && sent.stateAt(slot) == state
+                    && EntryStateTable.sameName(sent.nameAt(slot), name)
+                    && EntryStateTable.sameProfile(sent.profileAt(slot), wanted.getProfile())) {
+                sent.mark(slot, state, name, round);
+                continue;
+            }
+            
+            if (slot >= 0 && !EntryStateTable.sameProfile(sent.profileAt(slot), wanted.getProfile())) {
+                // 标记后不会被当作不再需要的条目，移除后在本轮重新添加
+                sent.mark(slot, state, name, round);
+                replaced.add(entryId);
+                additions.add(wanted);
+                continue;
+            }
+            
+            // 客户端的列表中已经没有的条目需要重新添加
+            TabListEntry current = slot >= 0 ? tabList.getEntry(entryId).orElse(null) : null;
+            if (current == null) {
+                additions.add(wanted);
+                continue;
+            }
+            
+            if (sent.roundAt(slot) != round
+                    && updateFields(current, sent.stateAt(slot), sent.nameAt(slot), state, wanted)) {
+                updated++;
+            }
+            sent.mark(slot, state, name, round);
+        }
+        
+        // 本轮没有标记的条目不再需要
+        List<UUID> removals = new ArrayList<>();
+        for (int slot = 0; slot < sent.capacity(); slot++) {
+            if (!sent.isEmpty(slot) && sent.roundAt(slot) != round) {
+                removals.add(sent.idAt(slot));
+            }
+        }
+        removals.addAll(replaced);
+        for (UUID entryId : removals) {
+            try {
+                tabList.removeEntry(entryId);
+            } catch (Exception e) {
+                // 忽略移除不存在条目时的异常
+            }
+            sent.remove(entryId.getMostSignificantBits(), entryId.getLeastSignificantBits());
+        }
+        
+        int added = 0;
+        for (TabListEntry entry : additions) {
+            UUID entryId = entry.getProfile().getId();
+            long msb = entryId.getMostSignificantBits();
+            long lsb = entryId.getLeastSignificantBits();
+            int slot = sent.find(msb, lsb);
+            if (slot >= 0 && sent.roundAt(slot) == round) {
+                // 同一轮中重复写入的条目
+                continue;
+            }
+            
+            tabList.addEntry(entry);
+            long state = EntryStateTable.pack(entry.getLatency(), entry.getGameMode());
+            sent.put(msb, lsb, state, entry.getDisplayNameComponent().orElse(null), entry.getProfile(), round);
+            added++;
+        }
+        
+        upserts.clear();
+        rebuild = false;
+        verifyClient = false;
+        
+        metrics.recordEntriesAdded(added);
+        metrics.recordEntriesRemoved(removals.size());
+        metrics.recordEntriesUpdated(updated);
+        return added + removals.size() + updated;
+    }
+    
+    private static boolean updateFields(TabListEntry current, long sentState, Component sentName, long wantedState,
+                                        TabListEntry wanted) {
+        // 每个 set 调用只发送对应字段的更新包，相同的值不发送
+        boolean changed = false;
+        if (EntryStateTable.latencyOf(sentState) != EntryStateTable.latencyOf(wantedState)) {
+            current.setLatency(wanted.getLatency());
+            changed = true;
+        }
+        
+        if (EntryStateTable.gameModeOf(sentState) != EntryStateTable.gameModeOf(wantedState)) {
+            current.setGameMode(wanted.getGameMode());
+            changed = true;
+        }
+        
+        Component wantedName = wanted.getDisplayNameComponent().orElse(null);
+        if (!EntryStateTable.sameName(sentName, wantedName)
+                || !Objects.equals(current.getDisplayNameComponent().orElse(null), wantedName)) {
+            current.setDisplayName(wantedName);
+            changed = true;
+        }
+        return changed;
+    }
+}
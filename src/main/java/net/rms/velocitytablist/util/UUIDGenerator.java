@@ -1,85 +1,127 @@
 package net.rms.velocitytablist.util;
 
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * 虚拟条目UUID生成器，由插件全局共享。
+ * 虚拟UUID直接由源UUID的位和服务器编号混合得到，不拼接字符串也不创建摘要对象；
+ * 生成结果带有固定标记位，可以 O(1) 判断某个UUID是否为虚拟UUID。
+ */
 public class UUIDGenerator {
     
-    private static final String NAMESPACE = "velocitytablist";
-    private static final UUID NAMESPACE_UUID = UUID.fromString("6ba7b810-9dad-11d1-80b4-00c04fd430c8");
+    // 版本号使用 8（自定义），时钟序列位固定为该标记
+    private static final long VERSION_BITS = 0x8000L;
+    private static final long VARIANT_BITS = 0x8000000000000000L;
+    private static final int TAG = 0x2B7A;
+    private static final long TAG_BITS = VARIANT_BITS | ((long) TAG << 48);
     
-    private final ConcurrentMap<String, UUID> uuidCache = new ConcurrentHashMap<>();
+    // 不同用途的命名空间，避免与玩家派生的UUID冲突
+    private static final long NAMESPACE_PLAYER = 0x6ba7b8109dad11d1L;
+    private static final long NAMESPACE_MORE_PLAYERS = 0x5f1c2e0a7d3b9e41L;
+    private static final long NAMESPACE_SEPARATOR = 0x3c6ef372fe94f82bL;
     
-    public UUID generateVirtualUUID(String identifier) {
-        return uuidCache.computeIfAbsent(identifier, this::createVirtualUUID);
-    }
+    // 直接映射缓存，冲突时覆盖旧条目，大小固定
+    private static final int CACHE_SIZE = 4096;
     
-    private UUID createVirtualUUID(String identifier) {
-        try {
-            // 使用命名空间和标识符生成确定性UUID
-            String input = NAMESPACE + ":" + identifier;
-            
-            // 使用SHA-1哈希生成UUID (类似UUID v5)
-            MessageDigest md = MessageDigest.getInstance("SHA-1");
-            byte[] hash = md.digest(input.getBytes(StandardCharsets.UTF_8));
-            
-            // 构造UUID
-            long msb = 0;
-            long lsb = 0;
-            
-            // 使用哈希的前16字节构造UUID
-            for (int i = 0; i < 8; i++) {
-                msb = (msb << 8) | (hash[i] & 0xff);
-            }
-            
-            for (int i = 8; i < 16; i++) {
-                lsb = (lsb << 8) | (hash[i] & 0xff);
-            }
-            
-            // 设置版本位 (版本5)
-            msb &= ~(0xf000L);
-            msb |= 0x5000L;
-            
-            // 设置变体位
-            lsb &= ~(0xc000000000000000L);
-            lsb |= 0x8000000000000000L;
-            
-            return new UUID(msb, lsb);
-            
-        } catch (NoSuchAlgorithmException e) {
-            // 如果SHA-1不可用，使用简单的随机UUID作为后备
-            return UUID.nameUUIDFromBytes((NAMESPACE + ":" + identifier).getBytes(StandardCharsets.UTF_8));
-        }
-    }
+    private final ConcurrentMap<String, Integer> internedIds = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger();
+    private final AtomicReferenceArray<CacheEntry> cache = new AtomicReferenceArray<>(CACHE_SIZE);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    
+    // 按服务器名或类型命名的条目数量有限，直接缓存
+    private final ConcurrentMap<String, UUID> morePlayersUUIDs = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, UUID> separatorUUIDs = new ConcurrentHashMap<>();
     
     public UUID generatePlayerVirtualUUID(UUID originalUUID, String serverName) {
-        String identifier = "player_" + originalUUID.toString() + "_" + serverName;
-        return generateVirtualUUID(identifier);
+        int serverId = intern(serverName);
+        long msb = originalUUID.getMostSignificantBits();
+        long lsb = originalUUID.getLeastSignificantBits();
+        
+        int slot = slot(msb, lsb, serverId);
+        CacheEntry entry = cache.get(slot);
+        if (entry != null && entry.serverId == serverId
+                && entry.sourceMsb == msb && entry.sourceLsb == lsb) {
+            hits.increment();
+            return entry.result;
+        }
+        
+        misses.increment();
+        UUID result = derive(msb ^ NAMESPACE_PLAYER, lsb, serverId);
+        cache.set(slot, new CacheEntry(msb, lsb, serverId, result));
+        return result;
     }
     
-    public UUID generateServerHeaderUUID(String serverName) {
-        String identifier = "server_header_" + serverName;
-        return generateVirtualUUID(identifier);
+    public UUID generateMorePlayersUUID(String serverName) {
+        return morePlayersUUIDs.computeIfAbsent(serverName, name -> derive(NAMESPACE_MORE_PLAYERS, 0L, intern(name)));
     }
     
     public UUID generateSeparatorUUID(String type) {
-        String identifier = "separator_" + type;
-        return generateVirtualUUID(identifier);
+        return separatorUUIDs.computeIfAbsent(type, name -> derive(NAMESPACE_SEPARATOR, 0L, intern(name)));
     }
     
     public boolean isVirtualUUID(UUID uuid) {
-        return uuidCache.containsValue(uuid);
+        return (uuid.getMostSignificantBits() & 0xF000L) == VERSION_BITS
+            && (uuid.getLeastSignificantBits() & 0xFFFF000000000000L) == TAG_BITS;
     }
     
-    public void clearCache() {
-        uuidCache.clear();
+    public long getHitCount() {
+        return hits.sum();
     }
     
-    public int getCacheSize() {
-        return uuidCache.size();
+    public long getMissCount() {
+        return misses.sum();
+    }
+    
+    private int intern(String name) {
+        Integer id = internedIds.get(name);
+        if (id != null) {
+            return id;
+        }
+        return internedIds.computeIfAbsent(name, key -> nextId.incrementAndGet());
+    }
+    
+    private static UUID derive(long msb, long lsb, int id) {
+        long salt = (id + 1L) * 0x9E3779B97F4A7C15L;
+        long high = mix(msb ^ salt);
+        long low = mix(lsb ^ Long.rotateLeft(salt, 32) ^ high);
+        
+        high = (high & ~0xF000L) | VERSION_BITS;
+        low = (low & 0x0000FFFFFFFFFFFFL) | TAG_BITS;
+        return new UUID(high, low);
+    }
+    
+    private static int slot(long msb, long lsb, int serverId) {
+        long hash = mix(msb ^ Long.rotateLeft(lsb, 17) ^ serverId);
+        return (int) hash & (CACHE_SIZE - 1);
+    }
+    
+    // MurmurHash3 fmix64
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+    
+    private static final class CacheEntry {
+        private final long sourceMsb;
+        private final long sourceLsb;
+        private final int serverId;
+        private final UUID result;
+        
+        private CacheEntry(long sourceMsb, long sourceLsb, int serverId, UUID result) {
+            this.sourceMsb = sourceMsb;
+            this.sourceLsb = sourceLsb;
+            this.serverId = serverId;
+            this.result = result;
+        }
     }
-}
\ No newline at end of file
+}
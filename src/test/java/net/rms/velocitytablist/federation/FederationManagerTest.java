@@ -0,0 +1,156 @@
+package net.rms.velocitytablist.federation;
+
+import com.velocitypowered.api.event.proxy.ProxyShutdownEvent;
+import net.rms.velocitytablist.VelocityTabListPlugin;
+import net.rms.velocitytablist.stub.StubNetwork;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.helpers.NOPLogger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FederationManagerTest {
+    
+    private static final UUID ALICE_ID = new UUID(1, 1);
+    private static final RosterFrame.Change ALICE = RosterFrame.Change.upsert(ALICE_ID, "Alice", "server-0");
+    private static final RosterFrame.Change BOB = RosterFrame.Change.upsert(new UUID(2, 2), "Bob", "server-1");
+    
+    private final LoopbackTransport.Hub hub = new LoopbackTransport.Hub();
+    private final BlockingQueue<byte[]> received = new LinkedBlockingQueue<>();
+    private final LoopbackTransport peer = new LoopbackTransport(hub);
+    
+    private VelocityTabListPlugin plugin;
+    private FederationManager manager;
+    
+    @BeforeEach
+    void setUp() throws IOException {
+        StubNetwork network = StubNetwork.create(2, 2);
+        plugin = network.startPlugin(Files.createTempDirectory("vtl-test").resolve("velocitytablist"));
+        manager = new FederationManager(network.proxy(), NOPLogger.NOP_LOGGER, plugin.getCrossServerManager(),
+            plugin.getScheduler(), new LoopbackTransport(hub), "proxy-a", 50, 3600);
+        
+        peer.start(received::add);
+        manager.start();
+        
+        // 启动时发布完整列表，并请求其他代理的完整列表
+        RosterFrame full = next();
+        assertEquals(RosterFrame.Type.FULL, full.getType());
+        assertEquals(4, full.getChanges().size());
+        RosterFrame resync = next();
+        assertEquals(RosterFrame.Type.RESYNC, resync.getType());
+        assertEquals("*", resync.getTarget());
+    }
+    
+    @AfterEach
+    void tearDown() {
+        manager.shutdown();
+        plugin.onProxyShutdown(new ProxyShutdownEvent());
+    }
+    
+    @Test
+    void consecutiveDeltasApplyWithoutResync() throws IOException {
+        peer.send(RosterFrame.full("proxy-b", 1, List.of(ALICE)).encode());
+        peer.send(RosterFrame.delta("proxy-b", 2, List.of(BOB)).encode());
+        
+        assertNothingSent();
+        assertEquals(Map.of(ALICE_ID, "server-0", BOB.playerId(), "server-1"), remoteServers());
+    }
+    
+    @Test
+    void sequenceGapRequestsResync() throws IOException {
+        peer.send(RosterFrame.full("proxy-b", 1, List.of(ALICE)).encode());
+        peer.send(RosterFrame.delta("proxy-b", 3, List.of(BOB)).encode());
+        
+        RosterFrame resync = next();
+        assertEquals(RosterFrame.Type.RESYNC, resync.getType());
+        assertEquals("proxy-a", resync.getProxyId());
+        assertEquals("proxy-b", resync.getTarget());
+        // 缺口之后的变化仍然生效，完整同步再校正遗漏的部分
+        assertTrue(manager.contains(BOB.playerId()));
+    }
+    
+    @Test
+    void deltaBeforeFullSyncRequestsResync() throws IOException {
+        peer.send(RosterFrame.delta("proxy-b", 1, List.of(ALICE)).encode());
+        
+        assertEquals("proxy-b", next().getTarget());
+    }
+    
+    @Test
+    void checksumMismatchRequestsResync() throws IOException {
+        peer.send(RosterFrame.full("proxy-b", 1, List.of(ALICE, BOB)).encode());
+        peer.send(RosterFrame.checksum("proxy-b", 1, 2, RosterFrame.checksumOf(List.of(ALICE, BOB))).encode());
+        assertNothingSent();
+        
+        peer.send(RosterFrame.checksum("proxy-b", 1, 2, RosterFrame.checksumOf(List.of(ALICE))).encode());
+        RosterFrame resync = next();
+        assertEquals(RosterFrame.Type.RESYNC, resync.getType());
+        assertEquals("proxy-b", resync.getTarget());
+        
+        // 序号不一致说明有帧丢失
+        peer.send(RosterFrame.checksum("proxy-b", 5, 2, RosterFrame.checksumOf(List.of(ALICE, BOB))).encode());
+        assertEquals("proxy-b", next().getTarget());
+    }
+    
+    @Test
+    void leaveFromPreviousOwnerIsIgnoredAfterHandoff() throws IOException {
+        LoopbackTransport other = new LoopbackTransport(hub);
+        other.start(frame -> { });
+        
+        peer.send(RosterFrame.full("proxy-b", 1, List.of(ALICE)).encode());
+        // 玩家转移到代理 C，代理 B 的离开消息晚于 C 的加入到达
+        other.send(RosterFrame.full("proxy-c", 1,
+            List.of(RosterFrame.Change.upsert(ALICE_ID, "Alice", "server-1"))).encode());
+        peer.send(RosterFrame.delta("proxy-b", 2, List.of(RosterFrame.Change.leave(ALICE_ID))).encode());
+        assertNothingSent();
+        
+        assertTrue(manager.contains(ALICE_ID));
+        assertEquals(Map.of(ALICE_ID, "server-1"), remoteServers());
+        
+        other.send(RosterFrame.delta("proxy-c", 2, List.of(RosterFrame.Change.leave(ALICE_ID))).encode());
+        assertNothingSent();
+        assertFalse(manager.contains(ALICE_ID));
+        other.close();
+    }
+    
+    /**
+     * 请求本代理的完整列表作为标记：同步状态在同一个串行执行器上处理，
+     * 收到的下一帧是完整列表说明之前的帧都已处理且没有发出其他帧。
+     */
+    private void assertNothingSent() throws IOException {
+        peer.send(RosterFrame.resync("proxy-b", "proxy-a").encode());
+        assertEquals(RosterFrame.Type.FULL, next().getType());
+    }
+    
+    private RosterFrame next() throws IOException {
+        byte[] frame;
+        try {
+            frame = received.poll(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+        assertNotNull(frame, "没有收到同步数据");
+        return RosterFrame.decode(frame);
+    }
+    
+    private Map<UUID, String> remoteServers() {
+        Map<UUID, String> servers = new HashMap<>();
+        manager.collect(servers, new HashMap<>());
+        return servers;
+    }
+}
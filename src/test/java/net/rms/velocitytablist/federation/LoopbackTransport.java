@@ -0,0 +1,44 @@
+package net.rms.velocitytablist.federation;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * 进程内的传输实现，同一个 Hub 上的所有传输互相广播，发送时在调用线程上同步交给接收方。
+ */
+class LoopbackTransport implements FederationTransport {
+    
+    private final Hub hub;
+    private volatile Consumer<byte[]> receiver;
+    
+    LoopbackTransport(Hub hub) {
+        this.hub = hub;
+    }
+    
+    @Override
+    public void start(Consumer<byte[]> receiver) {
+        this.receiver = receiver;
+        hub.members.add(this);
+    }
+    
+    @Override
+    public void send(byte[] frame) {
+        for (LoopbackTransport member : hub.members) {
+            Consumer<byte[]> target = member.receiver;
+            if (member != this && target != null) {
+                target.accept(frame.clone());
+            }
+        }
+    }
+    
+    @Override
+    public void close() {
+        hub.members.remove(this);
+        receiver = null;
+    }
+    
+    static class Hub {
+        private final List<LoopbackTransport> members = new CopyOnWriteArrayList<>();
+    }
+}
@@ -0,0 +1,68 @@
+package net.rms.velocitytablist.federation;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RosterFrameTest {
+    
+    private static final RosterFrame.Change ALICE = RosterFrame.Change.upsert(new UUID(1, 1), "Alice", "lobby");
+    private static final RosterFrame.Change BOB = RosterFrame.Change.upsert(new UUID(2, 2), "Bob", "survival");
+    
+    @Test
+    void deltaRoundTrip() throws IOException {
+        RosterFrame frame = RosterFrame.delta("proxy-a", 7, List.of(ALICE, RosterFrame.Change.leave(BOB.playerId())));
+        RosterFrame decoded = RosterFrame.decode(frame.encode());
+        
+        assertEquals(RosterFrame.Type.DELTA, decoded.getType());
+        assertEquals("proxy-a", decoded.getProxyId());
+        assertEquals(7, decoded.getSequence());
+        assertEquals(frame.getChanges(), decoded.getChanges());
+    }
+    
+    @Test
+    void fullChecksumAndResyncRoundTrip() throws IOException {
+        RosterFrame full = RosterFrame.decode(RosterFrame.full("proxy-a", 8, List.of(ALICE, BOB)).encode());
+        assertEquals(RosterFrame.Type.FULL, full.getType());
+        assertEquals(List.of(ALICE, BOB), full.getChanges());
+        
+        RosterFrame checksum = RosterFrame.decode(RosterFrame.checksum("proxy-a", 9, 2, 12345L).encode());
+        assertEquals(RosterFrame.Type.CHECKSUM, checksum.getType());
+        assertEquals(2, checksum.getPlayerCount());
+        assertEquals(12345L, checksum.getChecksum());
+        
+        RosterFrame resync = RosterFrame.decode(RosterFrame.resync("proxy-b", "proxy-a").encode());
+        assertEquals(RosterFrame.Type.RESYNC, resync.getType());
+        assertEquals("proxy-b", resync.getProxyId());
+        assertEquals("proxy-a", resync.getTarget());
+    }
+    
+    @Test
+    void rejectsMalformedFrames() {
+        byte[] encoded = RosterFrame.full("proxy-a", 1, List.of(ALICE, BOB)).encode();
+        assertThrows(IOException.class, () -> RosterFrame.decode(Arrays.copyOf(encoded, encoded.length - 3)));
+        
+        byte[] badVersion = encoded.clone();
+        badVersion[0] = RosterFrame.VERSION + 1;
+        assertThrows(IOException.class, () -> RosterFrame.decode(badVersion));
+        
+        byte[] badType = encoded.clone();
+        badType[1] = (byte) RosterFrame.Type.values().length;
+        assertThrows(IOException.class, () -> RosterFrame.decode(badType));
+    }
+    
+    @Test
+    void checksumIgnoresOrderButNotContent() {
+        assertEquals(RosterFrame.checksumOf(List.of(ALICE, BOB)), RosterFrame.checksumOf(List.of(BOB, ALICE)));
+        
+        RosterFrame.Change moved = RosterFrame.Change.upsert(BOB.playerId(), "Bob", "lobby");
+        assertNotEquals(RosterFrame.checksumOf(List.of(ALICE, BOB)), RosterFrame.checksumOf(List.of(ALICE, moved)));
+    }
+}
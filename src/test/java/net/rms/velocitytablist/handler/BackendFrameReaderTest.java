@@ -0,0 +1,96 @@
+package net.rms.velocitytablist.handler;
+
+import com.google.common.io.ByteArrayDataOutput;
+import com.google.common.io.ByteStreams;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BackendFrameReaderTest {
+    
+    private static final UUID FIRST = new UUID(1, 2);
+    private static final UUID SECOND = new UUID(3, 4);
+    
+    @Test
+    void readsRecordsWithOptionalFields() {
+        ByteArrayDataOutput out = header(BackendFrameReader.TYPE_DELTA, 2);
+        out.writeLong(FIRST.getMostSignificantBits());
+        out.writeLong(FIRST.getLeastSignificantBits());
+        out.writeByte(BackendFrameReader.FIELD_AFK | BackendFrameReader.FIELD_GAME_MODE | BackendFrameReader.FIELD_WORLD);
+        out.writeByte(1);
+        out.writeByte(3);
+        out.writeUTF("world_nether");
+        out.writeLong(SECOND.getMostSignificantBits());
+        out.writeLong(SECOND.getLeastSignificantBits());
+        out.writeByte(BackendFrameReader.FIELD_VANISH);
+        out.writeByte(2);
+        
+        BackendFrameReader reader = new BackendFrameReader(ByteStreams.newDataInput(out.toByteArray()));
+        assertFalse(reader.isFull());
+        
+        assertTrue(reader.next());
+        assertEquals(FIRST, reader.playerId());
+        assertTrue(reader.isAfk());
+        assertFalse(reader.isVanished());
+        assertEquals(3, reader.gameMode());
+        assertEquals("world_nether", reader.world());
+        
+        assertTrue(reader.next());
+        assertEquals(SECOND, reader.playerId());
+        assertEquals(BackendFrameReader.FIELD_VANISH, reader.fields());
+        assertFalse(reader.isAfk());
+        assertTrue(reader.isVanished());
+        assertNull(reader.world());
+        
+        assertFalse(reader.next());
+    }
+    
+    @Test
+    void emptyFullFrame() {
+        BackendFrameReader reader = new BackendFrameReader(
+            ByteStreams.newDataInput(header(BackendFrameReader.TYPE_FULL, 0).toByteArray()));
+        assertTrue(reader.isFull());
+        assertFalse(reader.next());
+    }
+    
+    @Test
+    void rejectsUnknownVersionAndType() {
+        byte[] badVersion = {(byte) (BackendFrameReader.VERSION + 1), BackendFrameReader.TYPE_DELTA, 0, 0};
+        assertThrows(IllegalArgumentException.class,
+            () -> new BackendFrameReader(ByteStreams.newDataInput(badVersion)));
+        
+        byte[] resync = {BackendFrameReader.VERSION, BackendFrameReader.TYPE_RESYNC, 0, 0};
+        assertThrows(IllegalArgumentException.class,
+            () -> new BackendFrameReader(ByteStreams.newDataInput(resync)));
+    }
+    
+    @Test
+    void truncatedRecordThrows() {
+        ByteArrayDataOutput out = header(BackendFrameReader.TYPE_DELTA, 1);
+        out.writeLong(FIRST.getMostSignificantBits());
+        
+        BackendFrameReader reader = new BackendFrameReader(ByteStreams.newDataInput(out.toByteArray()));
+        assertThrows(IllegalStateException.class, reader::next);
+    }
+    
+    @Test
+    void resyncRequestHasOnlyHeader() {
+        assertArrayEquals(new byte[]{BackendFrameReader.VERSION, BackendFrameReader.TYPE_RESYNC},
+            BackendFrameReader.resyncRequest());
+    }
+    
+    static ByteArrayDataOutput header(int type, int count) {
+        ByteArrayDataOutput out = ByteStreams.newDataOutput();
+        out.writeByte(BackendFrameReader.VERSION);
+        out.writeByte(type);
+        out.writeShort(count);
+        return out;
+    }
+}
@@ -0,0 +1,107 @@
+package net.rms.velocitytablist.handler;
+
+import com.google.common.io.ByteArrayDataOutput;
+import com.google.common.io.ByteStreams;
+import net.rms.velocitytablist.manager.PlayerStatus;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BackendSyncHandlerTest {
+    
+    private static final UUID FIRST = new UUID(1, 2);
+    private static final UUID SECOND = new UUID(3, 4);
+    
+    @Test
+    void truncatedFullFrameLeavesPendingStateUntouched() {
+        BackendSyncHandler.Backend backend = new BackendSyncHandler.Backend("lobby");
+        backend.merge(reader(delta(FIRST, true)));
+        
+        // 声明两条记录，第二条在游戏模式字段之前截断
+        ByteArrayDataOutput out = BackendFrameReaderTest.header(BackendFrameReader.TYPE_FULL, 2);
+        writeRecord(out, SECOND, BackendFrameReader.FIELD_VANISH, 2);
+        out.writeLong(FIRST.getMostSignificantBits());
+        out.writeLong(FIRST.getLeastSignificantBits());
+        out.writeByte(BackendFrameReader.FIELD_GAME_MODE);
+        
+        BackendFrameReader truncated = reader(out.toByteArray());
+        assertThrows(IllegalStateException.class, () -> backend.merge(truncated));
+        
+        BackendSyncHandler.Batch batch = backend.drain();
+        assertFalse(batch.full());
+        assertEquals(1, batch.updates().size());
+        assertTrue(batch.updates().get(FIRST).apply(PlayerStatus.DEFAULT).afk());
+    }
+    
+    @Test
+    void truncatedDeltaFrameIsDiscardedWhole() {
+        BackendSyncHandler.Backend backend = new BackendSyncHandler.Backend("lobby");
+        
+        ByteArrayDataOutput out = BackendFrameReaderTest.header(BackendFrameReader.TYPE_DELTA, 2);
+        writeRecord(out, SECOND, BackendFrameReader.FIELD_VANISH, 2);
+        out.writeLong(FIRST.getMostSignificantBits());
+        
+        BackendFrameReader truncated = reader(out.toByteArray());
+        assertThrows(IllegalStateException.class, () -> backend.merge(truncated));
+        
+        BackendSyncHandler.Batch batch = backend.drain();
+        assertFalse(batch.full());
+        assertTrue(batch.updates().isEmpty());
+    }
+    
+    @Test
+    void fullFrameReplacesEarlierDeltas() {
+        BackendSyncHandler.Backend backend = new BackendSyncHandler.Backend("lobby");
+        backend.merge(reader(delta(FIRST, true)));
+        
+        ByteArrayDataOutput out = BackendFrameReaderTest.header(BackendFrameReader.TYPE_FULL, 1);
+        writeRecord(out, SECOND, BackendFrameReader.FIELD_VANISH, 2);
+        backend.merge(reader(out.toByteArray()));
+        
+        BackendSyncHandler.Batch batch = backend.drain();
+        assertTrue(batch.full());
+        assertEquals(1, batch.updates().size());
+        assertTrue(batch.updates().get(SECOND).apply(PlayerStatus.DEFAULT).vanished());
+        
+        assertFalse(backend.drain().full());
+    }
+    
+    @Test
+    void deltasForSamePlayerCombine() {
+        BackendSyncHandler.Backend backend = new BackendSyncHandler.Backend("lobby");
+        backend.merge(reader(delta(FIRST, true)));
+        
+        ByteArrayDataOutput out = BackendFrameReaderTest.header(BackendFrameReader.TYPE_DELTA, 1);
+        out.writeLong(FIRST.getMostSignificantBits());
+        out.writeLong(FIRST.getLeastSignificantBits());
+        out.writeByte(BackendFrameReader.FIELD_GAME_MODE);
+        out.writeByte(1);
+        backend.merge(reader(out.toByteArray()));
+        
+        PlayerStatus status = backend.drain().updates().get(FIRST).apply(PlayerStatus.DEFAULT);
+        assertTrue(status.afk());
+        assertEquals(1, status.gameMode());
+    }
+    
+    private static byte[] delta(UUID playerId, boolean afk) {
+        ByteArrayDataOutput out = BackendFrameReaderTest.header(BackendFrameReader.TYPE_DELTA, 1);
+        writeRecord(out, playerId, BackendFrameReader.FIELD_AFK, afk ? 1 : 0);
+        return out.toByteArray();
+    }
+    
+    private static void writeRecord(ByteArrayDataOutput out, UUID playerId, int fields, int flags) {
+        out.writeLong(playerId.getMostSignificantBits());
+        out.writeLong(playerId.getLeastSignificantBits());
+        out.writeByte(fields);
+        out.writeByte(flags);
+    }
+    
+    private static BackendFrameReader reader(byte[] data) {
+        return new BackendFrameReader(ByteStreams.newDataInput(data));
+    }
+}
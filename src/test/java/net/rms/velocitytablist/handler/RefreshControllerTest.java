@@ -0,0 +1,39 @@
+package net.rms.velocitytablist.handler;
+
+import net.rms.velocitytablist.config.PluginConfig;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RefreshControllerTest {
+    
+    // 间隔 5-120 秒，CPU 目标 1%，平均每名玩家 2 个变化时缩短
+    private static final PluginConfig.Refresh CONFIG = new PluginConfig.Refresh(30, 250L, true, 4, 2000L, 50, 100,
+        true, 5, 120, 1.0, 2.0);
+    
+    @Test
+    void shrinksOnlyWhenChangesPerViewerReachTheThreshold() {
+        assertEquals(20_000, RefreshController.nextInterval(CONFIG, 30_000, 0, 0, 300, 100));
+        // 每名玩家平均一个变化，例如少数玩家的延迟变化，不缩短
+        assertEquals(30_000, RefreshController.nextInterval(CONFIG, 30_000, 0, 0, 100, 100));
+    }
+    
+    @Test
+    void widensWhenFewEntriesChanged() {
+        assertEquals(45_000, RefreshController.nextInterval(CONFIG, 30_000, 0, 0, 1, 100));
+        assertEquals(45_000, RefreshController.nextInterval(CONFIG, 30_000, 0, 0, 0, 0));
+        assertEquals(120_000, RefreshController.nextInterval(CONFIG, 100_000, 0, 0, 0, 100));
+    }
+    
+    @Test
+    void widensWhenCpuShareExceedsTarget() {
+        assertEquals(45_000, RefreshController.nextInterval(CONFIG, 30_000, 0.05, 0, 1000, 100));
+    }
+    
+    @Test
+    void neverDropsBelowTheCostFloorOrMinimum() {
+        // 单次完整刷新 1 秒，在 1% 的目标下间隔至少 100 秒
+        assertEquals(100_000, RefreshController.nextInterval(CONFIG, 30_000, 0, 1_000_000_000, 1000, 100));
+        assertEquals(5_000, RefreshController.nextInterval(CONFIG, 6_000, 0, 0, 1000, 100));
+    }
+}
@@ -0,0 +1,110 @@
+package net.rms.velocitytablist.manager;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CyclicBarrier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RosterIndexTest {
+    
+    private static final UUID ALICE = new UUID(0, 1);
+    private static final UUID BOB = new UUID(0, 2);
+    private static final UUID CAROL = new UUID(0, 3);
+    
+    @Test
+    void reconcileFixesMissingAndStaleMembers() {
+        RosterIndex index = new RosterIndex();
+        index.move(ALICE, "Alice", "lobby");
+        index.move(BOB, "Bob", "lobby");
+        
+        long since = index.getVersion();
+        Set<String> changed = index.reconcile(Map.of(ALICE, "survival", CAROL, "lobby"),
+            Map.of(ALICE, "Alice", CAROL, "Carol"), since);
+        
+        assertEquals("survival", index.getServer(ALICE));
+        assertNull(index.getServer(BOB));
+        assertEquals("lobby", index.getServer(CAROL));
+        assertEquals(Set.of("lobby", "survival"), changed);
+    }
+    
+    @Test
+    void reconcileKeepsChangesMadeAfterCollection() {
+        RosterIndex index = new RosterIndex();
+        index.move(ALICE, "Alice", "lobby");
+        index.move(BOB, "Bob", "lobby");
+        
+        long since = index.getVersion();
+        Map<UUID, String> live = Map.of(ALICE, "lobby", BOB, "lobby");
+        // 收集之后发生的事件
+        index.move(ALICE, "Alice", "survival");
+        index.remove(BOB);
+        index.updateStatus(CAROL, "lobby", status -> new PlayerStatus(true, 0, null, false));
+        
+        index.reconcile(live, Map.of(ALICE, "Alice", BOB, "Bob"), since);
+        
+        assertEquals("survival", index.getServer(ALICE));
+        assertNull(index.getServer(BOB));
+        assertTrue(index.getStatus(CAROL).afk());
+    }
+    
+    @Test
+    void laterReconcileDropsStatusOfPlayerThatNeverJoined() {
+        RosterIndex index = new RosterIndex();
+        index.updateStatus(CAROL, "lobby", status -> new PlayerStatus(false, 0, null, true));
+        assertTrue(index.isVanished(CAROL));
+        
+        index.reconcile(Map.of(), Map.of(), index.getVersion());
+        
+        assertFalse(index.getStatus(CAROL).vanished());
+        assertFalse(index.isVanished(CAROL));
+        assertEquals(0, index.size());
+    }
+    
+    @Test
+    void interleavedMoveAndRemoveNeverLeaveMemberWithReleasedId() throws Exception {
+        RosterIndex index = new RosterIndex();
+        VisibilityIndex visibility = index.getVisibility();
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        
+        for (int round = 0; round < 2000; round++) {
+            Thread mover = new Thread(() -> {
+                await(barrier);
+                index.move(ALICE, "Alice", "survival");
+            });
+            mover.start();
+            await(barrier);
+            index.remove(ALICE);
+            mover.join();
+            
+            // 另一名玩家可能复用刚回收的ID
+            index.move(BOB, "Bob", "lobby");
+            
+            RosterIndex.Member alice = index.getMembers("survival").stream().findFirst().orElse(null);
+            RosterIndex.Member bob = index.getMembers("lobby").iterator().next();
+            assertEquals(BOB, visibility.playerOf(bob.visibilityId()));
+            if (alice != null) {
+                assertEquals(ALICE, visibility.playerOf(alice.visibilityId()));
+                assertNotEquals(alice.visibilityId(), bob.visibilityId());
+                index.remove(ALICE);
+            }
+            index.remove(BOB);
+        }
+        assertEquals(0, visibility.size());
+    }
+    
+    private static void await(CyclicBarrier barrier) {
+        try {
+            barrier.await();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
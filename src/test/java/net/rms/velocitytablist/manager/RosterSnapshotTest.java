@@ -0,0 +1,104 @@
+package net.rms.velocitytablist.manager;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RosterSnapshotTest {
+    
+    private static final UUID ALICE = new UUID(0, 1);
+    private static final UUID BOB = new UUID(0, 2);
+    private static final UUID CAROL = new UUID(0, 3);
+    
+    @Test
+    void filterTruncatesToEntryLimitWhenNothingIsHidden() {
+        VisibilityIndex visibility = new VisibilityIndex();
+        RosterSnapshot.ServerRoster roster = roster(1, visibility, ALICE, BOB);
+        
+        RosterSnapshot.ServerView view = roster.filter(visibility.hiddenFrom(VisibilityIndex.VIEWER_PLAYER));
+        
+        assertEquals(2, view.playerCount());
+        assertEquals(1, view.entries().size());
+        assertEquals(ALICE, view.entries().get(0).playerId());
+    }
+    
+    @Test
+    void filterHidesVanishedPlayersOnlyFromPlayers() {
+        VisibilityIndex visibility = new VisibilityIndex();
+        RosterSnapshot.ServerRoster roster = roster(2, visibility, ALICE, BOB, CAROL);
+        visibility.setVanished(ALICE, true);
+        
+        RosterSnapshot.ServerView players = roster.filter(visibility.hiddenFrom(VisibilityIndex.VIEWER_PLAYER));
+        RosterSnapshot.ServerView staff = roster.filter(visibility.hiddenFrom(VisibilityIndex.VIEWER_STAFF));
+        
+        assertEquals(2, players.playerCount());
+        assertEquals(List.of(BOB, CAROL), ids(players));
+        assertEquals(3, staff.playerCount());
+        assertEquals(List.of(ALICE, BOB), ids(staff));
+    }
+    
+    @Test
+    void releasedIdIsReusedByNextPlayer() {
+        VisibilityIndex visibility = new VisibilityIndex();
+        int aliceId = visibility.assign(ALICE);
+        visibility.assign(BOB);
+        visibility.release(ALICE);
+        
+        assertEquals(aliceId, visibility.assign(CAROL));
+        assertEquals(-1, visibility.idOf(ALICE));
+        assertEquals(CAROL, visibility.playerOf(aliceId));
+    }
+    
+    @Test
+    void membersOutsideSelectedEntriesAreCompared() {
+        // 上限为 1，只有 ALICE 被选出；BOB 离开后其ID被 CAROL 复用并隐身
+        VisibilityIndex visibility = new VisibilityIndex();
+        RosterSnapshot.ServerRoster before = roster(1, visibility, ALICE, BOB);
+        visibility.release(BOB);
+        visibility.assign(CAROL);
+        visibility.setVanished(CAROL, true);
+        
+        BitSet rebuilt = new BitSet();
+        rebuilt.set(visibility.idOf(ALICE));
+        assertFalse(before.matches(before.contentHash(), rebuilt, 1));
+        
+        // 沿用旧位图时复用的ID会被误认为是本服务器的隐身玩家
+        RosterSnapshot.ServerRoster after = new RosterSnapshot.ServerRoster("lobby", 1, before.entries(), rebuilt,
+            1, before.epoch() + 1, before.contentHash());
+        RosterSnapshot.ServerView view = after.filter(visibility.hiddenFrom(VisibilityIndex.VIEWER_PLAYER));
+        assertEquals(1, view.playerCount());
+        assertEquals(List.of(ALICE), ids(view));
+    }
+    
+    @Test
+    void identicalRebuildMatches() {
+        VisibilityIndex visibility = new VisibilityIndex();
+        RosterSnapshot.ServerRoster roster = roster(2, visibility, ALICE, BOB);
+        
+        assertTrue(roster.matches(roster.contentHash(), (BitSet) roster.memberIds().clone(), 2));
+        assertFalse(roster.matches(roster.contentHash(), roster.memberIds(), 3));
+    }
+    
+    private static RosterSnapshot.ServerRoster roster(int entryLimit, VisibilityIndex visibility, UUID... players) {
+        BitSet memberIds = new BitSet();
+        List<RosterSnapshot.RosterEntry> entries = new ArrayList<>();
+        for (UUID player : players) {
+            int id = visibility.assign(player);
+            memberIds.set(id);
+            entries.add(new RosterSnapshot.RosterEntry(player, player.toString(), 0, 0, null, id));
+        }
+        long hash = RosterSnapshot.ServerRoster.contentHash(players.length, entries, new BitSet());
+        return new RosterSnapshot.ServerRoster("lobby", players.length, entries, memberIds, entryLimit, 1L, hash);
+    }
+    
+    private static List<UUID> ids(RosterSnapshot.ServerView view) {
+        return view.entries().stream().map(RosterSnapshot.RosterEntry::playerId).toList();
+    }
+}
@@ -0,0 +1,91 @@
+package net.rms.velocitytablist.scheduler;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimingWheelTest {
+    
+    private TimingWheel wheel;
+    
+    @AfterEach
+    void stop() {
+        if (wheel != null) {
+            wheel.stop();
+        }
+    }
+    
+    @Test
+    void firesInDeadlineOrderOnDispatcher() throws InterruptedException {
+        List<Integer> fired = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(3);
+        wheel = new TimingWheel("test-wheel", 5, 16, timeout -> {
+            timeout.task.run();
+            done.countDown();
+        });
+        
+        wheel.add(() -> fired.add(3), TimeUnit.MILLISECONDS.toNanos(90));
+        wheel.add(() -> fired.add(1), TimeUnit.MILLISECONDS.toNanos(10));
+        wheel.add(() -> fired.add(2), TimeUnit.MILLISECONDS.toNanos(50));
+        
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+        assertEquals(List.of(1, 2, 3), fired);
+        assertEquals(0, wheel.size());
+    }
+    
+    @Test
+    void doesNotFireEarly() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        long[] firedAt = new long[1];
+        wheel = new TimingWheel("test-wheel", 5, 16, timeout -> {
+            firedAt[0] = System.nanoTime();
+            done.countDown();
+        });
+        
+        long start = System.nanoTime();
+        // 超过一圈（16 个刻度）的延迟需要经过多轮
+        wheel.add(() -> { }, TimeUnit.MILLISECONDS.toNanos(200));
+        
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+        assertTrue(firedAt[0] - start >= TimeUnit.MILLISECONDS.toNanos(200));
+    }
+    
+    @Test
+    void cancelledTasksAreNotDispatched() throws InterruptedException {
+        AtomicInteger dispatched = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(1);
+        wheel = new TimingWheel("test-wheel", 5, 16, timeout -> {
+            dispatched.incrementAndGet();
+            timeout.task.run();
+        });
+        
+        TimingWheel.Timeout cancelled = wheel.add(() -> { }, TimeUnit.MILLISECONDS.toNanos(20));
+        cancelled.cancelled = true;
+        wheel.add(done::countDown, TimeUnit.MILLISECONDS.toNanos(60));
+        
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+        assertEquals(1, dispatched.get());
+        assertEquals(0, wheel.size());
+    }
+    
+    @Test
+    void dispatcherFailureDoesNotStopWheel() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        wheel = new TimingWheel("test-wheel", 5, 16, timeout -> timeout.task.run());
+        
+        wheel.add(() -> {
+            throw new IllegalStateException("rejected");
+        }, TimeUnit.MILLISECONDS.toNanos(10));
+        wheel.add(done::countDown, TimeUnit.MILLISECONDS.toNanos(40));
+        
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,92 @@
+package net.rms.velocitytablist.util;
+
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
+import net.rms.velocitytablist.config.ConfigManager;
+import org.junit.jupiter.api.Test;
+import org.slf4j.helpers.NOPLogger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DisplayNameCacheTest {
+    
+    private static final UUID ALICE = new UUID(0, 1);
+    
+    @Test
+    void unchangedInputsReuseComponent() throws IOException {
+        DisplayNameCache cache = new DisplayNameCache(configManager("A %s %s"));
+        
+        Component first = cache.getPlayerName(ALICE, "Alice", "lobby", false);
+        assertSame(first, cache.getPlayerName(ALICE, "Alice", "lobby", false));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(Component.text("A Alice lobby").color(NamedTextColor.GRAY), first);
+    }
+    
+    @Test
+    void serverAndAfkChangesReformat() throws IOException {
+        DisplayNameCache cache = new DisplayNameCache(configManager("A %s %s"));
+        Component lobby = cache.getPlayerName(ALICE, "Alice", "lobby", false);
+        
+        Component survival = cache.getPlayerName(ALICE, "Alice", "survival", false);
+        assertNotSame(lobby, survival);
+        assertEquals(Component.text("A Alice survival").color(NamedTextColor.GRAY), survival);
+        
+        Component afk = cache.getPlayerName(ALICE, "Alice", "survival", true);
+        assertEquals(Component.text("A Alice survival [afk]").color(NamedTextColor.GRAY), afk);
+    }
+    
+    @Test
+    void reloadInvalidatesFormattedNames() throws IOException {
+        Path dataDirectory = Files.createTempDirectory("vtl-test");
+        writeConfig(dataDirectory, "A %s %s");
+        ConfigManager configManager = new ConfigManager(dataDirectory, NOPLogger.NOP_LOGGER);
+        DisplayNameCache cache = new DisplayNameCache(configManager);
+        Component before = cache.getPlayerName(ALICE, "Alice", "lobby", false);
+        Component more = cache.getMorePlayersName("lobby", 3);
+        
+        writeConfig(dataDirectory, "B %s %s");
+        assertTrue(configManager.reloadConfig());
+        
+        assertEquals(Component.text("B Alice lobby").color(NamedTextColor.GRAY),
+            cache.getPlayerName(ALICE, "Alice", "lobby", false));
+        assertNotSame(before, cache.getPlayerName(ALICE, "Alice", "lobby", false));
+        // 格式没有变化的条目也重新生成，但内容相同
+        Component moreAfterReload = cache.getMorePlayersName("lobby", 3);
+        assertNotSame(more, moreAfterReload);
+        assertEquals(more, moreAfterReload);
+    }
+    
+    @Test
+    void morePlayersNamesAreKeyedByServerAndCount() throws IOException {
+        DisplayNameCache cache = new DisplayNameCache(configManager("A %s %s"));
+        
+        Component lobby = cache.getMorePlayersName("lobby", 3);
+        assertSame(lobby, cache.getMorePlayersName("lobby", 3));
+        assertEquals(Component.text("more lobby 3").color(NamedTextColor.GRAY), lobby);
+        assertEquals(Component.text("more survival 3").color(NamedTextColor.GRAY),
+            cache.getMorePlayersName("survival", 3));
+        assertEquals(Component.text("more lobby 4").color(NamedTextColor.GRAY), cache.getMorePlayersName("lobby", 4));
+    }
+    
+    private static ConfigManager configManager(String playerFormat) throws IOException {
+        Path dataDirectory = Files.createTempDirectory("vtl-test");
+        writeConfig(dataDirectory, playerFormat);
+        return new ConfigManager(dataDirectory, NOPLogger.NOP_LOGGER);
+    }
+    
+    private static void writeConfig(Path dataDirectory, String playerFormat) throws IOException {
+        Files.writeString(dataDirectory.resolve("config.yml"), "display:\n"
+            + "  player-format: \"" + playerFormat + "\"\n"
+            + "  more-players-format: \"more %2$s %1$d\"\n"
+            + "  afk-suffix: \" [afk]\"\n");
+    }
+}
@@ -0,0 +1,105 @@
+package net.rms.velocitytablist.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EntryStateTableTest {
+    
+    @Test
+    void packRoundTripsVisibleFields() {
+        long state = EntryStateTable.pack(123, 3);
+        assertEquals(123, EntryStateTable.latencyOf(state));
+        assertEquals(3, EntryStateTable.gameModeOf(state));
+    }
+    
+    @Test
+    void packClampsLatency() {
+        assertEquals(0, EntryStateTable.latencyOf(EntryStateTable.pack(-5, 0)));
+        assertEquals(0xFFFFFF, EntryStateTable.latencyOf(EntryStateTable.pack(Integer.MAX_VALUE, 0)));
+    }
+    
+    @Test
+    void putFindAndUpdate() {
+        EntryStateTable table = new EntryStateTable();
+        UUID id = UUID.randomUUID();
+        table.put(id.getMostSignificantBits(), id.getLeastSignificantBits(), 42L, null, null, 1);
+        
+        int slot = table.find(id.getMostSignificantBits(), id.getLeastSignificantBits());
+        assertTrue(slot >= 0);
+        assertEquals(42L, table.stateAt(slot));
+        assertEquals(1, table.roundAt(slot));
+        assertEquals(id, table.idAt(slot));
+        
+        // 同一个键再次写入只更新状态，不增加条目数
+        table.put(id.getMostSignificantBits(), id.getLeastSignificantBits(), 43L, null, null, 2);
+        assertEquals(1, table.size());
+        assertEquals(43L, table.stateAt(table.find(id.getMostSignificantBits(), id.getLeastSignificantBits())));
+    }
+    
+    @Test
+    void growsAndShrinksWithoutLosingEntries() {
+        EntryStateTable table = new EntryStateTable();
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            UUID id = UUID.randomUUID();
+            ids.add(id);
+            table.put(id.getMostSignificantBits(), id.getLeastSignificantBits(), i, null, null, 1);
+        }
+        assertEquals(1000, table.size());
+        assertTrue(table.capacity() >= 2000);
+        
+        for (int i = 0; i < 990; i++) {
+            UUID id = ids.get(i);
+            table.remove(id.getMostSignificantBits(), id.getLeastSignificantBits());
+            assertEquals(-1, table.find(id.getMostSignificantBits(), id.getLeastSignificantBits()));
+        }
+        assertEquals(10, table.size());
+        assertTrue(table.capacity() < 2000);
+        
+        for (int i = 990; i < 1000; i++) {
+            UUID id = ids.get(i);
+            int slot = table.find(id.getMostSignificantBits(), id.getLeastSignificantBits());
+            assertEquals(i, table.stateAt(slot));
+        }
+    }
+    
+    @Test
+    void removeKeepsCollidingEntriesReachable() {
+        // 容量固定为 16 时只使用 4 位槽号，大量键会落在同一条探测链上
+        EntryStateTable table = new EntryStateTable();
+        Random random = new Random(1);
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            UUID id = new UUID(random.nextLong() | 1, random.nextLong());
+            ids.add(id);
+            table.put(id.getMostSignificantBits(), id.getLeastSignificantBits(), i, null, null, 1);
+        }
+        
+        for (int removed = 0; removed < ids.size(); removed++) {
+            UUID gone = ids.get(removed);
+            table.remove(gone.getMostSignificantBits(), gone.getLeastSignificantBits());
+            for (int i = removed + 1; i < ids.size(); i++) {
+                UUID id = ids.get(i);
+                int slot = table.find(id.getMostSignificantBits(), id.getLeastSignificantBits());
+                assertTrue(slot >= 0);
+                assertEquals(i, table.stateAt(slot));
+            }
+        }
+        assertEquals(0, table.size());
+    }
+    
+    @Test
+    void nextRoundSkipsZero() {
+        EntryStateTable table = new EntryStateTable();
+        int first = table.nextRound();
+        assertTrue(first != 0);
+        assertTrue(table.nextRound() != first);
+    }
+}
@@ -0,0 +1,32 @@
+package net.rms.velocitytablist.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LatencySmootherTest {
+    
+    private static final UUID PLAYER = new UUID(0, 1);
+    
+    @Test
+    void currentDoesNotRecordSamples() {
+        LatencySmoother smoother = new LatencySmoother();
+        assertEquals(75, smoother.update(PLAYER, 100));
+        
+        // 事件触发的刷新看到的高延迟不计入平滑值
+        for (int i = 0; i < 10; i++) {
+            assertEquals(75, smoother.current(PLAYER, 900));
+        }
+        assertEquals(450, smoother.update(PLAYER, 900));
+    }
+    
+    @Test
+    void currentSeedsPlayersWithoutSamples() {
+        LatencySmoother smoother = new LatencySmoother();
+        
+        assertEquals(450, smoother.current(PLAYER, 400));
+        assertEquals(1, smoother.size());
+    }
+}
@@ -0,0 +1,61 @@
+package net.rms.velocitytablist.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TabListBudgetTest {
+    
+    @Test
+    void everythingFitsUntouched() {
+        int[] allocation = TabListBudget.allocate(new int[]{3, 5, 0}, new int[]{10, 10, 10}, 80);
+        assertArrayEquals(new int[]{3, 5, 0}, allocation);
+    }
+    
+    @Test
+    void smallServersAreFilledFirst() {
+        int[] allocation = TabListBudget.waterFill(new int[]{2, 50, 50}, 20);
+        assertArrayEquals(new int[]{2, 9, 9}, allocation);
+    }
+    
+    @Test
+    void capsLimitDemand() {
+        int[] allocation = TabListBudget.allocate(new int[]{100, 4}, new int[]{10, 10}, 80);
+        assertArrayEquals(new int[]{10, 4}, allocation);
+    }
+    
+    @Test
+    void truncatedServersReserveMorePlayersRow() {
+        int[] playerCounts = {100, 100};
+        int[] allocation = TabListBudget.allocate(playerCounts, new int[]{1000, 1000}, 20);
+        assertArrayEquals(new int[]{9, 9}, allocation);
+        assertTrue(rows(playerCounts, allocation) <= 20);
+    }
+    
+    @Test
+    void neverExceedsBudget() {
+        int[] playerCounts = new int[30];
+        int[] caps = new int[30];
+        for (int i = 0; i < playerCounts.length; i++) {
+            playerCounts[i] = 1 + i * 7;
+            caps[i] = 1000;
+        }
+        
+        for (int budget = 0; budget <= 100; budget++) {
+            int[] allocation = TabListBudget.allocate(playerCounts, caps, budget);
+            assertTrue(rows(playerCounts, allocation) <= budget, "budget " + budget);
+        }
+    }
+    
+    private static int rows(int[] playerCounts, int[] allocation) {
+        int rows = 0;
+        for (int i = 0; i < playerCounts.length; i++) {
+            if (allocation[i] < 0) {
+                continue;
+            }
+            rows += allocation[i] + (playerCounts[i] > allocation[i] ? 1 : 0);
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,173 @@
+package net.rms.velocitytablist.util;
+
+import com.velocitypowered.api.event.player.ServerPostConnectEvent;
+import com.velocitypowered.api.event.proxy.ProxyShutdownEvent;
+import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+import net.rms.velocitytablist.VelocityTabListPlugin;
+import net.rms.velocitytablist.manager.CrossServerInfoManager;
+import net.rms.velocitytablist.stub.PacketCounter;
+import net.rms.velocitytablist.stub.StubNetwork;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TabListUpdaterTest {
+    
+    // 3 个服务器，每个服务器 4 名玩家：观察者能看到其他两个服务器的 8 名玩家
+    private static final int SERVERS = 3;
+    private static final int PLAYERS_PER_SERVER = 4;
+    private static final int VISIBLE = 8;
+    
+    private StubNetwork network;
+    private VelocityTabListPlugin plugin;
+    private CrossServerInfoManager infoManager;
+    private PacketCounter packets;
+    private Path dataDirectory;
+    
+    @AfterEach
+    void tearDown() {
+        if (plugin != null) {
+            plugin.onProxyShutdown(new ProxyShutdownEvent());
+        }
+    }
+    
+    @Test
+    void unchangedSnapshotIsSkipped() throws IOException {
+        start("");
+        Player viewer = network.allPlayers().get(0);
+        TabListUpdater updater = new TabListUpdater(viewer, plugin, infoManager);
+        
+        assertEquals(VISIBLE, updater.updateTabList());
+        assertEquals(VISIBLE, network.tabListOf(viewer).size());
+        
+        packets.reset();
+        assertEquals(0, updater.updateTabList());
+        assertEquals(0, packets.total());
+    }
+    
+    @Test
+    void changesOnOwnServerAreSkipped() throws IOException {
+        start("");
+        Player viewer = network.allPlayers().get(0);
+        TabListUpdater updater = new TabListUpdater(viewer, plugin, infoManager);
+        updater.updateTabList();
+        
+        // 观察者看不到自己所在的服务器
+        join("newcomer", serverOf(viewer));
+        
+        packets.reset();
+        assertEquals(0, updater.updateTabList());
+        assertEquals(0, packets.total());
+    }
+    
+    @Test
+    void playersJoiningOtherServersAreAdded() throws IOException {
+        start("");
+        Player viewer = network.allPlayers().get(0);
+        TabListUpdater updater = new TabListUpdater(viewer, plugin, infoManager);
+        updater.updateTabList();
+        
+        join("newcomer", otherServer(viewer));
+        
+        packets.reset();
+        assertEquals(1, updater.updateTabList());
+        assertEquals(1, packets.adds());
+        assertEquals(VISIBLE + 1, network.tabListOf(viewer).size());
+    }
+    
+    @Test
+    void rebuildModeReaddsAllEntries() throws IOException {
+        start("display:\n  incremental-updates: false\n");
+        Player viewer = network.allPlayers().get(0);
+        TabListUpdater updater = new TabListUpdater(viewer, plugin, infoManager);
+        updater.updateTabList();
+        
+        join("newcomer", otherServer(viewer));
+        
+        packets.reset();
+        updater.updateTabList();
+        assertEquals(VISIBLE, packets.removes());
+        assertEquals(VISIBLE + 1, packets.adds());
+        assertEquals(0, packets.updates());
+        assertEquals(VISIBLE + 1, network.tabListOf(viewer).size());
+    }
+    
+    @Test
+    void serverSwitchReaddsEntriesMissingFromClient() throws IOException {
+        start("");
+        Player viewer = network.allPlayers().get(0);
+        TabListUpdater updater = new TabListUpdater(viewer, plugin, infoManager);
+        updater.updateTabList();
+        
+        RegisteredServer previous = network.move(viewer, otherServer(viewer));
+        infoManager.onPlayerConnect(new ServerPostConnectEvent(viewer, previous));
+        infoManager.refreshSnapshot();
+        // 切换服务器时代理清空了客户端的列表
+        network.tabListOf(viewer).tabList().clearAll();
+        updater.invalidate();
+        
+        packets.reset();
+        updater.updateTabList();
+        // 新服务器的 4 名玩家不再显示，旧服务器剩下的 3 名玩家开始显示
+        int expected = VISIBLE - PLAYERS_PER_SERVER + PLAYERS_PER_SERVER - 1;
+        assertEquals(expected, network.tabListOf(viewer).size());
+        assertEquals(expected, packets.adds());
+        for (Player player : network.allPlayers()) {
+            if (!serverOf(player).equals(serverOf(viewer))) {
+                UUID entryId = plugin.getUUIDGenerator().generatePlayerVirtualUUID(player.getUniqueId(),
+                    serverOf(player));
+                assertTrue(network.tabListOf(viewer).tabList().containsEntry(entryId));
+            }
+        }
+    }
+    
+    @Test
+    void disablingCrossServerRemovesAllEntries() throws IOException {
+        start("");
+        Player viewer = network.allPlayers().get(0);
+        TabListUpdater updater = new TabListUpdater(viewer, plugin, infoManager);
+        updater.updateTabList();
+        
+        Files.writeString(dataDirectory.resolve("config.yml"),
+            "auto-update:\n  enabled: false\ndisplay:\n  cross-server: false\n");
+        assertTrue(plugin.getConfigManager().reloadConfig());
+        
+        packets.reset();
+        assertEquals(VISIBLE, updater.updateTabList());
+        assertEquals(VISIBLE, packets.removes());
+        assertEquals(0, packets.adds());
+        assertEquals(0, network.tabListOf(viewer).size());
+    }
+    
+    private void start(String extraConfig) throws IOException {
+        network = StubNetwork.create(SERVERS, PLAYERS_PER_SERVER);
+        packets = network.packets();
+        dataDirectory = Files.createTempDirectory("vtl-test").resolve("velocitytablist");
+        plugin = network.startPlugin(dataDirectory, extraConfig);
+        infoManager = plugin.getCrossServerManager();
+        infoManager.refreshSnapshot();
+    }
+    
+    private void join(String username, String serverName) {
+        Player player = network.connect(username, serverName);
+        infoManager.onPlayerConnect(new ServerPostConnectEvent(player, null));
+        infoManager.refreshSnapshot();
+    }
+    
+    private static String serverOf(Player player) {
+        return player.getCurrentServer().orElseThrow().getServerInfo().getName();
+    }
+    
+    private String otherServer(Player viewer) {
+        String current = serverOf(viewer);
+        return network.serverNames().stream().filter(name -> !name.equals(current)).findFirst().orElseThrow();
+    }
+}
@@ -0,0 +1,176 @@
+package net.rms.velocitytablist.util;
+
+import com.velocitypowered.api.proxy.player.TabList;
+import com.velocitypowered.api.proxy.player.TabListEntry;
+import com.velocitypowered.api.util.GameProfile;
+import net.kyori.adventure.text.Component;
+import net.rms.velocitytablist.metrics.PluginMetrics;
+import net.rms.velocitytablist.stub.PacketCounter;
+import net.rms.velocitytablist.stub.StubTabList;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TabListWriterTest {
+    
+    private static final UUID FIRST = new UUID(0x8000L, 1);
+    private static final UUID SECOND = new UUID(0x8000L, 2);
+    
+    private final PacketCounter packets = new PacketCounter();
+    private final StubTabList client = new StubTabList(packets);
+    private final EntryStateTable sent = new EntryStateTable();
+    
+    @Test
+    void addsAndRemovesEntries() {
+        write(entry(FIRST, "a", 10), entry(SECOND, "b", 10));
+        assertEquals(2, packets.adds());
+        assertEquals(2, client.size());
+        
+        packets.reset();
+        int changes = write(entry(FIRST, "a", 10));
+        
+        assertEquals(1, changes);
+        assertEquals(1, packets.removes());
+        assertEquals(0, packets.adds());
+        assertFalse(tabList().containsEntry(SECOND));
+    }
+    
+    @Test
+    void updatesOnlyChangedFieldsInPlace() {
+        write(entry(FIRST, "a", 10));
+        
+        packets.reset();
+        int changes = write(entry(FIRST, "a", 200));
+        
+        assertEquals(1, changes);
+        assertEquals(1, packets.updates());
+        assertEquals(0, packets.adds() + packets.removes());
+        assertEquals(200, tabList().getEntry(FIRST).orElseThrow().getLatency());
+        
+        packets.reset();
+        write(entry(FIRST, "renamed", 200));
+        assertEquals(1, packets.updates());
+        assertEquals(Component.text("renamed"), tabList().getEntry(FIRST).orElseThrow()
+            .getDisplayNameComponent().orElseThrow());
+    }
+    
+    @Test
+    void namesWithEqualHashesAreStillUpdated() {
+        // "Aa" 和 "BB" 的哈希相同，只比较哈希时新名称不会发送
+        write(entry(FIRST, "Aa", 10));
+        
+        packets.reset();
+        assertEquals(1, write(entry(FIRST, "BB", 10)));
+        assertEquals(1, packets.updates());
+        assertEquals(Component.text("BB"), tabList().getEntry(FIRST).orElseThrow()
+            .getDisplayNameComponent().orElseThrow());
+    }
+    
+    @Test
+    void unchangedEntriesSendNothing() {
+        write(entry(FIRST, "a", 10), entry(SECOND, "b", 10));
+        
+        packets.reset();
+        assertEquals(0, write(entry(FIRST, "a", 10), entry(SECOND, "b", 10)));
+        assertEquals(0, packets.total());
+    }
+    
+    @Test
+    void removeAllReaddsEveryEntry() {
+        write(entry(FIRST, "a", 10), entry(SECOND, "b", 10));
+        
+        packets.reset();
+        TabListWriter writer = writer();
+        writer.removeAll();
+        writer.upsert(entry(FIRST, "a", 10));
+        writer.upsert(entry(SECOND, "b", 10));
+        writer.flush();
+        
+        assertEquals(2, packets.removes());
+        assertEquals(2, packets.adds());
+        assertEquals(2, client.size());
+    }
+    
+    @Test
+    void verifyClientReaddsEntriesClearedByTheProxy() {
+        write(entry(FIRST, "a", 10), entry(SECOND, "b", 10));
+        // 切换服务器时代理清空了客户端的列表
+        tabList().clearAll();
+        
+        packets.reset();
+        TabListWriter writer = writer();
+        writer.verifyClient();
+        writer.upsert(entry(FIRST, "a", 10));
+        writer.upsert(entry(SECOND, "b", 10));
+        writer.flush();
+        
+        assertEquals(2, packets.adds());
+        assertTrue(tabList().containsEntry(FIRST));
+        assertTrue(tabList().containsEntry(SECOND));
+        
+        // 校验只在本轮生效
+        tabList().clearAll();
+        packets.reset();
+        write(entry(FIRST, "a", 10), entry(SECOND, "b", 10));
+        assertEquals(0, packets.adds());
+    }
+    
+    @Test
+    void profileChangeReaddsEntry() {
+        write(entry(FIRST, "a", 10));
+        
+        // 补充加载皮肤后 GameProfile 变化，只有重新添加才能让客户端看到
+        GameProfile textured = new GameProfile(FIRST, "entry",
+            List.of(new GameProfile.Property("textures", "skin", "signature")));
+        packets.reset();
+        int changes = write(entry(textured, "a", 10));
+        
+        assertEquals(2, changes);
+        assertEquals(1, packets.removes());
+        assertEquals(1, packets.adds());
+        assertSame(textured, tabList().getEntry(FIRST).orElseThrow().getProfile());
+        
+        // 内容相同的新实例不需要重新添加
+        packets.reset();
+        write(entry(new GameProfile(FIRST, "entry",
+            List.of(new GameProfile.Property("textures", "skin", "signature"))), "a", 10));
+        assertEquals(0, packets.total());
+    }
+    
+    private int write(TabListEntry... entries) {
+        TabListWriter writer = writer();
+        for (TabListEntry entry : entries) {
+            writer.upsert(entry);
+        }
+        return writer.flush();
+    }
+    
+    private TabListWriter writer() {
+        return new TabListWriter(tabList(), sent, new PluginMetrics());
+    }
+    
+    private TabList tabList() {
+        return client.tabList();
+    }
+    
+    private TabListEntry entry(UUID id, String name, int latency) {
+        return entry(new GameProfile(id, "entry", Collections.emptyList()), name, latency);
+    }
+    
+    private TabListEntry entry(GameProfile profile, String name, int latency) {
+        return TabListEntry.builder()
+            .tabList(tabList())
+            .profile(profile)
+            .displayName(Component.text(name))
+            .latency(latency)
+            .gameMode(0)
+            .build();
+    }
+}
@@ -0,0 +1,80 @@
+package net.rms.velocitytablist.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UUIDGeneratorTest {
+    
+    private static final String[] SERVERS = {"lobby", "survival", "creative", "minigames", "skyblock"};
+    
+    @Test
+    void sameInputGivesSameUUID() {
+        UUIDGenerator generator = new UUIDGenerator();
+        UUID player = new UUID(0x1234L, 0x5678L);
+        
+        UUID first = generator.generatePlayerVirtualUUID(player, "lobby");
+        assertEquals(first, generator.generatePlayerVirtualUUID(player, "lobby"));
+        assertNotEquals(first, generator.generatePlayerVirtualUUID(player, "survival"));
+        assertEquals(generator.generateMorePlayersUUID("lobby"), generator.generateMorePlayersUUID("lobby"));
+    }
+    
+    @Test
+    void resultsStayStableAfterCacheSlotsAreOverwritten() {
+        UUIDGenerator generator = new UUIDGenerator();
+        UUID[] players = new UUID[10_000];
+        UUID[] first = new UUID[players.length];
+        for (int i = 0; i < players.length; i++) {
+            players[i] = new UUID(i * 0x9E3779B97F4A7C15L, i);
+            first[i] = generator.generatePlayerVirtualUUID(players[i], SERVERS[i % SERVERS.length]);
+        }
+        
+        // 缓存只有 4096 个槽，前面的结果已被覆盖，需要重新计算
+        for (int i = 0; i < players.length; i++) {
+            assertEquals(first[i], generator.generatePlayerVirtualUUID(players[i], SERVERS[i % SERVERS.length]));
+        }
+        assertTrue(generator.getMissCount() > players.length);
+    }
+    
+    @Test
+    void noCollisionsAcrossPlayersServersAndNamespaces() {
+        UUIDGenerator generator = new UUIDGenerator();
+        Set<UUID> seen = new HashSet<>();
+        int count = 0;
+        for (int i = 0; i < 20_000; i++) {
+            // 相邻的源UUID只有低位不同
+            UUID player = new UUID(0x0123456789ABCDEFL, i);
+            for (String server : SERVERS) {
+                seen.add(generator.generatePlayerVirtualUUID(player, server));
+                count++;
+            }
+        }
+        for (String server : SERVERS) {
+            seen.add(generator.generateMorePlayersUUID(server));
+            seen.add(generator.generateSeparatorUUID(server));
+            count += 2;
+        }
+        
+        assertEquals(count, seen.size());
+    }
+    
+    @Test
+    void recognisesOnlyGeneratedUUIDs() {
+        UUIDGenerator generator = new UUIDGenerator();
+        
+        assertTrue(generator.isVirtualUUID(generator.generatePlayerVirtualUUID(UUID.randomUUID(), "lobby")));
+        assertTrue(generator.isVirtualUUID(generator.generateMorePlayersUUID("lobby")));
+        assertTrue(generator.isVirtualUUID(generator.generateSeparatorUUID("main")));
+        for (int i = 0; i < 1000; i++) {
+            assertFalse(generator.isVirtualUUID(UUID.randomUUID()));
+        }
+        assertFalse(generator.isVirtualUUID(UUID.nameUUIDFromBytes("OfflinePlayer:alice".getBytes())));
+    }
+}
@@ -0,0 +1,51 @@
+package net.rms.velocitytablist.stub;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 统计桩Tab列表上发生的新增、移除和字段更新次数，每次操作对应一个玩家信息数据包。
+ */
+public final class PacketCounter {
+    
+    private final LongAdder adds = new LongAdder();
+    private final LongAdder removes = new LongAdder();
+    private final LongAdder updates = new LongAdder();
+    
+    void recordAdd() {
+        adds.increment();
+    }
+    
+    void recordRemove() {
+        removes.increment();
+    }
+    
+    void recordRemove(int count) {
+        removes.add(count);
+    }
+    
+    void recordUpdate() {
+        updates.increment();
+    }
+    
+    public long adds() {
+        return adds.sum();
+    }
+    
+    public long removes() {
+        return removes.sum();
+    }
+    
+    public long updates() {
+        return updates.sum();
+    }
+    
+    public long total() {
+        return adds() + removes() + updates();
+    }
+    
+    public void reset() {
+        adds.reset();
+        removes.reset();
+        updates.reset();
+    }
+}
@@ -0,0 +1,334 @@
+package net.rms.velocitytablist.stub;
+
+import com.velocitypowered.api.command.CommandManager;
+import com.velocitypowered.api.command.CommandMeta;
+import com.velocitypowered.api.event.EventManager;
+import com.velocitypowered.api.event.proxy.ProxyInitializeEvent;
+import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.proxy.ProxyServer;
+import com.velocitypowered.api.proxy.ServerConnection;
+import com.velocitypowered.api.proxy.messages.ChannelRegistrar;
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+import com.velocitypowered.api.proxy.server.ServerInfo;
+import com.velocitypowered.api.proxy.server.ServerPing;
+import com.velocitypowered.api.scheduler.ScheduledTask;
+import com.velocitypowered.api.scheduler.Scheduler;
+import com.velocitypowered.api.util.GameProfile;
+import net.kyori.adventure.text.Component;
+import net.rms.velocitytablist.VelocityTabListPlugin;
+import org.slf4j.helpers.NOPLogger;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 内存中的代理网络：若干后端服务器和玩家，不需要真实的 Velocity 实例。
+ */
+public final class StubNetwork {
+    
+    private final ProxyServer proxy;
+    private final PacketCounter packets = new PacketCounter();
+    private final Map<String, ServerState> servers = new ConcurrentHashMap<>();
+    private final List<RegisteredServer> serverOrder = new CopyOnWriteArrayList<>();
+    private final Map<UUID, PlayerState> players = new ConcurrentHashMap<>();
+    private final List<Runnable> scheduledTasks = new CopyOnWriteArrayList<>();
+    private final Random random = new Random(42);
+    
+    private StubNetwork() {
+        Scheduler scheduler = createScheduler();
+        EventManager eventManager = Stubs.create(EventManager.class, (self, method, args) -> Stubs.UNHANDLED);
+        CommandManager commandManager = createCommandManager();
+        ChannelRegistrar channelRegistrar = Stubs.create(ChannelRegistrar.class, (self, method, args) -> Stubs.UNHANDLED);
+        
+        this.proxy = Stubs.create(ProxyServer.class, (self, method, args) -> {
+            switch (method) {
+                case "getAllServers":
+                    return new ArrayList<>(serverOrder);
+                case "getServer": {
+                    ServerState state = servers.get((String) args[0]);
+                    return Optional.ofNullable(state != null ? state.registered : null);
+                }
+                case "getPlayer":
+                    if (args[0] instanceof UUID) {
+                        PlayerState state = players.get((UUID) args[0]);
+                        return Optional.ofNullable(state != null ? state.player : null);
+                    }
+                    return players.values().stream()
+                        .filter(state -> state.username.equalsIgnoreCase((String) args[0]))
+                        .map(state -> state.player)
+                        .findFirst();
+                case "getAllPlayers":
+                    return allPlayers();
+                case "getPlayerCount":
+                    return players.size();
+                case "getScheduler":
+                    return scheduler;
+                case "getEventManager":
+                    return eventManager;
+                case "getCommandManager":
+                    return commandManager;
+                case "getChannelRegistrar":
+                    return channelRegistrar;
+                default:
+                    return Stubs.UNHANDLED;
+            }
+        });
+    }
+    
+    /**
+     * 创建一个包含 serverCount 个服务器、每个服务器 playersPerServer 名玩家的网络。
+     */
+    public static StubNetwork create(int serverCount, int playersPerServer) {
+        StubNetwork network = new StubNetwork();
+        for (int i = 0; i < serverCount; i++) {
+            String serverName = "server-" + i;
+            network.addServer(serverName);
+            for (int j = 0; j < playersPerServer; j++) {
+                network.connect("player-" + i + "-" + j, serverName);
+            }
+        }
+        return network;
+    }
+    
+    public ProxyServer proxy() {
+        return proxy;
+    }
+    
+    public PacketCounter packets() {
+        return packets;
+    }
+    
+    public RegisteredServer addServer(String serverName) {
+        ServerState state = new ServerState(serverName);
+        servers.put(serverName, state);
+        serverOrder.add(state.registered);
+        return state.registered;
+    }
+    
+    public RegisteredServer server(String serverName) {
+        return servers.get(serverName).registered;
+    }
+    
+    public List<String> serverNames() {
+        List<String> names = new ArrayList<>();
+        for (RegisteredServer server : serverOrder) {
+            names.add(server.getServerInfo().getName());
+        }
+        return names;
+    }
+    
+    public List<Player> allPlayers() {
+        List<Player> result = new ArrayList<>(players.size());
+        for (PlayerState state : players.values()) {
+            result.add(state.player);
+        }
+        return result;
+    }
+    
+    public Player connect(String username, String serverName) {
+        UUID uuid = new UUID(random.nextLong(), random.nextLong());
+        PlayerState state = new PlayerState(uuid, username, 20 + random.nextInt(200));
+        players.put(uuid, state);
+        move(state.player, serverName);
+        return state.player;
+    }
+    
+    /**
+     * 将玩家移动到目标服务器，返回之前所在的服务器。
+     */
+    public RegisteredServer move(Player player, String serverName) {
+        PlayerState state = players.get(player.getUniqueId());
+        ServerState previous = state.server;
+        if (previous != null) {
+            previous.players.remove(state.player);
+        }
+        
+        ServerState target = servers.get(serverName);
+        target.players.add(state.player);
+        state.server = target;
+        state.currentServer = Optional.of(state.connection(target));
+        return previous != null ? previous.registered : null;
+    }
+    
+    public void disconnect(Player player) {
+        PlayerState state = players.remove(player.getUniqueId());
+        if (state != null && state.server != null) {
+            state.server.players.remove(state.player);
+            state.server = null;
+            state.currentServer = Optional.empty();
+            state.active = false;
+        }
+    }
+    
+    public void setPing(Player player, long ping) {
+        players.get(player.getUniqueId()).ping = ping;
+    }
+    
+    /**
+     * 设置后端是否响应 ping。
+     */
+    public void setReachable(String serverName, boolean reachable) {
+        servers.get(serverName).reachable = reachable;
+    }
+    
+    public void grant(Player player, String permission) {
+        players.get(player.getUniqueId()).permissions.add(permission);
+    }
+    
+    public StubTabList tabListOf(Player player) {
+        return players.get(player.getUniqueId()).tabList;
+    }
+    
+    /**
+     * 手动执行所有通过 Velocity 调度器注册的任务。
+     */
+    public void runScheduledTasks() {
+        scheduledTasks.forEach(Runnable::run);
+    }
+    
+    /**
+     * 在临时数据目录中启动插件。自动更新会被关闭，避免访问网络。
+     */
+    public VelocityTabListPlugin startPlugin(Path dataDirectory) throws IOException {
+        return startPlugin(dataDirectory, "");
+    }
+    
+    /**
+     * 在临时数据目录中启动插件，extraConfig 为追加到配置文件中的 YAML 片段。
+     */
+    public VelocityTabListPlugin startPlugin(Path dataDirectory, String extraConfig) throws IOException {
+        Files.createDirectories(dataDirectory);
+        Files.writeString(dataDirectory.resolve("config.yml"), "auto-update:\n  enabled: false\n" + extraConfig);
+        
+        VelocityTabListPlugin plugin = new VelocityTabListPlugin(proxy, NOPLogger.NOP_LOGGER, dataDirectory);
+        plugin.onProxyInitialization(new ProxyInitializeEvent());
+        return plugin;
+    }
+    
+    private CommandManager createCommandManager() {
+        CommandMeta meta = Stubs.create(CommandMeta.class, (self, method, args) -> Stubs.UNHANDLED);
+        CommandMeta.Builder metaBuilder = Stubs.create(CommandMeta.Builder.class,
+            (self, method, args) -> "build".equals(method) ? meta : self);
+        return Stubs.create(CommandManager.class,
+            (self, method, args) -> "metaBuilder".equals(method) ? metaBuilder : Stubs.UNHANDLED);
+    }
+    
+    private Scheduler createScheduler() {
+        return Stubs.create(Scheduler.class, (scheduler, method, args) -> {
+            if (!"buildTask".equals(method)) {
+                return Stubs.UNHANDLED;
+            }
+            
+            Runnable runnable = (Runnable) args[1];
+            return Stubs.create(Scheduler.TaskBuilder.class, (self, builderMethod, builderArgs) -> {
+                if ("schedule".equals(builderMethod)) {
+                    scheduledTasks.add(runnable);
+                    return Stubs.create(ScheduledTask.class, (task, taskMethod, taskArgs) -> {
+                        if ("cancel".equals(taskMethod)) {
+                            scheduledTasks.remove(runnable);
+                        }
+                        return Stubs.UNHANDLED;
+                    });
+                }
+                return self;
+            });
+        });
+    }
+    
+    private final class ServerState {
+        private final ServerInfo info;
+        private final Collection<Player> players = ConcurrentHashMap.newKeySet();
+        private final RegisteredServer registered;
+        private volatile boolean reachable = true;
+        
+        private ServerState(String name) {
+            this.info = new ServerInfo(name, InetSocketAddress.createUnresolved(name, 25565));
+            this.registered = Stubs.create(RegisteredServer.class, (self, method, args) -> {
+                switch (method) {
+                    case "getServerInfo":
+                        return info;
+                    case "getPlayersConnected":
+                        return new ArrayList<>(players);
+                    case "ping":
+                        return reachable
+                            ? CompletableFuture.completedFuture(new ServerPing(
+                                new ServerPing.Version(763, "stub"), null, Component.empty(), null))
+                            : CompletableFuture.failedFuture(new ConnectException("stub server unreachable"));
+                    default:
+                        return Stubs.UNHANDLED;
+                }
+            });
+        }
+    }
+    
+    private final class PlayerState {
+        private final UUID uuid;
+        private final String username;
+        private final StubTabList tabList = new StubTabList(packets);
+        private final Set<String> permissions = ConcurrentHashMap.newKeySet();
+        private final List<GameProfile.Property> properties;
+        private final Player player;
+        private volatile ServerState server;
+        private volatile Optional<ServerConnection> currentServer = Optional.empty();
+        private volatile long ping;
+        private volatile boolean active = true;
+        
+        private PlayerState(UUID uuid, String username, long ping) {
+            this.uuid = uuid;
+            this.username = username;
+            this.ping = ping;
+            this.properties = List.of(new GameProfile.Property("textures", "stub-" + uuid, "stub-signature"));
+            this.player = Stubs.create(Player.class, (self, method, args) -> {
+                switch (method) {
+                    case "getUniqueId":
+                        return uuid;
+                    case "getUsername":
+                        return username;
+                    case "getPing":
+                        return this.ping;
+                    case "getTabList":
+                        return tabList.tabList();
+                    case "isActive":
+                        return active;
+                    case "getCurrentServer":
+                        return currentServer;
+                    case "hasPermission":
+                        return permissions.contains((String) args[0]);
+                    case "getGameProfileProperties":
+                        return properties;
+                    default:
+                        return Stubs.UNHANDLED;
+                }
+            });
+        }
+        
+        private ServerConnection connection(ServerState current) {
+            return Stubs.create(ServerConnection.class, (self, method, args) -> {
+                switch (method) {
+                    case "getServerInfo":
+                        return current.info;
+                    case "getServer":
+                        return current.registered;
+                    case "getPlayer":
+                        return player;
+                    default:
+                        return Stubs.UNHANDLED;
+                }
+            });
+        }
+    }
+}
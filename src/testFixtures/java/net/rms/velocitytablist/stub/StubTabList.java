@@ -0,0 +1,129 @@
+package net.rms.velocitytablist.stub;
+
+import com.velocitypowered.api.proxy.player.TabList;
+import com.velocitypowered.api.proxy.player.TabListEntry;
+import com.velocitypowered.api.util.GameProfile;
+import net.kyori.adventure.text.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * 内存中的Tab列表，记录每次会产生数据包的操作次数。
+ */
+public final class StubTabList {
+    
+    private final PacketCounter counter;
+    private final Map<UUID, TabListEntry> entries = new LinkedHashMap<>();
+    private final TabList tabList;
+    
+    public StubTabList(PacketCounter counter) {
+        this.counter = counter;
+        this.tabList = Stubs.create(TabList.class, (self, method, args) -> {
+            switch (method) {
+                case "addEntry": {
+                    TabListEntry entry = (TabListEntry) args[0];
+                    synchronized (entries) {
+                        entries.put(entry.getProfile().getId(), entry);
+                    }
+                    counter.recordAdd();
+                    return null;
+                }
+                case "removeEntry": {
+                    TabListEntry removed;
+                    synchronized (entries) {
+                        removed = entries.remove((UUID) args[0]);
+                    }
+                    if (removed != null) {
+                        counter.recordRemove();
+                    }
+                    return Optional.ofNullable(removed);
+                }
+                case "containsEntry":
+                    synchronized (entries) {
+                        return entries.containsKey((UUID) args[0]);
+                    }
+                case "getEntry":
+                    synchronized (entries) {
+                        return Optional.ofNullable(entries.get((UUID) args[0]));
+                    }
+                case "getEntries":
+                    synchronized (entries) {
+                        return new ArrayList<>(entries.values());
+                    }
+                case "clearAll":
+                    synchronized (entries) {
+                        counter.recordRemove(entries.size());
+                        entries.clear();
+                    }
+                    return null;
+                case "buildEntry":
+                    // 各版本 buildEntry 重载的前四个参数一致
+                    return createEntry((TabList) self, (GameProfile) args[0], (Component) args[1],
+                        (Integer) args[2], (Integer) args[3]);
+                default:
+                    return Stubs.UNHANDLED;
+            }
+        });
+    }
+    
+    public TabList tabList() {
+        return tabList;
+    }
+    
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+    
+    private TabListEntry createEntry(TabList owner, GameProfile profile, Component displayName,
+                                     int latency, int gameMode) {
+        EntryState state = new EntryState(displayName, latency, gameMode);
+        return Stubs.create(TabListEntry.class, (self, method, args) -> {
+            switch (method) {
+                case "getTabList":
+                    return owner;
+                case "getProfile":
+                    return profile;
+                case "getDisplayNameComponent":
+                    return Optional.ofNullable(state.displayName);
+                case "getLatency":
+                    return state.latency;
+                case "getGameMode":
+                    return state.gameMode;
+                case "isListed":
+                    return true;
+                case "setDisplayName":
+                    state.displayName = (Component) args[0];
+                    counter.recordUpdate();
+                    return self;
+                case "setLatency":
+                    state.latency = (Integer) args[0];
+                    counter.recordUpdate();
+                    return self;
+                case "setGameMode":
+                    state.gameMode = (Integer) args[0];
+                    counter.recordUpdate();
+                    return self;
+                default:
+                    return Stubs.UNHANDLED;
+            }
+        });
+    }
+    
+    private static final class EntryState {
+        private volatile Component displayName;
+        private volatile int latency;
+        private volatile int gameMode;
+        
+        private EntryState(Component displayName, int latency, int gameMode) {
+            this.displayName = displayName;
+            this.latency = latency;
+            this.gameMode = gameMode;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package net.rms.velocitytablist.stub;
+
+import java.lang.reflect.Proxy;
+
+/**
+ * 基于动态代理的接口桩。Velocity 的 Player 等接口方法很多，这里只实现插件实际调用的方法，
+ * 其余方法直接抛出 UnsupportedOperationException，便于发现新增的调用。
+ */
+public final class Stubs {
+    
+    private Stubs() {
+    }
+    
+    @FunctionalInterface
+    public interface Handler {
+        Object handle(Object self, String method, Object[] args) throws Throwable;
+    }
+    
+    public static final Object UNHANDLED = new Object();
+    
+    @SuppressWarnings("unchecked")
+    public static <T> T create(Class<T> type, Handler handler) {
+        return (T) Proxy.newProxyInstance(Stubs.class.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            String name = method.getName();
+            Object[] arguments = args != null ? args : new Object[0];
+            
+            switch (name) {
+                case "equals":
+                    if (arguments.length == 1 && method.getParameterTypes()[0] == Object.class) {
+                        return proxy == arguments[0];
+                    }
+                    break;
+                case "hashCode":
+                    if (arguments.length == 0) {
+                        return System.identityHashCode(proxy);
+                    }
+                    break;
+                case "toString":
+                    if (arguments.length == 0) {
+                        return type.getSimpleName() + "Stub@" + Integer.toHexString(System.identityHashCode(proxy));
+                    }
+                    break;
+                default:
+                    break;
+            }
+            
+            Object result = handler.handle(proxy, name, arguments);
+            if (result != UNHANDLED) {
+                return result;
+            }
+            
+            if (method.getReturnType() == void.class) {
+                return null;
+            }
+            throw new UnsupportedOperationException(type.getSimpleName() + "." + name);
+        });
+    }
+}